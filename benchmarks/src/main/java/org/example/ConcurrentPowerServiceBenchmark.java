@@ -0,0 +1,81 @@
+package org.example;
+/**
+ * JMH benchmarks for the concurrent power service shared between
+ * threads. queries measures the dashboard queries alone, run it with
+ * -t 1, -t 2, ... -t 32 to see the throughput scale with the threads.
+ * crews measures the same queries while one thread in eight applies
+ * field crew updates.
+ */
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentPowerServiceBenchmark {
+	//number of postal codes, there is one hub for every ten codes
+	@Param({"100000"})
+	public int postalCodes;
+
+	private ConcurrentStressTest model;
+	private PrintStream stdout;
+
+	/**
+	 * Function to build the model for the trial
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		//the service reports each repair on stdout, keep it quiet
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		model = new ConcurrentStressTest(new ConcurrentPowerService(), postalCodes);
+	}
+
+	/**
+	 * Function to restore stdout after the trial
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public void queries() {
+		model.operation(ThreadLocalRandom.current(), false);
+	}
+
+	@Benchmark
+	@Group("crews")
+	@GroupThreads(7)
+	public void crewsQueries() {
+		model.operation(ThreadLocalRandom.current(), false);
+	}
+
+	@Benchmark
+	@Group("crews")
+	@GroupThreads(1)
+	public void crewsUpdates() {
+		model.operation(ThreadLocalRandom.current(), true);
+	}
+}
@@ -0,0 +1,222 @@
+package org.example;
+/**
+ * Java program to stress the concurrent power service with 1 to 32
+ * threads mixing field crew updates and dashboard queries. For each
+ * number of threads it reports the throughput, and when the threads
+ * are done it checks that the people out of service still match the
+ * damaged hubs and that no operation has thrown.
+ *
+ * Usage: java -cp benchmarks.jar org.example.ConcurrentStressTest
+ * [postalCodes=100000] [seconds=5] [writePercent=10] [plain=false]
+ * where plain=true runs the same load on the unsynchronized PowerService.
+ */
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentStressTest {
+	//number of threads of each run
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+	private final PowerService powerService;
+	private final String[] postalIds;
+	private final String[] hubIds;
+	private final Point[] locations;
+	private final List<Set<String>> servedAreas = new ArrayList<Set<String>>();
+
+	//constructor, builds the model in the same way as PowerServiceBenchmark
+	ConcurrentStressTest(PowerService powerService, int postalCodes) {
+		this.powerService = powerService;
+		Random random = new Random(42);
+		int hubs = Math.max(postalCodes / 10, 1);
+		int side = (int) Math.sqrt(hubs) * 10 + 1;
+		postalIds = new String[postalCodes];
+		for (int i = 0; i < postalCodes; i++) {
+			postalIds[i] = String.format("P%07d", i);
+			powerService.addPostalCode(postalIds[i], 100 + random.nextInt(1000), 1 + random.nextInt(500));
+			powerService.addDamagedHub(postalIds[i], random.nextInt(100));
+		}
+		hubIds = new String[hubs];
+		locations = new Point[hubs];
+		for (int i = 0; i < hubs; i++) {
+			hubIds[i] = String.format("H%06d", i);
+			locations[i] = new Point(random.nextInt(side), random.nextInt(side));
+			Set<String> served = new HashSet<String>();
+			for (int j = 0; j < 6; j++) {
+				served.add(postalIds[random.nextInt(postalCodes)]);
+			}
+			servedAreas.add(served);
+			powerService.addDistributionHub(hubIds[i], locations[i], served);
+			if (random.nextInt(3) == 0) {
+				powerService.hubDamage(hubIds[i], 1 + random.nextInt(48));
+			}
+			powerService.addHubImpact(hubIds[i], random.nextInt(1000));
+		}
+	}
+
+	/**
+	 * Function to run the mixed load on given number of threads
+	 * @param threads
+	 * @param millis
+	 * @param writePercent
+	 * @return operations per second
+	 * @throws InterruptedException
+	 */
+	double run(int threads, long millis, int writePercent) throws InterruptedException {
+		LongAdder operations = new LongAdder();
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				try {
+					while (running.get()) {
+						operation(random, random.nextInt(100) < writePercent);
+						operations.increment();
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+					running.set(false);
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		long start = System.nanoTime();
+		Thread.sleep(millis);
+		running.set(false);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (failure.get() != null) {
+			throw new IllegalStateException("Operation failed with " + threads + " threads", failure.get());
+		}
+		return operations.sum() / seconds;
+	}
+
+	/**
+	 * Function to perform a random update or query
+	 * @param random
+	 * @param write
+	 */
+	void operation(ThreadLocalRandom random, boolean write) {
+		int hub = random.nextInt(hubIds.length);
+		if (write) {
+			switch (random.nextInt(4)) {
+			case 0:
+				powerService.hubDamage(hubIds[hub], 1 + random.nextInt(48));
+				break;
+			case 1:
+				powerService.hubRepair(hubIds[hub], "E" + hub, random.nextInt(24), random.nextBoolean());
+				break;
+			case 2:
+				powerService.addDistributionHub(hubIds[hub], locations[hub], servedAreas.get(hub));
+				break;
+			default:
+				int code = random.nextInt(postalIds.length);
+				powerService.addPostalCode(postalIds[code], 100 + random.nextInt(1000), 1 + random.nextInt(500));
+			}
+			return;
+		}
+		switch (random.nextInt(6)) {
+		case 0:
+			powerService.peopleOutOfService();
+			break;
+		case 1:
+			powerService.peopleOutOfService(powerService.getHub(hubIds[hub]));
+			break;
+		case 2:
+			powerService.fixOrder(10);
+			break;
+		case 3:
+			powerService.mostDamagedPostalCodes(10);
+			break;
+		case 4:
+			powerService.underservedPostalByPopulation(10);
+			break;
+		default:
+			powerService.repairPlan(hubIds[hub], 40, 48);
+		}
+	}
+
+	/**
+	 * Function to check that the total of people out of service is
+	 * the sum over the hubs, and that fix order lists every damaged hub
+	 * @return description of the mismatch, null if consistent
+	 */
+	String check() {
+		int total = 0;
+		int damaged = 0;
+		for (String id : hubIds) {
+			DistributionHub hub = powerService.getHub(id);
+			total += powerService.peopleOutOfService(hub);
+			if (hub.getHoursToRepair() > 0) {
+				damaged++;
+			}
+		}
+		if (total != powerService.peopleOutOfService()) {
+			return "people out of service is " + powerService.peopleOutOfService()
+					+ " but the hubs add up to " + total;
+		}
+		int listed = powerService.fixOrder(hubIds.length + 1).size();
+		if (listed != damaged) {
+			return "fix order lists " + listed + " hubs but " + damaged + " are damaged";
+		}
+		return null;
+	}
+
+	//DRIVER CODE
+	public static void main(String[] args) throws InterruptedException {
+		int postalCodes = 100000;
+		long seconds = 5;
+		int writePercent = 10;
+		boolean plain = false;
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Expected name=value but found " + arg);
+			}
+			switch (pair[0]) {
+			case "postalCodes": postalCodes = Integer.parseInt(pair[1]); break;
+			case "seconds": seconds = Long.parseLong(pair[1]); break;
+			case "writePercent": writePercent = Integer.parseInt(pair[1]); break;
+			case "plain": plain = Boolean.parseBoolean(pair[1]); break;
+			default: throw new IllegalArgumentException("Unknown setting " + pair[0]);
+			}
+		}
+
+		//the service reports each repair on stdout, keep it quiet
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		ConcurrentStressTest test = new ConcurrentStressTest(
+				plain ? new PowerService() : new ConcurrentPowerService(), postalCodes);
+		boolean failed = false;
+		try {
+			for (int threads : THREADS) {
+				double throughput = test.run(threads, seconds * 1000, writePercent);
+				String mismatch = test.check();
+				stdout.printf("%2d threads: %,12.0f ops/s%s%n", threads, throughput,
+						mismatch == null ? "" : "  INCONSISTENT: " + mismatch);
+				failed |= mismatch != null;
+			}
+		} catch (IllegalStateException e) {
+			e.printStackTrace(stdout);
+			failed = true;
+		} finally {
+			System.setOut(stdout);
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+}
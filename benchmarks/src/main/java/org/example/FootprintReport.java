@@ -0,0 +1,96 @@
+package org.example;
+/**
+ * Java program to measure the heap used by the status of the power
+ * service for a dataset, e.g. one made by DatasetGenerator with a million
+ * postal codes. It loads postal_codes.txt and hubs.txt of the directory
+ * and reports the heap retained by the object model of the service, by
+ * the struct-of-arrays copy made by toCompactModelStore next to it, which
+ * shares the id strings of the model, and by the copy alone. The heap is
+ * read after full collections, so run it with a single collector, e.g.
+ * -XX:+UseSerialGC, for stable figures.
+ *
+ * Usage: java -cp benchmarks.jar org.example.FootprintReport
+ * [dir=.] [service=plain|concurrent]
+ */
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+
+public class FootprintReport {
+	//collections run before reading the heap
+	private static final int COLLECTIONS = 5;
+
+	/**
+	 * Helper function to return the heap in use after full collections
+	 * @return bytes as long
+	 */
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < COLLECTIONS; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Helper function to format a heap size in megabytes
+	 * @param bytes
+	 * @return text
+	 */
+	private static String megabytes(long bytes) {
+		return String.format("%,.1f MB", bytes / (1024.0 * 1024.0));
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path dir = Path.of(".");
+		boolean concurrent = false;
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Expected name=value but found " + arg);
+			}
+			switch (pair[0]) {
+			case "dir": dir = Path.of(pair[1]); break;
+			case "service": concurrent = pair[1].equals("concurrent"); break;
+			default: throw new IllegalArgumentException("Unknown setting " + pair[0]);
+			}
+		}
+
+		long base = usedHeap();
+		PowerService powerService = concurrent ? new ConcurrentPowerService() : new PowerService();
+		powerService.setServiceLog(null);
+		CsvLoader loader = new CsvLoader();
+		loader.loadPostalCodes(powerService, dir.resolve("postal_codes.txt"));
+		loader.loadDistributionHubs(powerService, dir.resolve("hubs.txt"));
+		long model = usedHeap() - base;
+
+		CompactModelStore store = powerService.toCompactModelStore();
+		long copy = usedHeap() - base - model;
+		String name = powerService.getClass().getSimpleName();
+		Reference.reachabilityFence(powerService);
+		powerService = null;
+		long alone = usedHeap() - base;
+		int postalCodes = store.getPostalCodeCount();
+
+		System.out.printf("%s, %,d postal codes, %,d hubs%n", name, postalCodes,
+				store.getHubCount());
+		System.out.printf("%-26s %12s %12s%n", "Model", "Heap", "Bytes/code");
+		print("Object model", model, postalCodes);
+		print("CompactModelStore copy", copy, postalCodes);
+		print("CompactModelStore alone", alone, postalCodes);
+		Reference.reachabilityFence(store);
+	}
+
+	/**
+	 * Helper function to print a row of the report
+	 * @param model
+	 * @param bytes
+	 * @param postalCodes
+	 */
+	private static void print(String model, long bytes, int postalCodes) {
+		System.out.printf("%-26s %12s %,12.0f%n", model, megabytes(bytes),
+				(double) bytes / Math.max(postalCodes, 1));
+	}
+}
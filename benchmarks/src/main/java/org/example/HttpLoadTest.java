@@ -0,0 +1,224 @@
+package org.example;
+/**
+ * Java program to load test the HTTP server of the power service with
+ * many concurrent dashboard clients. Each client sends one request at a
+ * time, a mix of the queries and writePercent hub damage reports, and
+ * the latency of every request is recorded per endpoint. At the end it
+ * reports the throughput and the latency percentiles seen by the clients.
+ *
+ * Without a url it builds the same synthetic model as
+ * ConcurrentStressTest and serves it from an embedded server.
+ *
+ * Usage: java -cp benchmarks.jar org.example.HttpLoadTest
+ * [url=] [clients=200] [seconds=10] [writePercent=5] [postalCodes=100000]
+ */
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class HttpLoadTest {
+	//kinds of request sent by the clients
+	private static final String[] REQUESTS = {"peopleOutOfService", "peopleOutOfService?hub",
+			"fixOrder", "mostDamagedPostalCodes", "underserved/population", "underserved/area",
+			"repairPlan", "hubDamage"};
+	private static final int HUB_DAMAGE = 7;
+	//hub ids in the answer of fixOrder
+	private static final Pattern HUB_ID = Pattern.compile("\"hubId\":\"([^\"]*)\"");
+
+	private final String baseUrl;
+	private final HttpClient client;
+	private final List<String> hubIds;
+	//latency and errors of each kind of request
+	private final LatencyHistogram[] latencies = new LatencyHistogram[REQUESTS.length];
+	private final LongAdder[] errors = new LongAdder[REQUESTS.length];
+
+	//constructor, the hubs to query are taken from the fix order
+	HttpLoadTest(String baseUrl) throws IOException, InterruptedException {
+		this.baseUrl = baseUrl;
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+		for (int i = 0; i < REQUESTS.length; i++) {
+			latencies[i] = new LatencyHistogram();
+			errors[i] = new LongAdder();
+		}
+		HttpResponse<String> response = client.send(
+				HttpRequest.newBuilder(URI.create(baseUrl + "/fixOrder?limit=1000")).build(),
+				HttpResponse.BodyHandlers.ofString());
+		hubIds = new ArrayList<String>();
+		Matcher matcher = HUB_ID.matcher(response.body());
+		while (matcher.find()) {
+			hubIds.add(matcher.group(1));
+		}
+		if (hubIds.isEmpty()) {
+			throw new IllegalStateException("No damaged hubs to query at " + baseUrl);
+		}
+	}
+
+	/**
+	 * Function to run the clients for given time
+	 * @param clients
+	 * @param millis
+	 * @param writePercent
+	 * @return requests per second
+	 * @throws InterruptedException
+	 */
+	double run(int clients, long millis, int writePercent) throws InterruptedException {
+		LongAdder requests = new LongAdder();
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < clients; t++) {
+			Thread worker = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					int kind = (random.nextInt(100) < writePercent) ? HUB_DAMAGE
+							: random.nextInt(HUB_DAMAGE);
+					send(kind, random);
+					requests.increment();
+				}
+			}, "client-" + t);
+			workers.add(worker);
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		Thread.sleep(millis);
+		running.set(false);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return requests.sum() * 1e9 / (System.nanoTime() - start);
+	}
+
+	/**
+	 * Function to send one request of given kind and record its latency
+	 * @param kind
+	 * @param random
+	 */
+	private void send(int kind, ThreadLocalRandom random) {
+		String hub = hubIds.get(random.nextInt(hubIds.size()));
+		HttpRequest.Builder request;
+		switch (kind) {
+		case 1:
+			request = get("/peopleOutOfService?hub=" + hub);
+			break;
+		case 2:
+			request = get("/fixOrder?limit=10");
+			break;
+		case 3:
+			request = get("/mostDamagedPostalCodes?limit=10");
+			break;
+		case 4:
+			request = get("/underserved/population?limit=10");
+			break;
+		case 5:
+			request = get("/underserved/area?limit=10");
+			break;
+		case 6:
+			request = get("/repairPlan?hub=" + hub + "&maxDistance=40&maxTime=48");
+			break;
+		case HUB_DAMAGE:
+			request = HttpRequest.newBuilder(URI.create(baseUrl + "/hubDamage?hub=" + hub
+					+ "&hours=" + (1 + random.nextInt(48))))
+					.POST(HttpRequest.BodyPublishers.noBody());
+			break;
+		default:
+			request = get("/peopleOutOfService");
+		}
+		long start = System.nanoTime();
+		try {
+			HttpResponse<Void> response = client.send(request.build(),
+					HttpResponse.BodyHandlers.discarding());
+			if (response.statusCode() != 200) {
+				errors[kind].increment();
+			}
+		} catch (IOException e) {
+			errors[kind].increment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		latencies[kind].record(System.nanoTime() - start);
+	}
+
+	private HttpRequest.Builder get(String path) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+	}
+
+	/**
+	 * Function to print the requests, errors and latencies in
+	 * milliseconds of each kind of request
+	 * @param out
+	 */
+	void report(PrintStream out) {
+		out.printf("%-26s %10s %8s %9s %9s %9s %9s%n", "Request", "Count", "Errors",
+				"p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (int i = 0; i < REQUESTS.length; i++) {
+			LatencyHistogram histogram = latencies[i];
+			out.printf("%-26s %,10d %8d %9.2f %9.2f %9.2f %9.2f%n", REQUESTS[i],
+					histogram.getCount(), errors[i].sum(), histogram.getPercentile(0.5) / 1e6,
+					histogram.getPercentile(0.99) / 1e6, histogram.getPercentile(0.999) / 1e6,
+					histogram.getMax() / 1e6);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String url = null;
+		int clients = 200;
+		long seconds = 10;
+		int writePercent = 5;
+		int postalCodes = 100000;
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Expected name=value but found " + arg);
+			}
+			switch (pair[0]) {
+			case "url": url = pair[1]; break;
+			case "clients": clients = Integer.parseInt(pair[1]); break;
+			case "seconds": seconds = Long.parseLong(pair[1]); break;
+			case "writePercent": writePercent = Integer.parseInt(pair[1]); break;
+			case "postalCodes": postalCodes = Integer.parseInt(pair[1]); break;
+			default: throw new IllegalArgumentException("Unknown setting " + pair[0]);
+			}
+		}
+
+		PowerServiceHttpServer server = null;
+		if (url == null) {
+			PowerService powerService = new ConcurrentPowerService();
+			//report nothing, the clients count the rejected requests
+			powerService.setServiceLog(null);
+			new ConcurrentStressTest(powerService, postalCodes);
+			server = new PowerServiceHttpServer(powerService, 0);
+			server.start();
+			url = "http://localhost:" + server.getPort();
+			System.out.println("Serving " + postalCodes + " postal codes at " + url + " on "
+					+ (server.isVirtualThreads() ? "virtual threads" : "a thread pool"));
+		}
+		try {
+			HttpLoadTest test = new HttpLoadTest(url);
+			double throughput = test.run(clients, seconds * 1000, writePercent);
+			System.out.printf("%d clients: %,.0f requests/s%n", clients, throughput);
+			test.report(System.out);
+			if (server != null) {
+				System.out.println();
+				System.out.print(server.getMetrics().toTable());
+			}
+		} finally {
+			if (server != null) {
+				server.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package org.example;
+/**
+ * JMH benchmarks for the operations of the power service system.
+ * Each trial builds a seeded synthetic model with the given number of
+ * postal codes and one hub for every ten postal codes, so the smallest
+ * size is close to the bundled postal_codes.txt and hubs.txt and the
+ * largest one has 1M postal codes and 100k hubs.
+ *
+ * saveToFile writes hubs.txt and postal_codes.txt to the working
+ * directory, hence the benchmarks should be run from a scratch directory.
+ */
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PowerServiceBenchmark {
+	//number of postal codes, there is one hub for every ten codes
+	@Param({"100", "10000", "100000", "1000000"})
+	public int postalCodes;
+
+	//limit passed to the ranked queries
+	@Param({"10"})
+	public int limit;
+
+	//maximum distance passed to repair plan
+	@Param({"40"})
+	public int maxDistance;
+
+	private PowerService powerService;
+	private String[] postalIds;
+	private String[] hubIds;
+	private Point[] locations;
+	private Set<String>[] servedAreas;
+	private int next;
+	private PrintStream stdout;
+
+	/**
+	 * Function to build the model for the trial
+	 */
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		//the service reports invalid input on stdout, keep it quiet
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Random random = new Random(42);
+		int hubs = Math.max(postalCodes / 10, 1);
+		//keep the density of hubs constant as the model grows
+		int side = (int) Math.sqrt(hubs) * 10 + 1;
+		powerService = new PowerService();
+		postalIds = new String[postalCodes];
+		for (int i = 0; i < postalCodes; i++) {
+			postalIds[i] = String.format("P%07d", i);
+			powerService.addPostalCode(postalIds[i], 100 + random.nextInt(1000), 1 + random.nextInt(500));
+			powerService.addDamagedHub(postalIds[i], random.nextInt(100));
+		}
+		hubIds = new String[hubs];
+		locations = new Point[hubs];
+		servedAreas = new Set[hubs];
+		for (int i = 0; i < hubs; i++) {
+			hubIds[i] = String.format("H%06d", i);
+			locations[i] = new Point(random.nextInt(side), random.nextInt(side));
+			servedAreas[i] = new HashSet<String>();
+			for (int j = 0; j < 6; j++) {
+				servedAreas[i].add(postalIds[random.nextInt(postalCodes)]);
+			}
+			powerService.addDistributionHub(hubIds[i], locations[i], servedAreas[i]);
+			//damage a third of the hubs
+			if (random.nextInt(3) == 0) {
+				powerService.hubDamage(hubIds[i], 1 + random.nextInt(48));
+			}
+			powerService.addHubImpact(hubIds[i], random.nextInt(1000));
+		}
+	}
+
+	/**
+	 * Function to restore stdout after the trial
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	/**
+	 * Helper function to pick the next record in round robin
+	 * @param count
+	 * @return index
+	 */
+	private int next(int count) {
+		next = (next + 1) % count;
+		return next;
+	}
+
+	@Benchmark
+	public boolean addPostalCode() {
+		int i = next(postalIds.length);
+		return powerService.addPostalCode(postalIds[i], 100 + (i & 1023), 1 + (i & 255));
+	}
+
+	@Benchmark
+	public boolean addDistributionHub() {
+		int i = next(hubIds.length);
+		return powerService.addDistributionHub(hubIds[i], locations[i], servedAreas[i]);
+	}
+
+	@Benchmark
+	public int hubDamage() {
+		int i = next(hubIds.length);
+		powerService.hubDamage(hubIds[i], 1 + (i & 31));
+		return i;
+	}
+
+	@Benchmark
+	public int peopleOutOfService() {
+		return powerService.peopleOutOfService();
+	}
+
+	@Benchmark
+	public int peopleOutOfServiceByHub() {
+		return powerService.peopleOutOfService(powerService.getHub(hubIds[next(hubIds.length)]));
+	}
+
+	@Benchmark
+	public List<HubImpact> fixOrder() {
+		return powerService.fixOrder(limit);
+	}
+
+	@Benchmark
+	public List<DamagedPostalCodes> mostDamagedPostalCodes() {
+		return powerService.mostDamagedPostalCodes(limit);
+	}
+
+	@Benchmark
+	public List<String> underservedPostalByPopulation() {
+		return powerService.underservedPostalByPopulation(limit);
+	}
+
+	@Benchmark
+	public List<String> underservedPostalByArea() {
+		return powerService.underservedPostalByArea(limit);
+	}
+
+	@Benchmark
+	public List<HubImpact> repairPlan() {
+		return powerService.repairPlan(hubIds[next(hubIds.length)], maxDistance, 48);
+	}
+
+	@Benchmark
+	public List<Integer> rateOfServiceRestoration() {
+		return powerService.rateOfServiceRestoration(10, 8,
+				RestorationSimulator.DispatchPolicy.MOST_PEOPLE_PER_HOUR);
+	}
+
+	/**
+	 * Function to measure a field report, which reports a message
+	 * on every call, with each kind of service log
+	 */
+	@Benchmark
+	public ServiceStatus hubRepair(LogState state) {
+		int i = next(hubIds.length);
+		return powerService.tryHubRepair(hubIds[i], state.employeeIds[i & 63], 1 + (i & 31),
+				(i & 1) == 0);
+	}
+
+	/**
+	 * Function to measure a checkpoint, one hub and one postal code
+	 * are changed before each save so that both files are written
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 10)
+	public void saveToFile(SaveState state) {
+		int i = next(hubIds.length);
+		powerService.addHubImpact(hubIds[i], i);
+		powerService.addPostalCode(postalIds[i], 100 + (i & 1023), 1 + (i & 255));
+		powerService.saveToFile();
+	}
+
+	/**
+	 * State to set the service log of the hubRepair benchmark: the
+	 * console, which prints to the discarded stdout, an asynchronous
+	 * log, or none
+	 */
+	@State(Scope.Benchmark)
+	public static class LogState {
+		@Param({"console", "async", "none"})
+		public String serviceLog;
+
+		private String[] employeeIds = new String[64];
+		private AsyncServiceLog asyncLog;
+
+		@Setup(Level.Trial)
+		public void setServiceLog(PowerServiceBenchmark benchmark) {
+			for (int i = 0; i < employeeIds.length; i++) {
+				employeeIds[i] = "E" + i;
+			}
+			if (serviceLog.equals("async")) {
+				asyncLog = new AsyncServiceLog();
+				benchmark.powerService.setServiceLog(asyncLog);
+			}
+			else if (serviceLog.equals("none")) {
+				benchmark.powerService.setServiceLog(null);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void closeServiceLog() {
+			if (asyncLog != null) {
+				asyncLog.close();
+			}
+		}
+	}
+
+	/**
+	 * State to make sure saveToFile does not overwrite the data
+	 * files of the project
+	 */
+	@State(Scope.Benchmark)
+	public static class SaveState {
+		@Setup(Level.Trial)
+		public void checkDirectory() {
+			if (Files.exists(Path.of("pom.xml"))) {
+				throw new IllegalStateException("Run saveToFile benchmark from a scratch directory");
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package org.example;
+/**
+ * Java class to print the messages of the power service on a background
+ * thread, so reporting a message never waits for the console. Messages
+ * are put on a bounded queue without blocking and at most maxPerSecond
+ * of them are accepted each second. The messages beyond that, or beyond
+ * the capacity of the queue, are dropped and only their number is
+ * printed, so a burst of invalid reports cannot flood the console.
+ */
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AsyncServiceLog implements ServiceLog, Closeable {
+	//default number of messages waiting to be printed
+	public static final int DEFAULT_CAPACITY = 1024;
+	//default number of messages accepted per second
+	public static final int DEFAULT_MAX_PER_SECOND = 100;
+	//time to wait for a message before checking for drops anyway
+	private static final long POLL_MILLIS = 200;
+
+	//attributes
+	private final PrintStream out;
+	private final int maxPerSecond;
+	private final BlockingQueue<String> queue;
+	private final Thread writer;
+	private volatile boolean running = true;
+	//second of the current rate window and messages accepted in it
+	private final AtomicLong windowSecond = new AtomicLong();
+	private final AtomicInteger windowCount = new AtomicInteger();
+	//messages dropped so far, and how many of them are printed as dropped
+	private final AtomicLong dropped = new AtomicLong();
+	private long droppedReported = 0;
+
+	//constructors
+	public AsyncServiceLog() {
+		this(System.out, DEFAULT_CAPACITY, DEFAULT_MAX_PER_SECOND);
+	}
+
+	public AsyncServiceLog(PrintStream out, int capacity, int maxPerSecond) {
+		if (capacity <= 0 || maxPerSecond <= 0) {
+			throw new IllegalArgumentException("Capacity and rate should be positive");
+		}
+		this.out = out;
+		this.maxPerSecond = maxPerSecond;
+		this.queue = new ArrayBlockingQueue<String>(capacity);
+		this.writer = new Thread(this::writeLoop, "service-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Function to report a message, it returns at once and drops
+	 * the message if the rate or the queue is exceeded
+	 * @param message
+	 */
+	@Override
+	public void log(String message) {
+		long second = System.nanoTime() / 1_000_000_000L;
+		long window = windowSecond.get();
+		if (second != window && windowSecond.compareAndSet(window, second)) {
+			windowCount.set(0);
+		}
+		if (!running || windowCount.incrementAndGet() > maxPerSecond || !queue.offer(message)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Function to return the number of messages dropped so far
+	 * @return count
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Function run by the writer thread, it prints the messages in
+	 * the order they were accepted and the number of messages dropped
+	 * whenever the queue runs empty
+	 */
+	private void writeLoop() {
+		try {
+			while (running || !queue.isEmpty()) {
+				String message = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (message != null) {
+					out.println(message);
+				}
+				if (queue.isEmpty()) {
+					reportDropped();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		reportDropped();
+		out.flush();
+	}
+
+	/**
+	 * Helper function to print the number of messages
+	 * dropped since the last time
+	 */
+	private void reportDropped() {
+		long total = dropped.get();
+		if (total > droppedReported) {
+			out.println((total - droppedReported) + " log messages dropped");
+			droppedReported = total;
+		}
+	}
+
+	/**
+	 * Function to print the messages still waiting and stop the
+	 * writer thread, messages reported afterwards are dropped
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package org.example;
+/**
+ * Java class to represent a shared power service whose list queries are
+ * answered from a cache, for dashboards which repeat the same queries
+ * while the status changes only now and then. The results of fixOrder,
+ * mostDamagedPostalCodes and the under served queries are kept per
+ * method, together with the limit and the version of the snapshot they
+ * were computed from. Each result is a prefix of the same order, so a
+ * query with a smaller limit is answered by slicing the cached result and
+ * only a larger limit computes it again, which keeps one result per
+ * method however many limits are asked for. A cached result is used
+ * only while that version is still the one published last, so every
+ * change which publishes a new snapshot invalidates exactly the results
+ * computed before it, and a change which is rejected or changes nothing
+ * keeps them valid.
+ *
+ * The cache holds at most maxEntries results and evicts the one used
+ * least recently. Results with an invalid limit or no entries are not
+ * cached, they are cheap and may report a message to the service log.
+ * The cached lists are shared between callers and cannot be modified.
+ */
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class CachingPowerService extends ConcurrentPowerService {
+	//default number of results kept
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	//attributes
+	private final int maxEntries;
+	//cached results of each method in order of use, guarded by itself
+	private final LinkedHashMap<String, CachedResult> results;
+	//counters of the lookups and evictions
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	//constructors
+	public CachingPowerService() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public CachingPowerService(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Cache size should be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.results = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+				if (size() > CachingPowerService.this.maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public List<HubImpact> fixOrder(int limit) {
+		if (limit <= 0) {
+			return super.fixOrder(limit);
+		}
+		return query("fixOrder", snapshot -> snapshot.fixOrder(limit), limit);
+	}
+
+	@Override
+	public List<DamagedPostalCodes> mostDamagedPostalCodes(int limit) {
+		if (limit <= 0) {
+			return super.mostDamagedPostalCodes(limit);
+		}
+		return query("mostDamagedPostalCodes", snapshot -> snapshot.mostDamagedPostalCodes(limit),
+				limit);
+	}
+
+	@Override
+	public List<String> underservedPostalByPopulation(int limit) {
+		if (limit <= 0) {
+			return super.underservedPostalByPopulation(limit);
+		}
+		return query("underservedPostalByPopulation",
+				snapshot -> snapshot.underservedPostalByPopulation(limit), limit);
+	}
+
+	@Override
+	public List<String> underservedPostalByArea(int limit) {
+		if (limit <= 0) {
+			return super.underservedPostalByArea(limit);
+		}
+		return query("underservedPostalByArea",
+				snapshot -> snapshot.underservedPostalByArea(limit), limit);
+	}
+
+	/**
+	 * Helper function to return the result of a query from the cache,
+	 * or compute it from the snapshot published last and cache it.
+	 * A cached result answers every limit up to its own, and every
+	 * limit if it holds fewer entries than its limit. The result is
+	 * computed outside the lock, and replaces a cached result only if
+	 * that one is from an older version or has a smaller limit.
+	 * @param method
+	 * @param compute
+	 * @param limit positive
+	 * @return result as of the snapshot published last
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> query(String method, Function<PowerServiceSnapshot, List<T>> compute,
+			int limit) {
+		PowerServiceSnapshot snapshot = snapshot();
+		long version = snapshot.getVersion();
+		synchronized (results) {
+			CachedResult cached = results.get(method);
+			if (cached != null && cached.version == version && cached.covers(limit)) {
+				hits.incrementAndGet();
+				return (List<T>) cached.slice(limit);
+			}
+		}
+		misses.incrementAndGet();
+		List<T> result = compute.apply(snapshot);
+		if (result.isEmpty()) {
+			return result;
+		}
+		result = Collections.unmodifiableList(result);
+		synchronized (results) {
+			CachedResult cached = results.get(method);
+			if (cached == null || cached.version < version
+					|| (cached.version == version && !cached.covers(limit))) {
+				results.put(method, new CachedResult(version, limit, result));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Function to return the number of queries answered from the cache
+	 * @return count
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Function to return the number of queries computed from the snapshot
+	 * @return count
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Function to return the number of results evicted to keep
+	 * the cache within its size
+	 * @return count
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Function to return the number of results cached, including
+	 * results of older versions not evicted yet
+	 * @return count
+	 */
+	public int getCacheSize() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	/**
+	 * Function to return the maximum number of results cached
+	 * @return count
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Function to remove all cached results, the counters are kept
+	 */
+	public void clearCache() {
+		synchronized (results) {
+			results.clear();
+		}
+	}
+
+	/**
+	 * Cached result with the version of the snapshot it was computed from
+	 */
+	private static final class CachedResult {
+		private final long version;
+		private final int limit;
+		private final List<?> result;
+
+		CachedResult(long version, int limit, List<?> result) {
+			this.version = version;
+			this.limit = limit;
+			this.result = result;
+		}
+
+		/**
+		 * Function to check if the result answers the query with given limit
+		 * @param queryLimit
+		 * @return true, if it is complete or computed with a limit as large
+		 */
+		boolean covers(int queryLimit) {
+			return queryLimit <= limit || result.size() < limit;
+		}
+
+		/**
+		 * Function to return the first entries of the result
+		 * @param queryLimit
+		 * @return result, or its prefix of queryLimit entries
+		 */
+		List<?> slice(int queryLimit) {
+			return queryLimit >= result.size() ? result : result.subList(0, queryLimit);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package org.example;
+/**
+ * Java class to store the hubs and postal codes of the power service
+ * system in struct-of-arrays form. Ids are interned to dense integer
+ * indexes by {@link IdDictionary}, the attributes of hubs and postal codes
+ * live in primitive arrays indexed by them, and the postal codes served by
+ * a hub are a sorted int array. The hubs repaired by each employee are
+ * kept as well, as they are not part of hubs.txt or postal_codes.txt.
+ *
+ * The store is a copy of the status, made by toCompactModelStore for
+ * the binary snapshot file. The service itself keeps its object model,
+ * so copying into the store adds to the heap while the copy is alive.
+ * Backing the live service with the store is out of scope: its indexes
+ * and the persistent snapshots of ConcurrentPowerService hold the hub and
+ * postal code objects. FootprintReport in the benchmarks measures both
+ * models, with a million postal codes the object model of PowerService
+ * retains about 500 bytes per postal code and the store alone about 85.
+ */
+import java.util.Arrays;
+import java.util.Collection;
+
+public class CompactModelStore {
+	//postal code ids
+	private IdDictionary postalIds;
+	//population of each postal code
+	private int[] population;
+	//area of each postal code
+	private int[] area;
+	//number of repairs of each postal code
+	private int[] repairs;
+
+	//hub ids
+	private IdDictionary hubIds;
+	//x coordinate of each hub
+	private int[] hubX;
+	//y coordinate of each hub
+	private int[] hubY;
+	//hours to repair each hub
+	private float[] hoursToRepair;
+	//impact value of each hub
+	private double[] impact;
+	//sorted postal code indexes served by each hub
+	private int[][] served;
+
+	//employee ids
+	private IdDictionary employeeIds;
+	//hub indexes repaired by each employee, in order of last repair
+	private int[][] employeeHubs;
+
+	//constructors
+	public CompactModelStore() {
+		this(16, 16);
+	}
+
+	public CompactModelStore(int expectedPostalCodes, int expectedHubs) {
+		expectedPostalCodes = Math.max(expectedPostalCodes, 16);
+		expectedHubs = Math.max(expectedHubs, 16);
+		postalIds = new IdDictionary(expectedPostalCodes);
+		population = new int[expectedPostalCodes];
+		area = new int[expectedPostalCodes];
+		repairs = new int[expectedPostalCodes];
+		hubIds = new IdDictionary(expectedHubs);
+		hubX = new int[expectedHubs];
+		hubY = new int[expectedHubs];
+		hoursToRepair = new float[expectedHubs];
+		impact = new double[expectedHubs];
+		served = new int[expectedHubs][];
+		employeeIds = new IdDictionary(16);
+		employeeHubs = new int[16][];
+	}
+
+	/**
+	 * Function to add new postal code or update the existing one
+	 * @param postalCode
+	 * @param numPeople
+	 * @param areaCovered
+	 * @return index of postal code
+	 */
+	public int addPostalCode(String postalCode, int numPeople, int areaCovered) {
+		int index = internPostalCode(postalCode);
+		population[index] = numPeople;
+		area[index] = areaCovered;
+		return index;
+	}
+
+	/**
+	 * Function to set the number of repairs of given postal code
+	 * @param postalCode
+	 * @param numRepairs
+	 */
+	public void setRepairCount(String postalCode, int numRepairs) {
+		repairs[internPostalCode(postalCode)] = numRepairs;
+	}
+
+	/**
+	 * Function to add new hub or update the existing one, postal codes
+	 * which are not known yet are added with no population
+	 * @param hubIdentifier
+	 * @param x
+	 * @param y
+	 * @param servicedAreas
+	 * @return index of hub
+	 */
+	public int addDistributionHub(String hubIdentifier, int x, int y,
+			Collection<String> servicedAreas) {
+		int index = internHub(hubIdentifier);
+		hubX[index] = x;
+		hubY[index] = y;
+		int[] codes = new int[servicedAreas.size()];
+		int count = 0;
+		for (String code : servicedAreas) {
+			codes[count++] = internPostalCode(code);
+		}
+		Arrays.sort(codes);
+		//drop duplicate codes
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || codes[unique - 1] != codes[i]) {
+				codes[unique++] = codes[i];
+			}
+		}
+		served[index] = (unique == codes.length) ? codes : Arrays.copyOf(codes, unique);
+		return index;
+	}
+
+	/**
+	 * Function to add new hub or update the existing one with the
+	 * indexes of postal codes it serves, which should be sorted,
+	 * unique and already part of the store
+	 * @param hubIdentifier
+	 * @param x
+	 * @param y
+	 * @param servedCodes
+	 * @return index of hub
+	 */
+	public int addDistributionHub(String hubIdentifier, int x, int y, int[] servedCodes) {
+		int index = internHub(hubIdentifier);
+		hubX[index] = x;
+		hubY[index] = y;
+		served[index] = servedCodes;
+		return index;
+	}
+
+	/**
+	 * Function to set the hours to repair of given hub
+	 * @param hub index of hub
+	 * @param hours
+	 */
+	public void setHoursToRepair(int hub, float hours) {
+		hoursToRepair[hub] = hours;
+	}
+
+	/**
+	 * Function to set the impact value of given hub
+	 * @param hub index of hub
+	 * @param impactValue
+	 */
+	public void setImpactValue(int hub, double impactValue) {
+		impact[hub] = impactValue;
+	}
+
+	/**
+	 * Function to add the hubs repaired by given employee, hubs
+	 * which are not part of the store are skipped
+	 * @param employeeId
+	 * @param hubs hub ids in order of last repair
+	 * @return index of employee
+	 */
+	public int addEmployee(String employeeId, Collection<String> hubs) {
+		int[] indexes = new int[hubs.size()];
+		int count = 0;
+		for (String hub : hubs) {
+			int index = hubIds.indexOf(hub);
+			if (index >= 0) {
+				indexes[count++] = index;
+			}
+		}
+		return addEmployee(employeeId, Arrays.copyOf(indexes, count));
+	}
+
+	/**
+	 * Function to add the hubs repaired by given employee, as indexes
+	 * of hubs which are already part of the store
+	 * @param employeeId
+	 * @param hubs hub indexes in order of last repair
+	 * @return index of employee
+	 */
+	public int addEmployee(String employeeId, int[] hubs) {
+		int index = employeeIds.intern(employeeId);
+		if (index == employeeHubs.length) {
+			employeeHubs = Arrays.copyOf(employeeHubs, index * 2);
+		}
+		employeeHubs[index] = hubs;
+		return index;
+	}
+
+	/**
+	 * Function to determine the people out of service for given hub
+	 * @param hub index of hub
+	 * @return integer
+	 */
+	public int peopleOutOfService(int hub) {
+		if (hoursToRepair[hub] <= 0) {
+			return 0;
+		}
+		int outOfService = 0;
+		for (int code : served[hub]) {
+			outOfService += population[code];
+		}
+		return outOfService;
+	}
+
+	/**
+	 * Function to determine the people out of service for all hubs
+	 * @return integer
+	 */
+	public int peopleOutOfService() {
+		int outOfService = 0;
+		for (int hub = 0; hub < hubIds.size(); hub++) {
+			outOfService += peopleOutOfService(hub);
+		}
+		return outOfService;
+	}
+
+	//getter functions for attributes
+	public int getHubIndex(String hubIdentifier) {
+		return hubIds.indexOf(hubIdentifier);
+	}
+
+	public String getHubId(int hub) {
+		return hubIds.getId(hub);
+	}
+
+	public int getHubCount() {
+		return hubIds.size();
+	}
+
+	public int getX(int hub) {
+		return hubX[hub];
+	}
+
+	public int getY(int hub) {
+		return hubY[hub];
+	}
+
+	public float getHoursToRepair(int hub) {
+		return hoursToRepair[hub];
+	}
+
+	public double getImpactValue(int hub) {
+		return impact[hub];
+	}
+
+	/**
+	 * Function to return the postal codes served by given hub,
+	 * the returned array is shared and should not be changed
+	 * @param hub index of hub
+	 * @return sorted postal code indexes
+	 */
+	public int[] getServed(int hub) {
+		return served[hub];
+	}
+
+	public int getPostalIndex(String postalCode) {
+		return postalIds.indexOf(postalCode);
+	}
+
+	public String getPostalCode(int code) {
+		return postalIds.getId(code);
+	}
+
+	public int getPostalCodeCount() {
+		return postalIds.size();
+	}
+
+	public int getPopulation(int code) {
+		return population[code];
+	}
+
+	public int getArea(int code) {
+		return area[code];
+	}
+
+	public int getRepairCount(int code) {
+		return repairs[code];
+	}
+
+	public String getEmployeeId(int employee) {
+		return employeeIds.getId(employee);
+	}
+
+	public int getEmployeeCount() {
+		return employeeIds.size();
+	}
+
+	/**
+	 * Function to return the hubs repaired by given employee,
+	 * the returned array is shared and should not be changed
+	 * @param employee index of employee
+	 * @return hub indexes in order of last repair
+	 */
+	public int[] getEmployeeHubs(int employee) {
+		return employeeHubs[employee];
+	}
+
+	/**
+	 * Helper function to intern the postal code and make room
+	 * for its attributes
+	 * @param postalCode
+	 * @return index of postal code
+	 */
+	private int internPostalCode(String postalCode) {
+		int index = postalIds.intern(postalCode);
+		if (index == population.length) {
+			int capacity = index * 2;
+			population = Arrays.copyOf(population, capacity);
+			area = Arrays.copyOf(area, capacity);
+			repairs = Arrays.copyOf(repairs, capacity);
+		}
+		return index;
+	}
+
+	/**
+	 * Helper function to intern the hub and make room
+	 * for its attributes
+	 * @param hubIdentifier
+	 * @return index of hub
+	 */
+	private int internHub(String hubIdentifier) {
+		int index = hubIds.intern(hubIdentifier);
+		if (index == hubX.length) {
+			int capacity = index * 2;
+			hubX = Arrays.copyOf(hubX, capacity);
+			hubY = Arrays.copyOf(hubY, capacity);
+			hoursToRepair = Arrays.copyOf(hoursToRepair, capacity);
+			impact = Arrays.copyOf(impact, capacity);
+			served = Arrays.copyOf(served, capacity);
+		}
+		return index;
+	}
+}
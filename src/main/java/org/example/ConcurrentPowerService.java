@@ -0,0 +1,364 @@
+package org.example;
+/**
+ * Java class to represent the power service system when it is shared
+ * between threads, e.g. field crews reporting repairs while dashboards
+ * run queries. It has the same operations as {@link PowerService}.
+ *
+ * Every change to a hub or postal code also updates indexes shared by
+ * all of them (people out of service, fix order queue, served fractions,
+ * spatial grid), so changes are applied one at a time under the writer
+ * lock. After each change the writer publishes a new immutable
+ * {@link PowerServiceSnapshot}, and the queries are answered from the
+ * snapshot published last without taking any lock. Hence readers never
+ * wait for writers, and a change such as addDistributionHub, which
+ * touches the hub, its postal codes and postalCodeToHub, is seen either
+ * completely or not at all. A bulk load is published once, at its end.
+ *
+ * A caller which runs several queries that should agree with each other
+ * can pin one version with snapshot() and query it instead.
+ *
+ * With a {@link MutationLog} attached a change is logged under the lock
+ * and published before it is durable, the caller waits for the log only
+ * after releasing the lock, so writers waiting at the same time share
+ * one fsync.
+ */
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentPowerService extends PowerService {
+	//lock held by the changes, queries do not take it
+	private final ReentrantLock writeLock = new ReentrantLock();
+	//snapshot published last, null till first needed
+	private volatile PowerServiceSnapshot snapshot;
+
+	/**
+	 * Function to return the snapshot published last, all queries
+	 * on it see the same version of the status. The first snapshot
+	 * is published on first use rather than by the constructor, so
+	 * the service is fully constructed before it is copied.
+	 * @return snapshot
+	 */
+	public PowerServiceSnapshot snapshot() {
+		PowerServiceSnapshot current = snapshot;
+		if (current == null) {
+			writeLock.lock();
+			try {
+				if (snapshot == null) {
+					snapshot = publishSnapshot(null);
+				}
+				current = snapshot;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Function to return the version of the snapshot published last
+	 * @return version
+	 */
+	public long getVersion() {
+		return snapshot().getVersion();
+	}
+
+	/**
+	 * Helper function to publish the changes and release the writer lock.
+	 * Changes made inside another change, e.g. the records of a bulk
+	 * load, are published by the outermost one.
+	 */
+	private void publishAndUnlock() {
+		try {
+			if (writeLock.getHoldCount() == 1) {
+				snapshot = publishSnapshot(snapshot);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public ServiceStatus tryAddPostalCode(String postalCode, int population, int area) {
+		ServiceStatus status;
+		long sequence;
+		writeLock.lock();
+		try {
+			status = super.tryAddPostalCode(postalCode, population, area);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		return awaitLogged(status, sequence);
+	}
+
+	@Override
+	public ServiceStatus tryAddDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas) {
+		ServiceStatus status;
+		long sequence;
+		writeLock.lock();
+		try {
+			status = super.tryAddDistributionHub(hubIdentifier, location, servicedAreas);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		return awaitLogged(status, sequence);
+	}
+
+	@Override
+	public int addPostalCodes(Iterable<PostalCodeRecord> records) {
+		writeLock.lock();
+		try {
+			return super.addPostalCodes(records);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public int addDistributionHubs(Iterable<HubRecord> records) {
+		writeLock.lock();
+		try {
+			return super.addDistributionHubs(records);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public ServiceStatus tryHubDamage(String hubIdentifier, float repairEstimate) {
+		ServiceStatus status;
+		long sequence;
+		writeLock.lock();
+		try {
+			status = super.tryHubDamage(hubIdentifier, repairEstimate);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		return awaitLogged(status, sequence);
+	}
+
+	@Override
+	public ServiceStatus tryHubRepair(String hubIdentifier, String employeeId,
+			float repairTime, boolean inService) {
+		ServiceStatus status;
+		long sequence;
+		writeLock.lock();
+		try {
+			status = super.tryHubRepair(hubIdentifier, employeeId, repairTime, inService);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		return awaitLogged(status, sequence);
+	}
+
+	/**
+	 * Function to wait till the record of a change is on disk, it
+	 * returns at once while the writer lock is held and the changes
+	 * wait after releasing it, so other writers can proceed and be
+	 * forced to disk with the same fsync
+	 * @param status
+	 * @param sequence
+	 * @return status, else LOG_FAILURE if the record is not on disk
+	 */
+	@Override
+	protected ServiceStatus awaitLogged(ServiceStatus status, long sequence) {
+		if (writeLock.isHeldByCurrentThread()) {
+			return status;
+		}
+		return super.awaitLogged(status, sequence);
+	}
+
+	@Override
+	public void addHubImpact(String id, int impactValue) {
+		long before;
+		long sequence;
+		writeLock.lock();
+		try {
+			before = getLoggedSequence();
+			super.addHubImpact(id, impactValue);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		//wait only if the change was logged
+		if (sequence != before) {
+			awaitLogged(ServiceStatus.UPDATED, sequence);
+		}
+	}
+
+	@Override
+	public void addDamagedHub(String id, int numRepairs) {
+		long before;
+		long sequence;
+		writeLock.lock();
+		try {
+			before = getLoggedSequence();
+			super.addDamagedHub(id, numRepairs);
+			sequence = getLoggedSequence();
+		} finally {
+			publishAndUnlock();
+		}
+		//wait only if the change was logged
+		if (sequence != before) {
+			awaitLogged(ServiceStatus.UPDATED, sequence);
+		}
+	}
+
+	@Override
+	public void setMutationLog(MutationLog mutationLog) {
+		writeLock.lock();
+		try {
+			super.setMutationLog(mutationLog);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Function to set the sink of the messages, the snapshot published
+	 * last reports to it as well
+	 * @param serviceLog
+	 */
+	@Override
+	public void setServiceLog(ServiceLog serviceLog) {
+		writeLock.lock();
+		try {
+			super.setServiceLog(serviceLog);
+			if (snapshot != null) {
+				snapshot = snapshot.withServiceLog(serviceLog);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void compactLog() {
+		writeLock.lock();
+		try {
+			super.compactLog();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean loadSnapshot(String fileName) {
+		writeLock.lock();
+		try {
+			return super.loadSnapshot(fileName);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	/**
+	 * Function to save the status to hubs.txt and postal_codes.txt,
+	 * it holds the writer lock as the lines saved last are cached
+	 */
+	@Override
+	public void saveToFile() {
+		writeLock.lock();
+		try {
+			super.saveToFile();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public int peopleOutOfService() {
+		return snapshot().peopleOutOfService();
+	}
+
+	@Override
+	public int peopleOutOfService(DistributionHub hub) {
+		return snapshot().peopleOutOfService(hub);
+	}
+
+	@Override
+	public DistributionHub getHub(String hubId) {
+		return snapshot().getHub(hubId);
+	}
+
+	@Override
+	public List<HubImpact> fixOrder(int limit) {
+		return snapshot().fixOrder(limit);
+	}
+
+	@Override
+	public List<DamagedPostalCodes> mostDamagedPostalCodes(int limit) {
+		return snapshot().mostDamagedPostalCodes(limit);
+	}
+
+	@Override
+	public RestorationSimulator restorationSimulator() {
+		return snapshot().restorationSimulator();
+	}
+
+	@Override
+	public RepairScheduler repairScheduler() {
+		return snapshot().repairScheduler();
+	}
+
+	/**
+	 * Function to return the crews known from the repairs reported so
+	 * far, it holds the writer lock as the employees are not part of
+	 * the snapshot
+	 * @return list of crews
+	 */
+	@Override
+	public List<Crew> getCrews() {
+		writeLock.lock();
+		try {
+			return super.getCrews();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public List<HubImpact> repairPlan(String startHub, int maxDistance, float maxTime) {
+		return snapshot().repairPlan(startHub, maxDistance, maxTime);
+	}
+
+	@Override
+	public List<RepairPlanResult> repairPlans(List<String> startHubs, int maxDistance,
+			float maxTime) {
+		return snapshot().repairPlans(startHubs, maxDistance, maxTime);
+	}
+
+	@Override
+	public List<String> underservedPostalByPopulation(int limit) {
+		return snapshot().underservedPostalByPopulation(limit);
+	}
+
+	@Override
+	public List<String> underservedPostalByArea(int limit) {
+		return snapshot().underservedPostalByArea(limit);
+	}
+
+	/**
+	 * Function to copy the status into a compact store, it is copied
+	 * from the snapshot published last, which is also what saveSnapshot
+	 * writes. The employees are not in the snapshot and are copied
+	 * under the lock.
+	 * @return store with all hubs and postal codes
+	 */
+	@Override
+	public CompactModelStore toCompactModelStore() {
+		CompactModelStore store = snapshot().toCompactModelStore();
+		writeLock.lock();
+		try {
+			copyEmployees(store);
+		} finally {
+			writeLock.unlock();
+		}
+		return store;
+	}
+}
@@ -0,0 +1,30 @@
+package org.example;
+/**
+ * Java class to represent a repair crew available for dispatch,
+ * identified by its employee id, with the location it starts from.
+ */
+public class Crew {
+	//attributes
+	private String id;
+	private Point location;
+
+	//constructor
+	public Crew(String id, Point location) {
+		this.id = id;
+		this.location = location;
+	}
+
+	//getter functions for attributes
+	public String getId() {
+		return id;
+	}
+
+	public Point getLocation() {
+		return location;
+	}
+
+	@Override
+	public String toString() {
+		return "Crew [id=" + id + ", location=" + location + "]";
+	}
+}
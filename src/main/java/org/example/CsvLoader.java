@@ -0,0 +1,551 @@
+package org.example;
+/**
+ * Java class to load the postal codes and hubs from postal_codes.txt and
+ * hubs.txt. The file is split into line aligned chunks, each chunk is
+ * memory mapped and parsed in place on its own thread, without creating a
+ * String for every line or an array for its fields. The records of each
+ * chunk are added to the power service in file order while the next
+ * chunks are parsed, and a chunk is dropped once its records are added.
+ * At most parallelism chunks are parsed ahead, so the memory held by a
+ * load does not grow with the size of the file.
+ *
+ * Malformed rows do not stop the load, they are skipped and reported
+ * with their line number through {@link #getErrors()}.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CsvLoader {
+	//default size of a chunk in bytes
+	public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+	//number of fields in a postal code row
+	private static final int POSTAL_FIELDS = 4;
+	//number of fields in a hub row before the served postal codes
+	private static final int HUB_FIELDS = 6;
+	//digits before the point which always fit in a long
+	private static final int MAX_WHOLE_DIGITS = 18;
+
+	//size of a chunk in bytes
+	private int chunkSize;
+	//number of threads parsing the chunks
+	private int parallelism;
+	//malformed rows of the last load
+	private List<String> errors = new ArrayList<String>();
+
+	//constructors
+	public CsvLoader() {
+		this(DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	public CsvLoader(int chunkSize, int parallelism) {
+		if (chunkSize <= 0 || parallelism <= 0) {
+			throw new IllegalArgumentException("Chunk size and parallelism should be positive");
+		}
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Function to return the malformed rows found by the last load,
+	 * each as file name, line number and reason
+	 * @return list of errors
+	 */
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Function to load the postal codes from given file, each row is
+	 * id, population, area and number of repairs
+	 * @param powerService
+	 * @param file
+	 * @return number of rows loaded
+	 * @throws IOException
+	 */
+	public int loadPostalCodes(PowerServiceOperations powerService, Path file) throws IOException {
+		try (ChunkReader reader = new ChunkReader(file, false)) {
+			PowerServiceEvents.CsvLoadEvent event = new PowerServiceEvents.CsvLoadEvent();
+			event.begin();
+			powerService.addPostalCodes(() -> new RecordIterator<PostalCodeRecord>(reader,
+					(chunk, i) -> new PostalCodeRecord(chunk.ids[i], (int) chunk.getNumber(i, 0),
+							(int) chunk.getNumber(i, 1), (int) chunk.getNumber(i, 2))));
+			commitApplyEvent(event, reader);
+			return reader.records;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Function to load the hubs from given file, each row is id, x, y,
+	 * area, hours to repair, impact value and the served postal codes
+	 * @param powerService
+	 * @param file
+	 * @return number of rows loaded
+	 * @throws IOException
+	 */
+	public int loadDistributionHubs(PowerServiceOperations powerService, Path file) throws IOException {
+		try (ChunkReader reader = new ChunkReader(file, true)) {
+			PowerServiceEvents.CsvLoadEvent event = new PowerServiceEvents.CsvLoadEvent();
+			event.begin();
+			powerService.addDistributionHubs(() -> new RecordIterator<HubRecord>(reader,
+					(chunk, i) -> new HubRecord(chunk.ids[i],
+							new Point((int) (float) chunk.getNumber(i, 0),
+									(int) (float) chunk.getNumber(i, 1)),
+							chunk.served.get(i), (float) chunk.getNumber(i, 3),
+							(int) (float) chunk.getNumber(i, 4))));
+			commitApplyEvent(event, reader);
+			return reader.records;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Helper function to commit the event of loading the file, it
+	 * covers parsing and adding the records to the power service
+	 * @param event
+	 * @param reader
+	 */
+	private void commitApplyEvent(PowerServiceEvents.CsvLoadEvent event, ChunkReader reader) {
+		if (event.shouldCommit()) {
+			event.file = reader.file.toString();
+			event.phase = "apply";
+			event.bytes = reader.size;
+			event.chunks = reader.chunks;
+			event.records = reader.records;
+			event.errors = errors.size();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Helper function to move the given position to the start of
+	 * next line, so that chunks never split a row
+	 * @param channel
+	 * @param position
+	 * @return position after the next new line, or end of file
+	 * @throws IOException
+	 */
+	private long findLineEnd(FileChannel channel, long position) throws IOException {
+		long size = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Java class to split the file into chunks and hand them out parsed,
+	 * in file order. The chunks after the one handed out last are parsed
+	 * ahead on the threads of the loader.
+	 */
+	private class ChunkReader implements Closeable {
+		//file being loaded and its size
+		private final Path file;
+		private final long size;
+		//true for hubs.txt rows, false for postal_codes.txt rows
+		private final boolean hubs;
+		private final FileChannel channel;
+		private final ExecutorService executor;
+		//chunks being parsed, in file order
+		private final ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+		//start of the next chunk to parse
+		private long position = 0;
+		//lines, chunks and records handed out so far
+		private int lines = 0;
+		private int chunks = 0;
+		private int records = 0;
+
+		//constructor
+		ChunkReader(Path file, boolean hubs) throws IOException {
+			this.file = file;
+			this.hubs = hubs;
+			errors = new ArrayList<String>();
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			size = channel.size();
+			executor = Executors.newFixedThreadPool(parallelism);
+			try {
+				parseAhead();
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Function to start parsing the next chunks, until parallelism
+		 * of them are pending or the end of file is reached
+		 * @throws IOException
+		 */
+		private void parseAhead() throws IOException {
+			while (pending.size() < parallelism && position < size) {
+				long end = findLineEnd(channel, Math.min(position + chunkSize, size));
+				Chunk chunk = new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, position,
+						end - position));
+				pending.add(executor.submit(() -> {
+					chunk.parse(file, hubs);
+					return chunk;
+				}));
+				position = end;
+			}
+		}
+
+		/**
+		 * Function to return the next chunk of the file once it is
+		 * parsed, its malformed rows are added to the errors
+		 * @return chunk, null at end of file
+		 * @throws IOException
+		 */
+		Chunk next() throws IOException {
+			Future<Chunk> future = pending.poll();
+			if (future == null) {
+				return null;
+			}
+			Chunk chunk;
+			try {
+				chunk = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while loading " + file, e);
+			} catch (ExecutionException e) {
+				throw new IOException("Failed to parse " + file, e.getCause());
+			}
+			parseAhead();
+			//line numbers of a chunk start after the lines of previous chunks
+			for (int i = 0; i < chunk.errorLines.size(); i++) {
+				errors.add(file.getFileName() + ":" + (lines + chunk.errorLines.get(i))
+						+ ": " + chunk.errorReasons.get(i));
+			}
+			lines += chunk.lines;
+			chunks++;
+			records += chunk.size;
+			return chunk;
+		}
+
+		/**
+		 * Function to stop parsing and close the file
+		 * @throws IOException
+		 */
+		@Override
+		public void close() throws IOException {
+			executor.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Interface to create the record of given row of a chunk
+	 */
+	private interface RecordFactory<R> {
+		R create(Chunk chunk, int index);
+	}
+
+	/**
+	 * Java class to iterate over the records of the chunks handed
+	 * out by a reader, each chunk is released once iterated
+	 */
+	private static class RecordIterator<R> implements Iterator<R> {
+		private final ChunkReader reader;
+		private final RecordFactory<R> factory;
+		//chunk being iterated and its next row
+		private Chunk chunk;
+		private int index = 0;
+
+		//constructor
+		RecordIterator(ChunkReader reader, RecordFactory<R> factory) {
+			this.reader = reader;
+			this.factory = factory;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (chunk == null || index == chunk.size) {
+				try {
+					chunk = reader.next();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				index = 0;
+				if (chunk == null) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return factory.create(chunk, index++);
+		}
+	}
+
+	/**
+	 * Java class to hold a line aligned part of the file and the
+	 * records parsed from it
+	 */
+	private static class Chunk {
+		//mapped bytes of the chunk
+		private MappedByteBuffer buffer;
+		//number of lines in the chunk
+		private int lines;
+		//number of records parsed
+		private int size;
+		//id of each record
+		private String[] ids = new String[64];
+		//number of numeric fields of a record
+		private int numberCount;
+		//numeric fields of all records, numberCount per record
+		private double[] numbers;
+		//served postal codes of each hub record
+		private List<Set<String>> served = new ArrayList<Set<String>>();
+		//line numbers within chunk of malformed rows
+		private List<Integer> errorLines = new ArrayList<Integer>();
+		//reasons of malformed rows
+		private List<String> errorReasons = new ArrayList<String>();
+
+		//constructor
+		Chunk(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Function to return a numeric field of a record
+		 * @param record
+		 * @param field index among the numeric fields
+		 * @return number
+		 */
+		double getNumber(int record, int field) {
+			return numbers[record * numberCount + field];
+		}
+
+		/**
+		 * Function to parse all rows of the chunk, the mapped bytes
+		 * are released afterwards
+		 * @param file
+		 * @param hubs true for hubs.txt rows
+		 */
+		void parse(Path file, boolean hubs) {
+			PowerServiceEvents.CsvLoadEvent event = new PowerServiceEvents.CsvLoadEvent();
+			event.begin();
+			numberCount = hubs ? HUB_FIELDS - 1 : POSTAL_FIELDS - 1;
+			numbers = new double[ids.length * numberCount];
+			int limit = buffer.limit();
+			int lineStart = 0;
+			while (lineStart < limit) {
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				lines++;
+				int end = lineEnd;
+				if (end > lineStart && buffer.get(end - 1) == '\r') {
+					end--;
+				}
+				if (end > lineStart) {
+					parseRow(lineStart, end, hubs);
+				}
+				lineStart = lineEnd + 1;
+			}
+			buffer = null;
+			if (event.shouldCommit()) {
+				event.file = file.toString();
+				event.phase = "parse";
+				event.bytes = limit;
+				event.chunks = 1;
+				event.records = size;
+				event.errors = errorLines.size();
+				event.commit();
+			}
+		}
+
+		/**
+		 * Function to parse a single non empty row
+		 * @param start
+		 * @param end
+		 * @param hubs
+		 */
+		private void parseRow(int start, int end, boolean hubs) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				numbers = Arrays.copyOf(numbers, size * 2 * numberCount);
+			}
+			Set<String> codes = hubs ? new HashSet<String>() : null;
+			String id = null;
+			int field = 0;
+			int fieldStart = start;
+			for (int i = start; i <= end; i++) {
+				if (i < end && buffer.get(i) != ',') {
+					continue;
+				}
+				if (field == 0) {
+					id = readString(fieldStart, i);
+					if (id.isEmpty()) {
+						addError("missing id");
+						return;
+					}
+				}
+				else if (field <= numberCount) {
+					double value = parseNumber(fieldStart, i);
+					if (Double.isNaN(value)) {
+						addError("invalid number in field " + (field + 1));
+						return;
+					}
+					if (Double.isInfinite(value)) {
+						addError("number out of range in field " + (field + 1));
+						return;
+					}
+					numbers[size * numberCount + field - 1] = value;
+				}
+				else if (codes != null) {
+					codes.add(readString(fieldStart, i));
+				}
+				else {
+					addError("expected " + POSTAL_FIELDS + " fields");
+					return;
+				}
+				field++;
+				fieldStart = i + 1;
+			}
+			if (field <= numberCount) {
+				addError("expected " + (hubs ? "at least " + HUB_FIELDS : POSTAL_FIELDS)
+						+ " fields but found " + field);
+				return;
+			}
+
+			ids[size] = id;
+			if (codes != null) {
+				served.add(codes);
+			}
+			size++;
+		}
+
+		/**
+		 * Function to record the current line as malformed
+		 * @param reason
+		 */
+		private void addError(String reason) {
+			errorLines.add(lines);
+			errorReasons.add(reason);
+		}
+
+		/**
+		 * Function to read the field as string with surrounding
+		 * white spaces removed
+		 * @param start
+		 * @param end
+		 * @return field as String
+		 */
+		private String readString(int start, int end) {
+			while (start < end && buffer.get(start) <= ' ') {
+				start++;
+			}
+			while (end > start && buffer.get(end - 1) <= ' ') {
+				end--;
+			}
+			byte[] bytes = new byte[end - start];
+			buffer.get(start, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Function to parse the field as decimal number in place,
+		 * numbers with exponent fall back to Double.parseDouble
+		 * @param start
+		 * @param end
+		 * @return number, NaN if field is not a number, infinity if it
+		 * has more than MAX_WHOLE_DIGITS digits before the point
+		 */
+		private double parseNumber(int start, int end) {
+			while (start < end && buffer.get(start) <= ' ') {
+				start++;
+			}
+			while (end > start && buffer.get(end - 1) <= ' ') {
+				end--;
+			}
+			if (start == end) {
+				return Double.NaN;
+			}
+			boolean negative = false;
+			int i = start;
+			if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+				negative = buffer.get(i) == '-';
+				i++;
+			}
+			long whole = 0;
+			int wholeDigits = 0;
+			long fraction = 0;
+			long scale = 1;
+			boolean digits = false;
+			boolean point = false;
+			for (; i < end; i++) {
+				byte b = buffer.get(i);
+				if (b >= '0' && b <= '9') {
+					digits = true;
+					if (point) {
+						//ignore digits beyond what a double can hold
+						if (scale < 1_000_000_000_000_000L) {
+							fraction = fraction * 10 + (b - '0');
+							scale *= 10;
+						}
+					}
+					else {
+						//leading zeros do not count
+						if ((whole != 0 || b != '0') && ++wholeDigits > MAX_WHOLE_DIGITS) {
+							return Double.POSITIVE_INFINITY;
+						}
+						whole = whole * 10 + (b - '0');
+					}
+				}
+				else if (b == '.' && !point) {
+					point = true;
+				}
+				else {
+					try {
+						return Double.parseDouble(readString(start, end));
+					} catch (NumberFormatException e) {
+						return Double.NaN;
+					}
+				}
+			}
+			if (!digits) {
+				return Double.NaN;
+			}
+			double value = whole + (double) fraction / scale;
+			return negative ? -value : value;
+		}
+	}
+}
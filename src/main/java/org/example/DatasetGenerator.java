@@ -0,0 +1,392 @@
+package org.example;
+/**
+ * Java program to generate a synthetic postal_codes.txt and hubs.txt in
+ * the format loaded by Main, for load testing at production sizes.
+ *
+ * Every value is derived from the seed and the index of the record by a
+ * hash function, so the same settings always give the same files and the
+ * records are streamed to disk without keeping the dataset in memory.
+ * Hubs are placed in clusters and each hub serves postal codes from its
+ * own cluster, with neighbouring hubs sharing part of their codes.
+ *
+ * Usage: java org.example.DatasetGenerator [name=value ...], e.g.
+ * dir=data postalCodes=1000000 hubs=100000 seed=7 damageRatio=0.2
+ */
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DatasetGenerator {
+	//number of distinct six character postal codes, e.g. A1B2C3
+	private static final long POSTAL_SPACE = 26L * 10 * 26 * 10 * 26 * 10;
+	//number of distinct hub ids, e.g. ABCD1234
+	private static final long HUB_SPACE = 26L * 26 * 26 * 26 * 10000;
+
+	//streams of random values, one for each attribute
+	private static final int POPULATION = 1;
+	private static final int AREA = 2;
+	private static final int REPAIRS = 3;
+	private static final int DAMAGED = 4;
+	private static final int HOURS = 5;
+	private static final int IMPACT = 6;
+	private static final int LOCATION = 7;
+	private static final int SERVED = 8;
+	private static final int CENTER = 9;
+
+	//attributes
+	private long seed = 42;
+	private long postalCodes = 103;
+	private long hubs = 13;
+	private int clusters = 4;
+	private int codesPerHub = 6;
+	//median population and area of a postal code
+	private int medianPopulation = 500;
+	private int medianArea = 1500;
+	//fraction of hubs and postal codes which are damaged
+	private double damageRatio = 0.3;
+	private int maxRepairHours = 48;
+	private int maxRepairs = 100;
+	private int minImpact = 8000;
+	private int maxImpact = 14000;
+
+	//setter functions for attributes
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setPostalCodes(long postalCodes) {
+		this.postalCodes = postalCodes;
+	}
+
+	public void setHubs(long hubs) {
+		this.hubs = hubs;
+	}
+
+	public void setClusters(int clusters) {
+		this.clusters = clusters;
+	}
+
+	public void setCodesPerHub(int codesPerHub) {
+		this.codesPerHub = codesPerHub;
+	}
+
+	public void setMedianPopulation(int medianPopulation) {
+		this.medianPopulation = medianPopulation;
+	}
+
+	public void setMedianArea(int medianArea) {
+		this.medianArea = medianArea;
+	}
+
+	public void setDamageRatio(double damageRatio) {
+		this.damageRatio = damageRatio;
+	}
+
+	public void setMaxRepairHours(int maxRepairHours) {
+		this.maxRepairHours = maxRepairHours;
+	}
+
+	public void setMaxRepairs(int maxRepairs) {
+		this.maxRepairs = maxRepairs;
+	}
+
+	public void setImpactRange(int minImpact, int maxImpact) {
+		this.minImpact = minImpact;
+		this.maxImpact = maxImpact;
+	}
+
+	/**
+	 * Function to write postal_codes.txt and hubs.txt to given directory
+	 * @param directory
+	 * @throws IOException
+	 */
+	public void generate(Path directory) throws IOException {
+		if (postalCodes <= 0 || hubs <= 0 || clusters <= 0 || codesPerHub <= 0) {
+			throw new IllegalArgumentException("Sizes should be positive");
+		}
+		if (postalCodes > POSTAL_SPACE * 26 || hubs > HUB_SPACE) {
+			throw new IllegalArgumentException("Too many postal codes or hubs");
+		}
+		clusters = (int) Math.min(clusters, Math.min(hubs, postalCodes));
+		Files.createDirectories(directory);
+		writePostalCodes(directory.resolve("postal_codes.txt"));
+		writeHubs(directory.resolve("hubs.txt"));
+	}
+
+	/**
+	 * Function to stream the postal codes to file
+	 * @param file
+	 * @throws IOException
+	 */
+	private void writePostalCodes(Path file) throws IOException {
+		StringBuilder line = new StringBuilder();
+		try (BufferedWriter writer = newWriter(file)) {
+			for (long i = 0; i < postalCodes; i++) {
+				line.setLength(0);
+				appendPostalCode(line, i);
+				line.append(',').append(getPopulation(i))
+				.append(',').append(getArea(i)).append(".0")
+				.append(',').append(getRepairs(i)).append(".0\n");
+				writer.append(line);
+			}
+		}
+	}
+
+	/**
+	 * Function to stream the hubs to file
+	 * @param file
+	 * @throws IOException
+	 */
+	private void writeHubs(Path file) throws IOException {
+		StringBuilder line = new StringBuilder();
+		long[] served = new long[codesPerHub];
+		//spread of the map grows with the number of hubs
+		int extent = (int) Math.min(Math.sqrt(hubs) * 5 + 10, Integer.MAX_VALUE / 2);
+		double spread = Math.max(extent / (2 * Math.sqrt(clusters)), 1);
+		try (BufferedWriter writer = newWriter(file)) {
+			for (long h = 0; h < hubs; h++) {
+				int cluster = (int) (h % clusters);
+				double centerX = (uniform(CENTER, 2L * cluster) * 2 - 1) * extent;
+				double centerY = (uniform(CENTER, 2L * cluster + 1) * 2 - 1) * extent;
+				long x = Math.round(centerX + gaussian(LOCATION, 2 * h) * spread);
+				long y = Math.round(centerY + gaussian(LOCATION, 2 * h + 1) * spread);
+
+				int count = getServedCodes(h, cluster, served);
+				long area = 0;
+				for (int j = 0; j < count; j++) {
+					area += getArea(served[j]);
+				}
+				boolean damaged = uniform(DAMAGED, h) < damageRatio;
+				int hours = damaged ? 1 + (int) (uniform(HOURS, h) * maxRepairHours) : 0;
+				int impact = minImpact + (int) (uniform(IMPACT, h) * (maxImpact - minImpact + 1));
+
+				line.setLength(0);
+				appendHubId(line, h);
+				line.append(',').append(x).append(',').append(y)
+				.append(',').append(area).append(".0")
+				.append(',').append(hours).append(".0")
+				.append(',').append(impact).append(".0");
+				for (int j = 0; j < count; j++) {
+					line.append(',');
+					appendPostalCode(line, served[j]);
+				}
+				line.append('\n');
+				writer.append(line);
+			}
+		}
+	}
+
+	/**
+	 * Function to choose the postal codes served by a hub. The codes of a
+	 * cluster are a contiguous range of indexes, each hub of the cluster
+	 * owns an equal part of it and picks its codes from a window twice as
+	 * large, so it shares codes with the hubs next to it.
+	 * @param hub
+	 * @param cluster
+	 * @param served array to fill
+	 * @return number of codes chosen
+	 */
+	private int getServedCodes(long hub, int cluster, long[] served) {
+		long clusterStart = postalCodes * cluster / clusters;
+		long clusterSize = postalCodes * (cluster + 1) / clusters - clusterStart;
+		long hubsInCluster = (hubs - cluster + clusters - 1) / clusters;
+		long rank = hub / clusters;
+		long span = Math.max(clusterSize / hubsInCluster, 1);
+		long windowStart = clusterStart + rank * clusterSize / hubsInCluster - span / 2;
+		long window = Math.min(2 * span + codesPerHub, clusterSize);
+		windowStart = Math.max(clusterStart, Math.min(windowStart, clusterStart + clusterSize - window));
+
+		int wanted = (int) Math.min(codesPerHub, window);
+		int count = 0;
+		for (long attempt = 0; count < wanted; attempt++) {
+			long code = windowStart + (long) (uniform(SERVED, hub * 1_000_003L + attempt) * window);
+			boolean duplicate = false;
+			for (int j = 0; j < count; j++) {
+				duplicate |= served[j] == code;
+			}
+			if (!duplicate) {
+				served[count++] = code;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Function to determine the population of a postal code,
+	 * log-normally distributed around the median
+	 * @param code index of postal code
+	 * @return population
+	 */
+	private int getPopulation(long code) {
+		return (int) Math.max(1, Math.round(medianPopulation * Math.exp(0.8 * gaussian(POPULATION, code))));
+	}
+
+	/**
+	 * Function to determine the area of a postal code,
+	 * log-normally distributed around the median
+	 * @param code index of postal code
+	 * @return area
+	 */
+	private int getArea(long code) {
+		return (int) Math.max(1, Math.round(medianArea * Math.exp(0.6 * gaussian(AREA, code))));
+	}
+
+	/**
+	 * Function to determine the number of repairs of a postal code
+	 * @param code index of postal code
+	 * @return repairs
+	 */
+	private int getRepairs(long code) {
+		if (uniform(DAMAGED, -1 - code) >= damageRatio) {
+			return 0;
+		}
+		return 1 + (int) (uniform(REPAIRS, code) * maxRepairs);
+	}
+
+	/**
+	 * Function to append the id of a postal code, e.g. A1B2C3, the
+	 * indexes are scrambled so that neighbouring codes look unrelated.
+	 * Codes beyond the six character space get a letter as suffix.
+	 * @param line
+	 * @param code index of postal code
+	 */
+	private void appendPostalCode(StringBuilder line, long code) {
+		long value = scramble(code % POSTAL_SPACE, POSTAL_SPACE);
+		char[] id = new char[6];
+		for (int i = 5; i >= 0; i--) {
+			int radix = (i % 2 == 0) ? 26 : 10;
+			int digit = (int) (value % radix);
+			id[i] = (char) ((radix == 26) ? 'A' + digit : '0' + digit);
+			value /= radix;
+		}
+		line.append(id);
+		if (code >= POSTAL_SPACE) {
+			line.append((char) ('A' + code / POSTAL_SPACE - 1));
+		}
+	}
+
+	/**
+	 * Function to append the id of a hub, e.g. ABCD1234
+	 * @param line
+	 * @param hub index of hub
+	 */
+	private void appendHubId(StringBuilder line, long hub) {
+		long value = scramble(hub, HUB_SPACE);
+		long number = value % 10000;
+		value /= 10000;
+		char[] letters = new char[4];
+		for (int i = 3; i >= 0; i--) {
+			letters[i] = (char) ('A' + value % 26);
+			value /= 26;
+		}
+		line.append(letters);
+		for (long d = 1000; d > 0; d /= 10) {
+			line.append((char) ('0' + number / d % 10));
+		}
+	}
+
+	/**
+	 * Function to map the index to a unique, random looking value
+	 * below the given space, using an odd multiplier and cycle walking
+	 * @param index
+	 * @param space
+	 * @return scrambled index
+	 */
+	private long scramble(long index, long space) {
+		long bits = 64 - Long.numberOfLeadingZeros(space - 1);
+		long mask = (1L << bits) - 1;
+		long value = index;
+		//a bijection on the power of two range, repeated till inside space
+		do {
+			for (int round = 0; round < 3; round++) {
+				value = (value * 0x9E3779B97F4A7C15L + (seed | 1)) & mask;
+				value ^= value >>> (bits / 2 + 1);
+			}
+		} while (value >= space);
+		return value;
+	}
+
+	/**
+	 * Function to return a uniform value in [0, 1) for given stream
+	 * and index, derived from the seed
+	 * @param stream
+	 * @param index
+	 * @return value
+	 */
+	private double uniform(int stream, long index) {
+		return (mix(seed + stream * 0x9E3779B97F4A7C15L + index * 0xD1B54A32D192ED03L) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Function to return a standard normal value for given stream
+	 * and index, using the Box-Muller transform
+	 * @param stream
+	 * @param index
+	 * @return value
+	 */
+	private double gaussian(int stream, long index) {
+		double u1 = uniform(stream, 2 * index);
+		double u2 = uniform(stream + 100, 2 * index + 1);
+		return Math.sqrt(-2 * Math.log(1 - u1)) * Math.cos(2 * Math.PI * u2);
+	}
+
+	/**
+	 * Helper function to mix the bits of a long value
+	 * @param z
+	 * @return mixed value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Helper function to open a buffered writer for large files
+	 * @param file
+	 * @return writer
+	 * @throws IOException
+	 */
+	private static BufferedWriter newWriter(Path file) throws IOException {
+		return new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 20);
+	}
+
+	//DRIVER CODE
+	public static void main(String[] args) throws IOException {
+		DatasetGenerator generator = new DatasetGenerator();
+		Path directory = Path.of(".");
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+			if (option.length != 2) {
+				System.out.println("Invalid option " + arg + ", expected name=value");
+				return;
+			}
+			String value = option[1];
+			switch (option[0]) {
+			case "dir": directory = Path.of(value); break;
+			case "seed": generator.setSeed(Long.parseLong(value)); break;
+			case "postalCodes": generator.setPostalCodes(Long.parseLong(value)); break;
+			case "hubs": generator.setHubs(Long.parseLong(value)); break;
+			case "clusters": generator.setClusters(Integer.parseInt(value)); break;
+			case "codesPerHub": generator.setCodesPerHub(Integer.parseInt(value)); break;
+			case "medianPopulation": generator.setMedianPopulation(Integer.parseInt(value)); break;
+			case "medianArea": generator.setMedianArea(Integer.parseInt(value)); break;
+			case "damageRatio": generator.setDamageRatio(Double.parseDouble(value)); break;
+			case "maxRepairHours": generator.setMaxRepairHours(Integer.parseInt(value)); break;
+			case "maxRepairs": generator.setMaxRepairs(Integer.parseInt(value)); break;
+			case "impact": {
+				String[] range = value.split("-");
+				generator.setImpactRange(Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+				break;
+			}
+			default:
+				System.out.println("Unknown option " + option[0]);
+				return;
+			}
+		}
+		generator.generate(directory);
+		System.out.println("Generated postal_codes.txt and hubs.txt in " + directory);
+	}
+}
@@ -0,0 +1,245 @@
+package org.example;
+/**
+ * Java class to represent a spatial index over the locations of the
+ * distribution hubs. The plane is divided into square cells of a fixed
+ * size and each cell holds the hubs located inside it, so range and
+ * rectangle queries only have to look at the cells they overlap instead
+ * of every hub in the system.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HubGrid {
+	//default width and height of a cell
+	public static final int DEFAULT_CELL_SIZE = 32;
+
+	//width and height of each cell
+	private int cellSize;
+	//map to hold cell key as key and hubs in the cell as value
+	private Map<Long, List<DistributionHub>> cells = new HashMap<>();
+	//map to hold hub id as key and key of the cell holding the hub as value
+	private Map<String, Long> hubCells = new HashMap<>();
+
+	//constructors
+	public HubGrid() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	public HubGrid(int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size should be positive");
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Constructor for a read only grid over given cells, e.g. the
+	 * cells of a snapshot. Hubs should not be added to or removed
+	 * from such a grid.
+	 * @param cellSize
+	 * @param cells map of cell key to hubs in the cell
+	 */
+	HubGrid(int cellSize, Map<Long, List<DistributionHub>> cells) {
+		this(cellSize);
+		this.cells = cells;
+	}
+
+	/**
+	 * Function to add the given hub to the grid, if hub is already
+	 * present and its location is changed, then it is moved to new cell
+	 * @param hub
+	 */
+	public void addHub(DistributionHub hub) {
+		Point location = hub.getLocation();
+		long key = getCellKey(getCell(location.getX()), getCell(location.getY()));
+		Long oldKey = hubCells.get(hub.getId());
+		if (oldKey != null) {
+			if (oldKey == key) {
+				return;
+			}
+			removeFromCell(oldKey, hub.getId());
+		}
+		List<DistributionHub> hubs = cells.get(key);
+		if (hubs == null) {
+			hubs = new ArrayList<DistributionHub>();
+			cells.put(key, hubs);
+		}
+		hubs.add(hub);
+		hubCells.put(hub.getId(), key);
+	}
+
+	/**
+	 * Function to remove the given hub from the grid
+	 * @param hubId
+	 */
+	public void removeHub(String hubId) {
+		Long key = hubCells.remove(hubId);
+		if (key != null) {
+			removeFromCell(key, hubId);
+		}
+	}
+
+	/**
+	 * Function to return the number of hubs in the grid
+	 * @return size as integer
+	 */
+	public int size() {
+		return hubCells.size();
+	}
+
+	/**
+	 * Function to determine the hubs within given distance of
+	 * the center point
+	 * @param center
+	 * @param maxDistance
+	 * @return list of hubs
+	 */
+	public List<DistributionHub> getHubsInRange(Point center, int maxDistance) {
+		List<DistributionHub> hubs = new ArrayList<DistributionHub>();
+		if (maxDistance < 0) {
+			return hubs;
+		}
+		long maxSquare = (long) maxDistance * maxDistance;
+		//bounding box of the circle, clamped to the integer coordinates
+		int startX = (int) Math.max(Integer.MIN_VALUE, (long) center.getX() - maxDistance);
+		int startY = (int) Math.max(Integer.MIN_VALUE, (long) center.getY() - maxDistance);
+		int endX = (int) Math.min(Integer.MAX_VALUE, (long) center.getX() + maxDistance);
+		int endY = (int) Math.min(Integer.MAX_VALUE, (long) center.getY() + maxDistance);
+		for (DistributionHub hub : getHubsInRect(startX, startY, endX, endY)) {
+			long dx = hub.getLocation().getX() - center.getX();
+			long dy = hub.getLocation().getY() - center.getY();
+			if (dx * dx + dy * dy <= maxSquare) {
+				hubs.add(hub);
+			}
+		}
+		return hubs;
+	}
+
+	/**
+	 * Function to determine the hubs within the given axis aligned
+	 * rectangle, the boundaries are inclusive
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @return list of hubs
+	 */
+	public List<DistributionHub> getHubsInRect(int startX, int startY, int endX, int endY) {
+		List<DistributionHub> hubs = new ArrayList<DistributionHub>();
+		long startCellX = getCell(startX);
+		long endCellX = getCell(endX);
+		long startCellY = getCell(startY);
+		long endCellY = getCell(endY);
+		long cellCount = (endCellX - startCellX + 1) * (endCellY - startCellY + 1);
+
+		//if the rectangle spans more cells than are occupied, then
+		//it is cheaper to go through the occupied cells
+		if (cellCount > cells.size()) {
+			for (List<DistributionHub> cell : cells.values()) {
+				addHubsInRect(cell, startX, startY, endX, endY, hubs);
+			}
+			return hubs;
+		}
+
+		for (long cx = startCellX; cx <= endCellX; cx++) {
+			for (long cy = startCellY; cy <= endCellY; cy++) {
+				List<DistributionHub> cell = cells.get(getCellKey(cx, cy));
+				if (cell != null) {
+					addHubsInRect(cell, startX, startY, endX, endY, hubs);
+				}
+			}
+		}
+		return hubs;
+	}
+
+	/**
+	 * Helper function to add the hubs of a cell which lie in
+	 * the rectangle to the result
+	 * @param cell
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param result
+	 */
+	private void addHubsInRect(List<DistributionHub> cell, int startX, int startY,
+			int endX, int endY, List<DistributionHub> result) {
+		for (DistributionHub hub : cell) {
+			Point p = hub.getLocation();
+			if (p.getX() >= startX && p.getX() <= endX
+					&& p.getY() >= startY && p.getY() <= endY) {
+				result.add(hub);
+			}
+		}
+	}
+
+	/**
+	 * Helper function to remove hub with given id from a cell
+	 * @param key
+	 * @param hubId
+	 */
+	private void removeFromCell(long key, String hubId) {
+		List<DistributionHub> hubs = cells.get(key);
+		if (hubs == null) {
+			return;
+		}
+		for (int i = 0; i < hubs.size(); i++) {
+			if (hubs.get(i).getId().equals(hubId)) {
+				hubs.remove(i);
+				break;
+			}
+		}
+		if (hubs.isEmpty()) {
+			cells.remove(key);
+		}
+	}
+
+	/**
+	 * Function to return the width and height of each cell
+	 * @return cell size
+	 */
+	int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Function to return a read only view of the cells
+	 * @return map of cell key to hubs in the cell
+	 */
+	Map<Long, List<DistributionHub>> getCells() {
+		return Collections.unmodifiableMap(cells);
+	}
+
+	/**
+	 * Function to determine the key of the cell holding given location
+	 * @param location
+	 * @return key as long
+	 */
+	long getCellKey(Point location) {
+		return getCellKey(getCell(location.getX()), getCell(location.getY()));
+	}
+
+	/**
+	 * Function to determine the cell index for given coordinate
+	 * @param coordinate
+	 * @return cell index
+	 */
+	private long getCell(int coordinate) {
+		return Math.floorDiv(coordinate, cellSize);
+	}
+
+	/**
+	 * Function to combine the cell indexes into a single key. The packed
+	 * value is multiplied by an odd constant, which keeps keys unique but
+	 * spreads them, as Long.hashCode of (x, y) pairs collides for x ^ y.
+	 * @param cellX
+	 * @param cellY
+	 * @return key as long
+	 */
+	private long getCellKey(long cellX, long cellY) {
+		return ((cellX << 32) | (cellY & 0xffffffffL)) * 0x9E3779B97F4A7C15L;
+	}
+}
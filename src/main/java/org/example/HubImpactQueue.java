@@ -0,0 +1,226 @@
+package org.example;
+/**
+ * Java class to represent an indexed max priority queue of hubs keyed by
+ * the number of people out of service, hubs with equal population are
+ * ordered by hub id. Each hub id remembers its position
+ * in the heap, so the key of a hub can be changed or the hub can be removed
+ * in O(log n) time, and the top k hubs can be read in O(k log k) time
+ * without removing them from the queue.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HubImpactQueue {
+	//hub ids stored as binary heap
+	private String[] hubIds = new String[16];
+	//population of each hub in the heap
+	private int[] populations = new int[16];
+	//number of hubs in the heap
+	private int size = 0;
+	//map to hold hub id as key and its position in heap as value
+	private Map<String, Integer> positions = new HashMap<String, Integer>();
+
+	/**
+	 * Function to add the hub to queue or change its population
+	 * @param hubId
+	 * @param population
+	 */
+	public void update(String hubId, int population) {
+		Integer position = positions.get(hubId);
+		if (position == null) {
+			if (size == hubIds.length) {
+				hubIds = Arrays.copyOf(hubIds, size * 2);
+				populations = Arrays.copyOf(populations, size * 2);
+			}
+			hubIds[size] = hubId;
+			populations[size] = population;
+			positions.put(hubId, size);
+			size++;
+			siftUp(size - 1);
+			return;
+		}
+		populations[position] = population;
+		siftUp(position);
+		siftDown(position);
+	}
+
+	/**
+	 * Function to remove the hub from queue
+	 * @param hubId
+	 */
+	public void remove(String hubId) {
+		Integer position = positions.remove(hubId);
+		if (position == null) {
+			return;
+		}
+		size--;
+		if (position != size) {
+			//move the last hub to the empty position
+			hubIds[position] = hubIds[size];
+			populations[position] = populations[size];
+			positions.put(hubIds[position], position);
+			siftUp(position);
+			siftDown(position);
+		}
+		hubIds[size] = null;
+	}
+
+	/**
+	 * Function to return the number of hubs in the queue
+	 * @return size as integer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Function to return the ids of hubs with the highest population,
+	 * in decreasing order of population
+	 * @param limit
+	 * @return list of hub ids
+	 */
+	public List<String> getTop(int limit) {
+		if (limit > size) {
+			limit = size;
+		}
+		List<String> result = new ArrayList<String>(limit);
+		if (limit <= 0) {
+			return result;
+		}
+		//heap of candidate positions, a position becomes candidate
+		//once its parent has been taken
+		int[] candidates = new int[limit + 1];
+		int count = 0;
+		candidates[count++] = 0;
+		while (result.size() < limit) {
+			int top = candidates[0];
+			candidates[0] = candidates[--count];
+			siftDownCandidate(candidates, count, 0);
+			result.add(hubIds[top]);
+			for (int child = 2 * top + 1; child <= 2 * top + 2 && child < size; child++) {
+				candidates[count] = child;
+				siftUpCandidate(candidates, count++);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper function to move the hub at given position up
+	 * till the heap order is restored
+	 * @param position
+	 */
+	private void siftUp(int position) {
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!isBefore(position, parent)) {
+				break;
+			}
+			swap(parent, position);
+			position = parent;
+		}
+	}
+
+	/**
+	 * Helper function to move the hub at given position down
+	 * till the heap order is restored
+	 * @param position
+	 */
+	private void siftDown(int position) {
+		while (true) {
+			int largest = position;
+			int left = 2 * position + 1;
+			int right = left + 1;
+			if (left < size && isBefore(left, largest)) {
+				largest = left;
+			}
+			if (right < size && isBefore(right, largest)) {
+				largest = right;
+			}
+			if (largest == position) {
+				break;
+			}
+			swap(largest, position);
+			position = largest;
+		}
+	}
+
+	/**
+	 * Helper function to check whether the hub at position i comes
+	 * before the hub at position j, i.e. it has more population or
+	 * the same population and a smaller id
+	 * @param i
+	 * @param j
+	 * @return true or false
+	 */
+	private boolean isBefore(int i, int j) {
+		if (populations[i] != populations[j]) {
+			return populations[i] > populations[j];
+		}
+		return hubIds[i].compareTo(hubIds[j]) < 0;
+	}
+
+	/**
+	 * Helper function to swap the hubs at given positions
+	 * @param i
+	 * @param j
+	 */
+	private void swap(int i, int j) {
+		String id = hubIds[i];
+		hubIds[i] = hubIds[j];
+		hubIds[j] = id;
+		int population = populations[i];
+		populations[i] = populations[j];
+		populations[j] = population;
+		positions.put(hubIds[i], i);
+		positions.put(hubIds[j], j);
+	}
+
+	/**
+	 * Helper function to restore the order of candidate heap upwards
+	 * @param candidates
+	 * @param index
+	 */
+	private void siftUpCandidate(int[] candidates, int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!isBefore(candidates[index], candidates[parent])) {
+				break;
+			}
+			int temp = candidates[parent];
+			candidates[parent] = candidates[index];
+			candidates[index] = temp;
+			index = parent;
+		}
+	}
+
+	/**
+	 * Helper function to restore the order of candidate heap downwards
+	 * @param candidates
+	 * @param count
+	 * @param index
+	 */
+	private void siftDownCandidate(int[] candidates, int count, int index) {
+		while (true) {
+			int largest = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < count && isBefore(candidates[left], candidates[largest])) {
+				largest = left;
+			}
+			if (right < count && isBefore(candidates[right], candidates[largest])) {
+				largest = right;
+			}
+			if (largest == index) {
+				break;
+			}
+			int temp = candidates[largest];
+			candidates[largest] = candidates[index];
+			candidates[index] = temp;
+			index = largest;
+		}
+	}
+}
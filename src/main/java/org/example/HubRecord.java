@@ -0,0 +1,47 @@
+package org.example;
+/**
+ * Java class to represent a row of hubs.txt passed to the bulk
+ * load of the power service, which contains the hub id, location,
+ * served postal codes, hours to repair and impact value.
+ */
+import java.util.Set;
+
+public class HubRecord {
+	//attributes
+	private String id;
+	private Point location;
+	private Set<String> servicedAreas;
+	private float hoursToRepair;
+	private int impactValue;
+
+	//constructor
+	public HubRecord(String id, Point location, Set<String> servicedAreas,
+			float hoursToRepair, int impactValue) {
+		this.id = id;
+		this.location = location;
+		this.servicedAreas = servicedAreas;
+		this.hoursToRepair = hoursToRepair;
+		this.impactValue = impactValue;
+	}
+
+	//getter functions for attributes
+	public String getId() {
+		return id;
+	}
+
+	public Point getLocation() {
+		return location;
+	}
+
+	public Set<String> getServicedAreas() {
+		return servicedAreas;
+	}
+
+	public float getHoursToRepair() {
+		return hoursToRepair;
+	}
+
+	public int getImpactValue() {
+		return impactValue;
+	}
+}
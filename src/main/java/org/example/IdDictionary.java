@@ -0,0 +1,121 @@
+package org.example;
+/**
+ * Java class to intern the ids of hubs and postal codes into dense
+ * integer indexes. The first id added gets index 0, the next one index 1
+ * and so on, so the indexes can be used directly as positions in primitive
+ * arrays. Lookups use an open addressing hash table of ints, hence no entry
+ * objects are created per id.
+ */
+import java.util.Arrays;
+
+public class IdDictionary {
+	//ids stored by their index
+	private String[] ids;
+	//hash table holding index + 1 of the id, 0 for an empty slot
+	private int[] table;
+	//number of ids in the dictionary
+	private int size = 0;
+
+	//constructors
+	public IdDictionary() {
+		this(16);
+	}
+
+	public IdDictionary(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		ids = new String[Math.max(expectedSize, 16)];
+		table = new int[capacity];
+	}
+
+	/**
+	 * Function to return the index of given id, the id is
+	 * added to the dictionary if it does not exist
+	 * @param id
+	 * @return index as integer
+	 */
+	public int intern(String id) {
+		int slot = findSlot(id);
+		if (table[slot] != 0) {
+			return table[slot] - 1;
+		}
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+		ids[size] = id;
+		table[slot] = ++size;
+		//keep the table at most half full
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Function to return the index of given id
+	 * @param id
+	 * @return index, -1 if id does not exist
+	 */
+	public int indexOf(String id) {
+		return table[findSlot(id)] - 1;
+	}
+
+	/**
+	 * Function to return the id at given index
+	 * @param index
+	 * @return id as String
+	 */
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Function to return the number of ids
+	 * @return size as integer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Helper function to find the slot of given id, or the
+	 * empty slot where it should be placed
+	 * @param id
+	 * @return slot as integer
+	 */
+	private int findSlot(String id) {
+		int mask = table.length - 1;
+		int slot = mix(id.hashCode()) & mask;
+		while (table[slot] != 0 && !ids[table[slot] - 1].equals(id)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Helper function to double the hash table
+	 */
+	private void rehash() {
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = mix(ids[i].hashCode()) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Helper function to spread the bits of hash code
+	 * @param hash
+	 * @return mixed hash
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,356 @@
+package org.example;
+/**
+ * Java class to measure the operations of a power service. Every public
+ * operation is passed on to the wrapped service, and its latency is
+ * recorded in a histogram of the operation together with the number of
+ * calls and errors. An error is an exception thrown by the operation,
+ * a change rejected with a failed {@link ServiceStatus}, or a false
+ * result of saveSnapshot or loadSnapshot.
+ *
+ * Only the calls made to this service are measured, e.g. the records of
+ * a bulk load count as one call of addPostalCodes. Recording does not
+ * lock, so the service can stay instrumented all the time. The service
+ * holds no state of its own, every operation goes to the wrapped one.
+ */
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+public class InstrumentedPowerService implements PowerServiceOperations {
+	//service doing the work
+	private final PowerServiceOperations delegate;
+	//statistics of all operations
+	private final PowerServiceMetrics metrics;
+	//statistics of each operation
+	private final OperationStats addPostalCodeStats;
+	private final OperationStats addDistributionHubStats;
+	private final OperationStats addPostalCodesStats;
+	private final OperationStats addDistributionHubsStats;
+	private final OperationStats hubDamageStats;
+	private final OperationStats hubRepairStats;
+	private final OperationStats addHubImpactStats;
+	private final OperationStats addDamagedHubStats;
+	private final OperationStats setMutationLogStats;
+	private final OperationStats compactLogStats;
+	private final OperationStats peopleOutOfServiceStats;
+	private final OperationStats peopleOutOfServiceByHubStats;
+	private final OperationStats getHubStats;
+	private final OperationStats fixOrderStats;
+	private final OperationStats mostDamagedPostalCodesStats;
+	private final OperationStats rateOfServiceRestorationStats;
+	private final OperationStats restorationSimulatorStats;
+	private final OperationStats repairSchedulerStats;
+	private final OperationStats getCrewsStats;
+	private final OperationStats scheduleRepairsStats;
+	private final OperationStats repairPlanStats;
+	private final OperationStats repairPlansStats;
+	private final OperationStats underservedPostalByPopulationStats;
+	private final OperationStats underservedPostalByAreaStats;
+	private final OperationStats toCompactModelStoreStats;
+	private final OperationStats saveSnapshotStats;
+	private final OperationStats loadSnapshotStats;
+	private final OperationStats saveToFileStats;
+
+	//constructors
+	public InstrumentedPowerService(PowerServiceOperations delegate) {
+		this(delegate, new PowerServiceMetrics());
+	}
+
+	public InstrumentedPowerService(PowerServiceOperations delegate, PowerServiceMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+		addPostalCodeStats = metrics.getOperation("addPostalCode");
+		addDistributionHubStats = metrics.getOperation("addDistributionHub");
+		addPostalCodesStats = metrics.getOperation("addPostalCodes");
+		addDistributionHubsStats = metrics.getOperation("addDistributionHubs");
+		hubDamageStats = metrics.getOperation("hubDamage");
+		hubRepairStats = metrics.getOperation("hubRepair");
+		addHubImpactStats = metrics.getOperation("addHubImpact");
+		addDamagedHubStats = metrics.getOperation("addDamagedHub");
+		setMutationLogStats = metrics.getOperation("setMutationLog");
+		compactLogStats = metrics.getOperation("compactLog");
+		peopleOutOfServiceStats = metrics.getOperation("peopleOutOfService");
+		peopleOutOfServiceByHubStats = metrics.getOperation("peopleOutOfServiceByHub");
+		getHubStats = metrics.getOperation("getHub");
+		fixOrderStats = metrics.getOperation("fixOrder");
+		mostDamagedPostalCodesStats = metrics.getOperation("mostDamagedPostalCodes");
+		rateOfServiceRestorationStats = metrics.getOperation("rateOfServiceRestoration");
+		restorationSimulatorStats = metrics.getOperation("restorationSimulator");
+		repairSchedulerStats = metrics.getOperation("repairScheduler");
+		getCrewsStats = metrics.getOperation("getCrews");
+		scheduleRepairsStats = metrics.getOperation("scheduleRepairs");
+		repairPlanStats = metrics.getOperation("repairPlan");
+		repairPlansStats = metrics.getOperation("repairPlans");
+		underservedPostalByPopulationStats = metrics.getOperation("underservedPostalByPopulation");
+		underservedPostalByAreaStats = metrics.getOperation("underservedPostalByArea");
+		toCompactModelStoreStats = metrics.getOperation("toCompactModelStore");
+		saveSnapshotStats = metrics.getOperation("saveSnapshot");
+		loadSnapshotStats = metrics.getOperation("loadSnapshot");
+		saveToFileStats = metrics.getOperation("saveToFile");
+	}
+
+	/**
+	 * Function to return the statistics of the operations
+	 * @return metrics
+	 */
+	public PowerServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Function to return the service doing the work
+	 * @return service
+	 */
+	public PowerServiceOperations getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Helper function to run an operation and record its latency, an
+	 * exception thrown by it is counted as error
+	 * @param stats statistics of the operation
+	 * @param operation
+	 * @return result of the operation
+	 */
+	private static <T> T timed(OperationStats stats, Supplier<T> operation) {
+		long start = System.nanoTime();
+		try {
+			return operation.get();
+		} catch (RuntimeException e) {
+			stats.error();
+			throw e;
+		} finally {
+			stats.record(start);
+		}
+	}
+
+	/**
+	 * Helper function to run an operation without result and record
+	 * its latency
+	 * @param stats statistics of the operation
+	 * @param operation
+	 */
+	private static void timed(OperationStats stats, Runnable operation) {
+		timed(stats, () -> {
+			operation.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Helper function to count a rejected change as error
+	 * @param stats statistics of the operation
+	 * @param status
+	 * @return status
+	 */
+	private static ServiceStatus checked(OperationStats stats, ServiceStatus status) {
+		if (!status.isSuccess()) {
+			stats.error();
+		}
+		return status;
+	}
+
+	/**
+	 * Helper function to count a false result as error
+	 * @param stats statistics of the operation
+	 * @param result
+	 * @return result
+	 */
+	private static boolean checked(OperationStats stats, boolean result) {
+		if (!result) {
+			stats.error();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean addPostalCode(String postalCode, int population, int area) {
+		return tryAddPostalCode(postalCode, population, area).isSuccess();
+	}
+
+	@Override
+	public ServiceStatus tryAddPostalCode(String postalCode, int population, int area) {
+		return checked(addPostalCodeStats, timed(addPostalCodeStats,
+				() -> delegate.tryAddPostalCode(postalCode, population, area)));
+	}
+
+	@Override
+	public boolean addDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas) {
+		return tryAddDistributionHub(hubIdentifier, location, servicedAreas) == ServiceStatus.ADDED;
+	}
+
+	@Override
+	public ServiceStatus tryAddDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas) {
+		return checked(addDistributionHubStats, timed(addDistributionHubStats,
+				() -> delegate.tryAddDistributionHub(hubIdentifier, location, servicedAreas)));
+	}
+
+	@Override
+	public int addPostalCodes(Iterable<PostalCodeRecord> records) {
+		return timed(addPostalCodesStats, () -> delegate.addPostalCodes(records));
+	}
+
+	@Override
+	public int addDistributionHubs(Iterable<HubRecord> records) {
+		return timed(addDistributionHubsStats, () -> delegate.addDistributionHubs(records));
+	}
+
+	@Override
+	public void hubDamage(String hubIdentifier, float repairEstimate) {
+		tryHubDamage(hubIdentifier, repairEstimate);
+	}
+
+	@Override
+	public ServiceStatus tryHubDamage(String hubIdentifier, float repairEstimate) {
+		return checked(hubDamageStats, timed(hubDamageStats,
+				() -> delegate.tryHubDamage(hubIdentifier, repairEstimate)));
+	}
+
+	@Override
+	public void hubRepair(String hubIdentifier, String employeeId, float repairTime,
+			boolean inService) {
+		tryHubRepair(hubIdentifier, employeeId, repairTime, inService);
+	}
+
+	@Override
+	public ServiceStatus tryHubRepair(String hubIdentifier, String employeeId,
+			float repairTime, boolean inService) {
+		return checked(hubRepairStats, timed(hubRepairStats,
+				() -> delegate.tryHubRepair(hubIdentifier, employeeId, repairTime, inService)));
+	}
+
+	@Override
+	public void addHubImpact(String id, int impactValue) {
+		timed(addHubImpactStats, () -> delegate.addHubImpact(id, impactValue));
+	}
+
+	@Override
+	public void addDamagedHub(String id, int numRepairs) {
+		timed(addDamagedHubStats, () -> delegate.addDamagedHub(id, numRepairs));
+	}
+
+	@Override
+	public void setMutationLog(MutationLog mutationLog) {
+		timed(setMutationLogStats, () -> delegate.setMutationLog(mutationLog));
+	}
+
+	@Override
+	public void setServiceLog(ServiceLog serviceLog) {
+		delegate.setServiceLog(serviceLog);
+	}
+
+	@Override
+	public ServiceLog getServiceLog() {
+		return delegate.getServiceLog();
+	}
+
+	@Override
+	public void compactLog() {
+		timed(compactLogStats, () -> delegate.compactLog());
+	}
+
+	@Override
+	public int peopleOutOfService() {
+		return timed(peopleOutOfServiceStats, () -> delegate.peopleOutOfService());
+	}
+
+	@Override
+	public int peopleOutOfService(DistributionHub hub) {
+		return timed(peopleOutOfServiceByHubStats, () -> delegate.peopleOutOfService(hub));
+	}
+
+	@Override
+	public DistributionHub getHub(String hubId) {
+		return timed(getHubStats, () -> delegate.getHub(hubId));
+	}
+
+	@Override
+	public List<HubImpact> fixOrder(int limit) {
+		return timed(fixOrderStats, () -> delegate.fixOrder(limit));
+	}
+
+	@Override
+	public List<DamagedPostalCodes> mostDamagedPostalCodes(int limit) {
+		return timed(mostDamagedPostalCodesStats, () -> delegate.mostDamagedPostalCodes(limit));
+	}
+
+	@Override
+	public List<Integer> rateOfServiceRestoration(float increment) {
+		return timed(rateOfServiceRestorationStats,
+				() -> delegate.rateOfServiceRestoration(increment));
+	}
+
+	@Override
+	public List<Integer> rateOfServiceRestoration(float increment, int crews,
+			RestorationSimulator.DispatchPolicy policy) {
+		return timed(rateOfServiceRestorationStats,
+				() -> delegate.rateOfServiceRestoration(increment, crews, policy));
+	}
+
+	@Override
+	public RestorationSimulator restorationSimulator() {
+		return timed(restorationSimulatorStats, () -> delegate.restorationSimulator());
+	}
+
+	@Override
+	public RepairScheduler repairScheduler() {
+		return timed(repairSchedulerStats, () -> delegate.repairScheduler());
+	}
+
+	@Override
+	public List<Crew> getCrews() {
+		return timed(getCrewsStats, () -> delegate.getCrews());
+	}
+
+	@Override
+	public RepairSchedule scheduleRepairs(List<Crew> crews, float travelSpeed, long timeLimitMillis) {
+		return timed(scheduleRepairsStats,
+				() -> delegate.scheduleRepairs(crews, travelSpeed, timeLimitMillis));
+	}
+
+	@Override
+	public List<HubImpact> repairPlan(String startHub, int maxDistance, float maxTime) {
+		return timed(repairPlanStats, () -> delegate.repairPlan(startHub, maxDistance, maxTime));
+	}
+
+	@Override
+	public List<RepairPlanResult> repairPlans(List<String> startHubs, int maxDistance,
+			float maxTime) {
+		return timed(repairPlansStats, () -> delegate.repairPlans(startHubs, maxDistance, maxTime));
+	}
+
+	@Override
+	public List<String> underservedPostalByPopulation(int limit) {
+		return timed(underservedPostalByPopulationStats,
+				() -> delegate.underservedPostalByPopulation(limit));
+	}
+
+	@Override
+	public List<String> underservedPostalByArea(int limit) {
+		return timed(underservedPostalByAreaStats, () -> delegate.underservedPostalByArea(limit));
+	}
+
+	@Override
+	public CompactModelStore toCompactModelStore() {
+		return timed(toCompactModelStoreStats, () -> delegate.toCompactModelStore());
+	}
+
+	@Override
+	public boolean saveSnapshot(String fileName) {
+		return checked(saveSnapshotStats, timed(saveSnapshotStats,
+				() -> delegate.saveSnapshot(fileName)));
+	}
+
+	@Override
+	public boolean loadSnapshot(String fileName) {
+		return checked(loadSnapshotStats, timed(loadSnapshotStats,
+				() -> delegate.loadSnapshot(fileName)));
+	}
+
+	@Override
+	public void saveToFile() {
+		timed(saveToFileStats, () -> delegate.saveToFile());
+	}
+}
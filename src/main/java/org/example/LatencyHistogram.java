@@ -0,0 +1,140 @@
+package org.example;
+/**
+ * Java class to represent a histogram of latencies in nanoseconds with
+ * log-linear buckets: values below 2^SUB_BITS have a bucket each, and
+ * every further power of two is split into 2^(SUB_BITS-1) buckets of
+ * equal width, so a bucket is never wider than 1/16 of its values and
+ * the histogram covers all long values with under 1000 buckets.
+ *
+ * Recording only computes the bucket with a few shifts and increments
+ * atomic counters, it does not allocate or lock, so it costs a few
+ * nanoseconds and can be called by any number of threads.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+	//number of bits of the value kept by a bucket
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int HALF_COUNT = SUB_COUNT / 2;
+	//buckets for the values below SUB_COUNT and for each larger power of two
+	private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * HALF_COUNT;
+
+	//number of values recorded in each bucket
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	//number, sum and maximum of the values recorded
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Function to record a latency
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(getBucket(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long current = max.get();
+		while (nanos > current && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Function to determine the bucket of given value
+	 * @param value non negative value
+	 * @return bucket index
+	 */
+	static int getBucket(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		//position of the highest bit, at least SUB_BITS
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BITS + 1;
+		return SUB_COUNT + (shift - 1) * HALF_COUNT + (int) ((value >>> shift) - HALF_COUNT);
+	}
+
+	/**
+	 * Function to determine the largest value of given bucket
+	 * @param bucket
+	 * @return value
+	 */
+	static long getBucketLimit(int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_COUNT) / HALF_COUNT + 1;
+		long low = (long) (HALF_COUNT + (bucket - SUB_COUNT) % HALF_COUNT) << shift;
+		return low + (1L << shift) - 1;
+	}
+
+	/**
+	 * Function to return the number of values recorded
+	 * @return count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Function to return the largest value recorded
+	 * @return nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Function to return the mean of the values recorded
+	 * @return nanoseconds, 0 if none are recorded
+	 */
+	public double getMean() {
+		long n = count.get();
+		return (n == 0) ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * Function to determine the value below which given fraction of
+	 * the values recorded lie, to the precision of the buckets
+	 * @param quantile between 0 and 1, e.g. 0.99
+	 * @return nanoseconds, 0 if none are recorded
+	 */
+	public long getPercentile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(getBucketLimit(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Function to clear the values recorded
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
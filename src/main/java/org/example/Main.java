@@ -4,17 +4,38 @@ package org.example;
  * Java program to simulate the power service system,
  * where each hub will contain set of postal codes 
  * and each postal code will have certain amount of population.
+ *
+ * Usage: java org.example.Main [--http=[host:]port] [eventFile], where
+ * damage and repair reports appended to the optional event file are
+ * applied as well, and --http serves the queries and reports as JSON on
+ * given port next to the menu, on the loopback address unless a host,
+ * e.g. 0.0.0.0 for all interfaces, is given.
  */
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
 public class Main {
+	//binary snapshot written on quit, used for fast startup
+	private static final String SNAPSHOT_FILE = "power_service.snapshot";
+	//write ahead log of changes made since the snapshot
+	private static final String LOG_FILE = "power_service.log";
+	private static MutationLog mutationLog;
+	private static OutageEventTailer eventTailer;
+	private static PowerServiceHttpServer httpServer;
 	private static Scanner scanner;
-	private static PowerService powerService;
+	private static PowerServiceOperations powerService;
+	//latencies and counters of the service operations, also published over JMX
+	private static PowerServiceMetrics metrics;
+	//answers repeated list queries until the status changes
+	private static CachingPowerService cache;
+	//prints the messages of the service without holding it up
+	private static AsyncServiceLog serviceLog;
 
 	/**
 	 * Function to display the menu
@@ -33,7 +54,8 @@ public class Main {
 		System.out.println("7.Schedule a repair plan");
 		System.out.println("8.Under served  Postal By population");
 		System.out.println("9.Under served Postal By Area");
-		System.out.println("10.Quit\n");
+		System.out.println("10.Quit");
+		System.out.println("11.Show operation metrics\n");
 		System.out.print("Enter your choice:");
 		
 	}
@@ -45,10 +67,32 @@ public class Main {
 		System.out.println("Welcome To Power Service System");
 		System.out.println("----------------------------------");
 		scanner = new Scanner(System.in);
-		powerService = new PowerService();
-		//load existing details from file hubs.txt and postalcodes.txt
-		loadPostalCodes();
-		loadDistributionHubs();
+		//shared with the event tailer thread, every operation is measured
+		cache = new CachingPowerService();
+		InstrumentedPowerService instrumented = new InstrumentedPowerService(cache);
+		metrics = instrumented.getMetrics();
+		powerService = instrumented;
+		serviceLog = new AsyncServiceLog();
+		powerService.setServiceLog(serviceLog);
+		metrics.registerMBeans(serviceLog);
+		//load existing details from snapshot if it is up to date, 
+		//otherwise from file hubs.txt and postalcodes.txt
+		if (isSnapshotCurrent() && powerService.loadSnapshot(SNAPSHOT_FILE)) {
+			System.out.println("Successfully loaded snapshot.");
+		}
+		else {
+			loadPostalCodes();
+			loadDistributionHubs();
+		}
+		openMutationLog();
+		for (String arg : args) {
+			if (arg.startsWith("--http=")) {
+				startHttpServer(arg.substring("--http=".length()));
+			}
+			else {
+				startEventTailer(Path.of(arg));
+			}
+		}
 		
 		// loop to handle the simulation 
 		while(true) {
@@ -99,53 +143,154 @@ public class Main {
 				underServedByArea();
 				break;
 			}
+			case 11: {
+				System.out.print(metrics.toTable());
+				System.out.println("Query cache: " + cache.getHits() + " hits, " + cache.getMisses()
+						+ " misses, " + cache.getEvictions() + " evictions, " + cache.getCacheSize()
+						+ " results");
+				break;
+			}
 			default:
 				System.out.println("Invalid choice!");
 				break;
 			}
 		}
+		stopHttpServer();
+		stopEventTailer();
 		powerService.saveToFile();
+		closeMutationLog();
+		metrics.unregisterMBeans(serviceLog);
+		serviceLog.close();
 		System.out.println("Thank you!");
 	}
 
+	/**
+	 * Function to replay the changes logged since the snapshot
+	 * and log all further changes
+	 */
+	private static void openMutationLog() {
+		try {
+			int count = MutationLog.replay(Path.of(LOG_FILE), powerService);
+			if (count > 0) {
+				System.out.println("Recovered " + count + " changes from log.");
+			}
+			mutationLog = new MutationLog(Path.of(LOG_FILE), Path.of(SNAPSHOT_FILE));
+			powerService.setMutationLog(mutationLog);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to fold the log into the snapshot and close it,
+	 * the snapshot is written directly if there is no log
+	 */
+	private static void closeMutationLog() {
+		if (mutationLog == null) {
+			powerService.saveSnapshot(SNAPSHOT_FILE);
+			return;
+		}
+		powerService.compactLog();
+		try {
+			mutationLog.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to start serving the queries and reports over HTTP
+	 * @param address port, or host and port separated by colon
+	 */
+	private static void startHttpServer(String address) {
+		int split = address.lastIndexOf(':');
+		String port = address.substring(split + 1);
+		try {
+			if (split < 0) {
+				httpServer = new PowerServiceHttpServer(powerService, Integer.parseInt(port));
+			}
+			else {
+				httpServer = new PowerServiceHttpServer(powerService, address.substring(0, split),
+						Integer.parseInt(port));
+			}
+			httpServer.start();
+			httpServer.getMetrics().registerMBeans(serviceLog);
+			System.out.println("Serving HTTP on " + httpServer.getAddress()
+					+ (httpServer.isVirtualThreads() ? " with virtual threads" : ""));
+		} catch (IllegalArgumentException e) {
+			System.out.println("Invalid HTTP port " + port);
+		} catch (IOException e) {
+			httpServer = null;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to stop serving HTTP requests
+	 */
+	private static void stopHttpServer() {
+		if (httpServer != null) {
+			httpServer.close();
+			httpServer.getMetrics().unregisterMBeans(serviceLog);
+		}
+	}
+
+	/**
+	 * Function to start applying the damage and repair
+	 * reports appended to given file
+	 * @param file
+	 */
+	private static void startEventTailer(Path file) {
+		try {
+			eventTailer = new OutageEventTailer(powerService, file);
+			eventTailer.start();
+			System.out.println("Reading outage events from " + file);
+		} catch (IOException e) {
+			eventTailer = null;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to apply the outage events read so far and stop
+	 */
+	private static void stopEventTailer() {
+		if (eventTailer == null) {
+			return;
+		}
+		try {
+			eventTailer.close();
+			System.out.println("Applied " + eventTailer.getEventsApplied() + " of "
+					+ eventTailer.getEventsRead() + " outage events, "
+					+ eventTailer.getEventsCoalesced() + " coalesced, "
+					+ eventTailer.getEventsRejected() + " rejected.");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to check whether the snapshot exists and is not older
+	 * than hubs.txt and postal_codes.txt
+	 * @return true or false
+	 */
+	private static boolean isSnapshotCurrent() {
+		File snapshot = new File(SNAPSHOT_FILE);
+		return snapshot.exists()
+				&& snapshot.lastModified() >= new File("hubs.txt").lastModified()
+				&& snapshot.lastModified() >= new File("postal_codes.txt").lastModified();
+	}
+
 	/**
 	 * Function to load distribution hubs from hubs.txt
 	 */
 	private static void loadDistributionHubs() {
 		try {
-			Scanner fileScanner = new Scanner(new File("hubs.txt"));
-			int count = 0;
-			//read the file line by line
-			while(fileScanner.hasNext()) {
-				String line = fileScanner.nextLine();
-				if (line.isEmpty()) {
-					continue;
-				}
-				String[] data = line.split(",");
-				if (data.length <3) {
-					System.out.println("Invalid Hub details..\n"
-							+ "Quitting application");
-					System.exit(0);
-				}
-				String id =  data[0].strip();
-				int x =  (int)Float.parseFloat(data[1].strip());
-				int y  = (int)Float.parseFloat(data[2].strip());
-				double area  = Double.parseDouble(data[3].strip());
-				float repairHours  = Float.parseFloat(data[4].strip());
-				int impactValue  = (int)Float.parseFloat(data[5].strip());
-				
-				Set<String> areas = new HashSet<>();
-				for (int i=6; i < data.length; i++) {
-					String code = data[i].strip();
-					areas.add(code);
-				}
-				//add to list
-				powerService.addDistributionHub(id, new Point(x,y), areas);
-				powerService.hubDamage(id, repairHours);
-				powerService.addHubImpact(id, impactValue);
-			}
+			CsvLoader loader = new CsvLoader();
+			loader.loadDistributionHubs(powerService, Path.of("hubs.txt"));
+			printLoadErrors(loader);
 			System.out.println("Successfully loaded hub details.");
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
@@ -176,36 +321,26 @@ public class Main {
 	 */
 	private static void loadPostalCodes() {
 		try {
-			Scanner fileScanner = new Scanner(new File("postal_codes.txt"));
-			int count = 0;
-			// read eac line of file
-			while(fileScanner.hasNext()) {
-				String line = fileScanner.nextLine();
-				if (line.isEmpty()) {
-					continue;
-				}
-				
-				String[] data = line.split(",");
-				if (data.length !=4) {
-					System.out.println("Invalid Postal codes..\n"
-							+ "Quitting application");
-					System.exit(0);
-				}
-				String id =  data[0].strip();
-				int np =  (int)Float.parseFloat(data[1].strip());
-				int area  = (int)Float.parseFloat(data[2].strip());
-				int numRepairs  = (int)Float.parseFloat(data[3].strip());
-				powerService.addPostalCode(id, np, area);
-				powerService.addDamagedHub(id,numRepairs);
-				count++;
-			}
+			CsvLoader loader = new CsvLoader();
+			loader.loadPostalCodes(powerService, Path.of("postal_codes.txt"));
+			printLoadErrors(loader);
 			System.out.println("Successfully loaded postal codes.");
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
 	}
 
+	/**
+	 * Function to print the rows skipped by the loader
+	 * @param loader
+	 */
+	private static void printLoadErrors(CsvLoader loader) {
+		for (String error : loader.getErrors()) {
+			System.out.println("Skipped invalid row " + error);
+		}
+	}
+
 	/**
 	 * Function to determine the under served postal codes by area
 	 */
@@ -246,20 +381,24 @@ public class Main {
 	 */
 	private static void scheduleRepairPlan() {
 		//prompt the user to enter details
-		System.out.println("please enter the start hub id: ");
-		String startHub = scanner.next();
+		System.out.println("please enter the start hub ids, separated by comma: ");
+		String startHubs = scanner.next();
 		System.out.println("please enter maximum distance to be covered: ");
 		int maxDistance = scanner.nextInt();
 		System.out.println("please enter maximum time: ");
 		float maxTime = scanner.nextFloat();
-		//schedule a repair plan
-		List<HubImpact> result = powerService.repairPlan(startHub, maxDistance, maxTime);
-		System.out.println("Repair  plan");
-		//print the most optimal path
-		for (HubImpact impact : result) {
-			System.out.print(" > " + impact.getHubId());
+		//schedule a repair plan for each crew
+		List<RepairPlanResult> results = powerService.repairPlans(
+				Arrays.asList(startHubs.split(",")), maxDistance, maxTime);
+		for (RepairPlanResult result : results) {
+			System.out.println("Repair  plan from " + result.getStartHub()
+					+ " (" + String.format("%.2f", result.getElapsedMillis()) + " ms)");
+			//print the most optimal path
+			for (HubImpact impact : result.getPlan()) {
+				System.out.print(" > " + impact.getHubId());
+			}
+			System.out.println("\n");
 		}
-		System.out.println("\n");
 	}
 
 	/**
@@ -304,13 +443,16 @@ public class Main {
 	private static void showServiceRestoration() {
 		System.out.println("Please enter the restoration rate(%): ");
 		float rate = scanner.nextFloat();
-		List<Integer> restores =  powerService.rateOfServiceRestoration(rate);
+		System.out.println("Please enter the number of crews: ");
+		int crews = scanner.nextInt();
+		List<Integer> restores =  powerService.rateOfServiceRestoration(rate, crews,
+				RestorationSimulator.DispatchPolicy.MOST_PEOPLE_FIRST);
 		System.out.println("-----------------");
 		System.out.println("Restoration Table");
 		System.out.println("-----------------");
-		System.out.println("Hours    Recovered%");
+		System.out.println("Recovered%    Hours");
 		for (int i=0;i < restores.size(); i++) {
-			System.out.println("  " +i + "      " +restores.get(i));
+			System.out.println("  " + (int) (i * rate) + "      " +restores.get(i));
 		}
 	}
 
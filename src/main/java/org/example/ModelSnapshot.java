@@ -0,0 +1,317 @@
+package org.example;
+/**
+ * Java class to write and read a binary snapshot of the power service
+ * model. The snapshot is a versioned file of fixed width record tables,
+ * which is read through a memory mapped buffer, so a restart does not
+ * have to parse hubs.txt and postal_codes.txt again.
+ *
+ * Layout of the file, all values are little endian:
+ * <pre>
+ * header     : magic, version, postal count, hub count,
+ *              served count, string bytes,
+ *              employee count, repaired count     (8 ints)
+ * strings    : offsets of postal ids, hub ids
+ *              then employee ids                  (count + 1 ints)
+ *              UTF-8 bytes of all ids
+ * postal     : population, area, repairs          (3 ints per code)
+ * hubs       : x, y, hours to repair, served offset,
+ *              served count (5 ints), impact (double) per hub
+ * employees  : repaired offset, repaired count    (2 ints per employee)
+ * served     : postal code indexes                (served count ints)
+ * repaired   : hub indexes                        (repaired count ints)
+ * </pre>
+ * Version 1 files have no employee counts, employee ids, employees
+ * and repaired tables, they are still read.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class ModelSnapshot {
+	//magic number at start of every snapshot, "PWSS"
+	public static final int MAGIC = 0x50575353;
+	//version of the format written by this class
+	public static final int VERSION = 2;
+
+	//size of header in bytes
+	private static final int HEADER_BYTES = 8 * 4;
+	//size of header of version 1 in bytes
+	private static final int HEADER_V1_BYTES = 6 * 4;
+	//size of a postal code record in bytes
+	private static final int POSTAL_RECORD_BYTES = 3 * 4;
+	//size of a hub record in bytes
+	private static final int HUB_RECORD_BYTES = 5 * 4 + 8;
+	//size of an employee record in bytes
+	private static final int EMPLOYEE_RECORD_BYTES = 2 * 4;
+
+	//utility class
+	private ModelSnapshot() {
+	}
+
+	/**
+	 * Function to write the given store to a snapshot file. The file is
+	 * written next to the target and renamed over it once complete.
+	 * @param store
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(CompactModelStore store, Path file) throws IOException {
+		PowerServiceEvents.SnapshotWriteEvent event = new PowerServiceEvents.SnapshotWriteEvent();
+		event.begin();
+		int postalCount = store.getPostalCodeCount();
+		int hubCount = store.getHubCount();
+		int employeeCount = store.getEmployeeCount();
+		byte[][] ids = new byte[postalCount + hubCount + employeeCount][];
+		long stringBytes = 0;
+		long servedCount = 0;
+		long repairedCount = 0;
+		for (int i = 0; i < postalCount; i++) {
+			ids[i] = store.getPostalCode(i).getBytes(StandardCharsets.UTF_8);
+			stringBytes += ids[i].length;
+		}
+		for (int i = 0; i < hubCount; i++) {
+			ids[postalCount + i] = store.getHubId(i).getBytes(StandardCharsets.UTF_8);
+			stringBytes += ids[postalCount + i].length;
+			servedCount += store.getServed(i).length;
+		}
+		for (int i = 0; i < employeeCount; i++) {
+			ids[postalCount + hubCount + i] = store.getEmployeeId(i).getBytes(StandardCharsets.UTF_8);
+			stringBytes += ids[postalCount + hubCount + i].length;
+			repairedCount += store.getEmployeeHubs(i).length;
+		}
+		long size = HEADER_BYTES + 4L * (ids.length + 1) + stringBytes
+				+ (long) POSTAL_RECORD_BYTES * postalCount
+				+ (long) HUB_RECORD_BYTES * hubCount + (long) EMPLOYEE_RECORD_BYTES * employeeCount
+				+ 4 * servedCount + 4 * repairedCount;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot of " + size + " bytes is too large");
+		}
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			//header
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(postalCount);
+			buffer.putInt(hubCount);
+			buffer.putInt((int) servedCount);
+			buffer.putInt((int) stringBytes);
+			buffer.putInt(employeeCount);
+			buffer.putInt((int) repairedCount);
+			//string dictionary
+			int offset = 0;
+			for (byte[] id : ids) {
+				buffer.putInt(offset);
+				offset += id.length;
+			}
+			buffer.putInt(offset);
+			for (byte[] id : ids) {
+				buffer.put(id);
+			}
+			//postal codes
+			for (int i = 0; i < postalCount; i++) {
+				buffer.putInt(store.getPopulation(i));
+				buffer.putInt(store.getArea(i));
+				buffer.putInt(store.getRepairCount(i));
+			}
+			//hubs
+			int servedOffset = 0;
+			for (int i = 0; i < hubCount; i++) {
+				buffer.putInt(store.getX(i));
+				buffer.putInt(store.getY(i));
+				buffer.putFloat(store.getHoursToRepair(i));
+				buffer.putInt(servedOffset);
+				buffer.putInt(store.getServed(i).length);
+				buffer.putDouble(store.getImpactValue(i));
+				servedOffset += store.getServed(i).length;
+			}
+			//employees
+			int repairedOffset = 0;
+			for (int i = 0; i < employeeCount; i++) {
+				buffer.putInt(repairedOffset);
+				buffer.putInt(store.getEmployeeHubs(i).length);
+				repairedOffset += store.getEmployeeHubs(i).length;
+			}
+			//served postal codes
+			for (int i = 0; i < hubCount; i++) {
+				for (int code : store.getServed(i)) {
+					buffer.putInt(code);
+				}
+			}
+			//repaired hubs
+			for (int i = 0; i < employeeCount; i++) {
+				for (int hub : store.getEmployeeHubs(i)) {
+					buffer.putInt(hub);
+				}
+			}
+			buffer.force();
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (event.shouldCommit()) {
+			event.file = file.toString();
+			event.bytesWritten = size;
+			event.postalCodes = postalCount;
+			event.hubs = hubCount;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Function to read the snapshot file into a new store
+	 * @param file
+	 * @return store with all hubs and postal codes
+	 * @throws IOException if file is not a valid snapshot
+	 */
+	public static CompactModelStore read(Path file) throws IOException {
+		PowerServiceEvents.SnapshotReadEvent event = new PowerServiceEvents.SnapshotReadEvent();
+		event.begin();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_V1_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Invalid snapshot size " + channel.size());
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a power service snapshot");
+			}
+			int version = buffer.getInt(4);
+			if (version != 1 && version != VERSION) {
+				throw new IOException("Unsupported snapshot version " + version);
+			}
+			int headerBytes = (version == 1) ? HEADER_V1_BYTES : HEADER_BYTES;
+			if (channel.size() < headerBytes) {
+				throw new IOException("Invalid snapshot size " + channel.size());
+			}
+			int postalCount = buffer.getInt(8);
+			int hubCount = buffer.getInt(12);
+			int servedCount = buffer.getInt(16);
+			int stringBytes = buffer.getInt(20);
+			int employeeCount = (version == 1) ? 0 : buffer.getInt(24);
+			int repairedCount = (version == 1) ? 0 : buffer.getInt(28);
+			if (postalCount < 0 || hubCount < 0 || servedCount < 0 || stringBytes < 0
+					|| employeeCount < 0 || repairedCount < 0) {
+				throw new IOException("Corrupt snapshot, negative count in header");
+			}
+
+			//size of the tables in long, so corrupt counts cannot overflow it
+			long tableBytes = 4L * ((long) postalCount + hubCount + employeeCount + 1)
+					+ stringBytes + (long) POSTAL_RECORD_BYTES * postalCount
+					+ (long) HUB_RECORD_BYTES * hubCount
+					+ (long) EMPLOYEE_RECORD_BYTES * employeeCount
+					+ 4L * servedCount + 4L * repairedCount;
+			if (headerBytes + tableBytes != channel.size()) {
+				throw new IOException("Corrupt snapshot, unexpected size " + channel.size());
+			}
+
+			//start of each table, within the file as its size matches
+			int offsets = headerBytes;
+			int strings = offsets + 4 * (postalCount + hubCount + employeeCount + 1);
+			int postal = strings + stringBytes;
+			int hubs = postal + POSTAL_RECORD_BYTES * postalCount;
+			int employees = hubs + HUB_RECORD_BYTES * hubCount;
+			int served = employees + EMPLOYEE_RECORD_BYTES * employeeCount;
+			int repaired = served + 4 * servedCount;
+
+			CompactModelStore store = new CompactModelStore(postalCount, hubCount);
+			for (int i = 0; i < postalCount; i++) {
+				int record = postal + i * POSTAL_RECORD_BYTES;
+				String id = readString(buffer, offsets, strings, stringBytes, i);
+				if (store.addPostalCode(id, buffer.getInt(record), buffer.getInt(record + 4)) != i) {
+					throw new IOException("Corrupt snapshot, duplicate postal code " + id);
+				}
+				store.setRepairCount(id, buffer.getInt(record + 8));
+			}
+			for (int i = 0; i < hubCount; i++) {
+				int record = hubs + i * HUB_RECORD_BYTES;
+				int[] codes = readIndexes(buffer, served, servedCount,
+						buffer.getInt(record + 12), buffer.getInt(record + 16), postalCount);
+				String id = readString(buffer, offsets, strings, stringBytes, postalCount + i);
+				int index = store.addDistributionHub(id, buffer.getInt(record),
+						buffer.getInt(record + 4), codes);
+				if (index != i) {
+					throw new IOException("Corrupt snapshot, duplicate hub " + id);
+				}
+				store.setHoursToRepair(index, buffer.getFloat(record + 8));
+				store.setImpactValue(index, buffer.getDouble(record + 20));
+			}
+			for (int i = 0; i < employeeCount; i++) {
+				int record = employees + i * EMPLOYEE_RECORD_BYTES;
+				int[] hubIndexes = readIndexes(buffer, repaired, repairedCount,
+						buffer.getInt(record), buffer.getInt(record + 4), hubCount);
+				String id = readString(buffer, offsets, strings, stringBytes,
+						postalCount + hubCount + i);
+				if (store.addEmployee(id, hubIndexes) != i) {
+					throw new IOException("Corrupt snapshot, duplicate employee " + id);
+				}
+			}
+			if (event.shouldCommit()) {
+				event.file = file.toString();
+				event.bytesRead = channel.size();
+				event.postalCodes = postalCount;
+				event.hubs = hubCount;
+				event.commit();
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Helper function to read a range of a table of indexes
+	 * @param buffer
+	 * @param table start of the table
+	 * @param tableCount number of indexes in the table
+	 * @param offset of the range in the table
+	 * @param count of indexes in the range
+	 * @param bound every index should be less than it
+	 * @return indexes
+	 * @throws IOException if the range or an index is out of bounds
+	 */
+	private static int[] readIndexes(ByteBuffer buffer, int table, int tableCount,
+			int offset, int count, int bound) throws IOException {
+		if (offset < 0 || count < 0 || (long) offset + count > tableCount) {
+			throw new IOException("Corrupt snapshot, index range out of bounds");
+		}
+		int[] indexes = new int[count];
+		for (int j = 0; j < count; j++) {
+			indexes[j] = buffer.getInt(table + 4 * (offset + j));
+			if (indexes[j] < 0 || indexes[j] >= bound) {
+				throw new IOException("Corrupt snapshot, index " + indexes[j] + " out of bounds");
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Helper function to read the id at given position of
+	 * the string dictionary
+	 * @param buffer
+	 * @param offsets
+	 * @param strings
+	 * @param stringBytes number of UTF-8 bytes of all ids
+	 * @param index
+	 * @return id as String
+	 * @throws IOException if its offsets are out of bounds
+	 */
+	private static String readString(ByteBuffer buffer, int offsets, int strings, int stringBytes,
+			int index) throws IOException {
+		int start = buffer.getInt(offsets + 4 * index);
+		int end = buffer.getInt(offsets + 4 * (index + 1));
+		if (start < 0 || end < start || end > stringBytes) {
+			throw new IOException("Corrupt snapshot, string offsets out of bounds");
+		}
+		byte[] bytes = new byte[end - start];
+		buffer.get(strings + start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,589 @@
+package org.example;
+/**
+ * Java class to represent the write ahead log of the power service.
+ * Each call to addPostalCode, addDistributionHub, hubDamage, hubRepair,
+ * addHubImpact and addDamagedHub is appended as a small binary record, so a crash between two saves does
+ * not lose the changes made in between.
+ *
+ * A change is logged before it is applied. Appending only queues the
+ * record and returns its sequence number, and the caller waits for it
+ * with awaitDurable once it no longer holds any lock of the service.
+ * Appends are group committed: a flusher thread writes all records queued
+ * since its last write and forces them to disk with a single fsync, so
+ * callers waiting at the same time share one fsync. If a write fails the
+ * log refuses all further records, and the waiting callers get the error.
+ *
+ * The log is kept in segments named after the base path with an
+ * increasing generation, e.g. power_service.log.3. On compaction the
+ * current state is captured, a new segment is started and a background
+ * thread writes the state as snapshot and deletes the older segments.
+ * All records set values rather than change them, hence replaying a
+ * segment which was already folded into the snapshot is harmless.
+ *
+ * Record layout: payload length (int), type (byte), payload, CRC32 of
+ * type and payload (int).
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class MutationLog implements Closeable {
+	//record types
+	public static final byte ADD_POSTAL_CODE = 1;
+	public static final byte ADD_DISTRIBUTION_HUB = 2;
+	public static final byte HUB_DAMAGE = 3;
+	public static final byte HUB_REPAIR = 4;
+	public static final byte HUB_IMPACT = 5;
+	public static final byte DAMAGED_POSTAL_CODE = 6;
+
+	//maximum length of an id in UTF-8 bytes, as it is written with a short length
+	public static final int MAX_ID_BYTES = 0xffff;
+
+	//default size of the active segment after which it is compacted
+	public static final long DEFAULT_COMPACT_BYTES = 64L << 20;
+
+	//base path of the segments
+	private Path base;
+	//snapshot written by the compaction
+	private Path snapshotFile;
+	//size of active segment after which it should be compacted
+	private long compactBytes;
+
+	//generation of the active segment
+	private int generation;
+	//channel of the active segment
+	private FileChannel channel;
+	//bytes written to the active segment
+	private long segmentSize;
+	//records waiting to be written
+	private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+	//sequence number of last appended record
+	private long appendedSequence = 0;
+	//sequence number of last record which is on disk
+	private long durableSequence = 0;
+	//failure of the flusher, reported to waiting callers
+	private IOException failure;
+	//whether the log is closed
+	private boolean closed = false;
+
+	//lock held while writing to the channel
+	private final Object writeLock = new Object();
+	//thread writing and forcing the pending records
+	private Thread flusher;
+	//thread writing the snapshots of compaction
+	private ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "mutation-log-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	//constructors
+	public MutationLog(Path base, Path snapshotFile) throws IOException {
+		this(base, snapshotFile, DEFAULT_COMPACT_BYTES);
+	}
+
+	public MutationLog(Path base, Path snapshotFile, long compactBytes) throws IOException {
+		this.base = base;
+		this.snapshotFile = snapshotFile;
+		this.compactBytes = compactBytes;
+		//never append after a possibly torn record, start a new segment
+		List<Integer> generations = getGenerations(base);
+		generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+		channel = openSegment(generation);
+		flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Function to log a call to addPostalCode
+	 * @param postalCode
+	 * @param population
+	 * @param area
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logAddPostalCode(String postalCode, int population, int area) throws IOException {
+		byte[] id = postalCode.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(2 + id.length + 8);
+		putString(record, id);
+		record.putInt(population);
+		record.putInt(area);
+		return append(ADD_POSTAL_CODE, record);
+	}
+
+	/**
+	 * Function to log a call to addDistributionHub
+	 * @param hubIdentifier
+	 * @param location
+	 * @param servicedAreas
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logAddDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas) throws IOException {
+		byte[] id = hubIdentifier.getBytes(StandardCharsets.UTF_8);
+		List<byte[]> codes = new ArrayList<byte[]>();
+		int size = 2 + id.length + 12;
+		for (String area : servicedAreas) {
+			byte[] code = area.getBytes(StandardCharsets.UTF_8);
+			codes.add(code);
+			size += 2 + code.length;
+		}
+		ByteBuffer record = ByteBuffer.allocate(size);
+		putString(record, id);
+		record.putInt(location.getX());
+		record.putInt(location.getY());
+		record.putInt(codes.size());
+		for (byte[] code : codes) {
+			putString(record, code);
+		}
+		return append(ADD_DISTRIBUTION_HUB, record);
+	}
+
+	/**
+	 * Function to log a call to hubDamage
+	 * @param hubIdentifier
+	 * @param repairEstimate
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logHubDamage(String hubIdentifier, float repairEstimate) throws IOException {
+		byte[] id = hubIdentifier.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(2 + id.length + 4);
+		putString(record, id);
+		record.putFloat(repairEstimate);
+		return append(HUB_DAMAGE, record);
+	}
+
+	/**
+	 * Function to log a call to hubRepair
+	 * @param hubIdentifier
+	 * @param employeeId
+	 * @param repairTime
+	 * @param inService
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logHubRepair(String hubIdentifier, String employeeId,
+			float repairTime, boolean inService) throws IOException {
+		byte[] id = hubIdentifier.getBytes(StandardCharsets.UTF_8);
+		byte[] employee = employeeId.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(2 + id.length + 2 + employee.length + 5);
+		putString(record, id);
+		putString(record, employee);
+		record.putFloat(repairTime);
+		record.put((byte) (inService ? 1 : 0));
+		return append(HUB_REPAIR, record);
+	}
+
+	/**
+	 * Function to log a call to addHubImpact
+	 * @param id
+	 * @param impactValue
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logHubImpact(String id, int impactValue) throws IOException {
+		byte[] hub = id.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(2 + hub.length + 4);
+		putString(record, hub);
+		record.putInt(impactValue);
+		return append(HUB_IMPACT, record);
+	}
+
+	/**
+	 * Function to log a call to addDamagedHub
+	 * @param id
+	 * @param numRepairs
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	public long logDamagedPostalCode(String id, int numRepairs) throws IOException {
+		byte[] code = id.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(2 + code.length + 4);
+		putString(record, code);
+		record.putInt(numRepairs);
+		return append(DAMAGED_POSTAL_CODE, record);
+	}
+
+	/**
+	 * Function to check whether the id fits in a record, i.e. it has
+	 * at most MAX_ID_BYTES bytes in UTF-8
+	 * @param id
+	 * @return true or false
+	 */
+	public static boolean isLoggable(String id) {
+		//a char takes at most 3 bytes, so only long ids are encoded
+		return id.length() * 3 <= MAX_ID_BYTES
+				|| id.getBytes(StandardCharsets.UTF_8).length <= MAX_ID_BYTES;
+	}
+
+	/**
+	 * Function to check whether the active segment has grown
+	 * enough to be compacted
+	 * @return true or false
+	 */
+	public synchronized boolean needsCompaction() {
+		return segmentSize + pending.position() >= compactBytes;
+	}
+
+	/**
+	 * Function to fold the log into a new snapshot. A new segment is
+	 * started right away, the given state is written as snapshot in the
+	 * background and the older segments are deleted once it is written.
+	 * @param store state of the power service including all logged records
+	 * @param serviceLog log to report a failed snapshot to, may be null
+	 * @throws IOException
+	 */
+	public void compact(CompactModelStore store, ServiceLog serviceLog) throws IOException {
+		int folded;
+		synchronized (writeLock) {
+			synchronized (this) {
+				writePending();
+				channel.close();
+				folded = generation;
+				generation++;
+				channel = openSegment(generation);
+				segmentSize = 0;
+			}
+		}
+		compactor.submit(() -> {
+			try {
+				ModelSnapshot.write(store, snapshotFile);
+				for (int old : getGenerations(base)) {
+					if (old <= folded) {
+						Files.deleteIfExists(getSegment(base, old));
+					}
+				}
+			} catch (IOException e) {
+				PowerService.log(serviceLog, "Writing snapshot " + snapshotFile + " failed: " + e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Function to replay all segments of the log on the given power
+	 * service, a segment is read till its first incomplete or corrupt
+	 * record
+	 * @param base
+	 * @param powerService
+	 * @return number of records replayed
+	 * @throws IOException
+	 */
+	public static int replay(Path base, PowerServiceOperations powerService) throws IOException {
+		int count = 0;
+		for (int generation : getGenerations(base)) {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(getSegment(base, generation)));
+			CRC32 crc = new CRC32();
+			while (buffer.remaining() >= 9) {
+				int length = buffer.getInt();
+				if (length < 0 || buffer.remaining() < length + 5) {
+					break;
+				}
+				int start = buffer.position();
+				crc.reset();
+				crc.update(buffer.array(), start, length + 1);
+				buffer.position(start + length + 1);
+				if ((int) crc.getValue() != buffer.getInt()) {
+					break;
+				}
+				apply(ByteBuffer.wrap(buffer.array(), start, length + 1), powerService);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Function to wait for the pending records and the running
+	 * compaction, and close the log
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			flusher.join();
+			compactor.shutdown();
+			compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (writeLock) {
+			synchronized (this) {
+				writePending();
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Function to wait till the record of given sequence number,
+	 * and all records before it, are on disk
+	 * @param sequence
+	 * @throws IOException if the records could not be written
+	 */
+	public synchronized void awaitDurable(long sequence) throws IOException {
+		//group commit, wait for the flusher to force our batch
+		while (durableSequence < sequence && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for log", e);
+			}
+		}
+		if (durableSequence < sequence) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Helper function to queue the record for the flusher
+	 * @param type
+	 * @param payload
+	 * @return sequence number of the record
+	 * @throws IOException if the log is closed or failed
+	 */
+	private synchronized long append(byte type, ByteBuffer payload) throws IOException {
+		if (closed) {
+			throw new IOException("Mutation log is closed");
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		int length = payload.position();
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload.array(), 0, length);
+		if (pending.remaining() < length + 9) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length + 9));
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+		pending.putInt(length);
+		pending.put(type);
+		pending.put(payload.array(), 0, length);
+		pending.putInt((int) crc.getValue());
+		long sequence = ++appendedSequence;
+		notifyAll();
+		return sequence;
+	}
+
+	/**
+	 * Function run by the flusher thread to write and force the
+	 * queued records in batches
+	 */
+	private void flushLoop() {
+		while (true) {
+			synchronized (this) {
+				while (!closed && pending.position() == 0) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pending.position() == 0) {
+					return;
+				}
+			}
+			synchronized (writeLock) {
+				ByteBuffer batch;
+				FileChannel target;
+				long sequence;
+				synchronized (this) {
+					batch = pending;
+					pending = ByteBuffer.allocate(batch.capacity());
+					target = channel;
+					sequence = appendedSequence;
+				}
+				try {
+					batch.flip();
+					int bytes = batch.remaining();
+					while (batch.hasRemaining()) {
+						target.write(batch);
+					}
+					target.force(false);
+					synchronized (this) {
+						segmentSize += bytes;
+						durableSequence = Math.max(durableSequence, sequence);
+						notifyAll();
+					}
+				} catch (IOException e) {
+					synchronized (this) {
+						failure = e;
+						notifyAll();
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper function to write and force the pending records on the
+	 * calling thread, both locks should be held
+	 * @throws IOException
+	 */
+	private void writePending() throws IOException {
+		try {
+			pending.flip();
+			int bytes = pending.remaining();
+			while (pending.hasRemaining()) {
+				channel.write(pending);
+			}
+			pending.clear();
+			channel.force(false);
+			segmentSize += bytes;
+			durableSequence = appendedSequence;
+		} catch (IOException e) {
+			failure = e;
+			throw e;
+		} finally {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Helper function to apply a single record to the power service
+	 * @param record type followed by payload
+	 * @param powerService
+	 */
+	private static void apply(ByteBuffer record, PowerServiceOperations powerService) {
+		byte type = record.get();
+		switch (type) {
+		case ADD_POSTAL_CODE: {
+			String id = getString(record);
+			powerService.addPostalCode(id, record.getInt(), record.getInt());
+			break;
+		}
+		case ADD_DISTRIBUTION_HUB: {
+			String id = getString(record);
+			Point location = new Point(record.getInt(), record.getInt());
+			int count = record.getInt();
+			Set<String> areas = new HashSet<String>();
+			for (int i = 0; i < count; i++) {
+				areas.add(getString(record));
+			}
+			powerService.addDistributionHub(id, location, areas);
+			break;
+		}
+		case HUB_DAMAGE: {
+			String id = getString(record);
+			powerService.hubDamage(id, record.getFloat());
+			break;
+		}
+		case HUB_REPAIR: {
+			String id = getString(record);
+			String employee = getString(record);
+			powerService.hubRepair(id, employee, record.getFloat(), record.get() == 1);
+			break;
+		}
+		case HUB_IMPACT: {
+			String id = getString(record);
+			powerService.addHubImpact(id, record.getInt());
+			break;
+		}
+		case DAMAGED_POSTAL_CODE: {
+			String id = getString(record);
+			powerService.addDamagedHub(id, record.getInt());
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Helper function to write a string as its length and bytes
+	 * @param buffer
+	 * @param bytes
+	 * @throws IOException if the string is longer than MAX_ID_BYTES
+	 */
+	private static void putString(ByteBuffer buffer, byte[] bytes) throws IOException {
+		//callers check isLoggable, a longer id would replay as garbage
+		if (bytes.length > MAX_ID_BYTES) {
+			throw new IOException("Id of " + bytes.length + " bytes is too long to log");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Helper function to read a string written by putString
+	 * @param buffer
+	 * @return string
+	 */
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xffff;
+		String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	/**
+	 * Helper function to open the segment of given generation for append
+	 * @param generation
+	 * @return channel
+	 * @throws IOException
+	 */
+	private FileChannel openSegment(int generation) throws IOException {
+		return FileChannel.open(getSegment(base, generation), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Helper function to return the path of the segment of given generation
+	 * @param base
+	 * @param generation
+	 * @return path
+	 */
+	private static Path getSegment(Path base, int generation) {
+		return base.resolveSibling(base.getFileName() + "." + generation);
+	}
+
+	/**
+	 * Helper function to return the generations of existing segments
+	 * in increasing order
+	 * @param base
+	 * @return list of generations
+	 * @throws IOException
+	 */
+	private static List<Integer> getGenerations(Path base) throws IOException {
+		List<Integer> generations = new ArrayList<Integer>();
+		Path directory = base.toAbsolutePath().getParent();
+		String prefix = base.getFileName() + ".";
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+			for (Path file : files) {
+				String suffix = file.getFileName().toString().substring(prefix.length());
+				try {
+					generations.add(Integer.parseInt(suffix));
+				} catch (NumberFormatException e) {
+					//not a segment
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+}
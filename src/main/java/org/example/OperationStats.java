@@ -0,0 +1,83 @@
+package org.example;
+/**
+ * Java class to represent the number of calls and errors of a power
+ * service operation and the histogram of its latencies.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OperationStats implements OperationStatsMBean {
+	//attributes
+	private final String name;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong errors = new AtomicLong();
+
+	//constructor
+	public OperationStats(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Function to record a call which started at given time,
+	 * as returned by System.nanoTime
+	 * @param startNanos
+	 */
+	public void record(long startNanos) {
+		latencies.record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Function to record that a call failed
+	 */
+	public void error() {
+		errors.incrementAndGet();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	@Override
+	public long getCalls() {
+		return latencies.getCount();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public double getMeanMicros() {
+		return latencies.getMean() / 1000;
+	}
+
+	@Override
+	public double getP50Micros() {
+		return latencies.getPercentile(0.5) / 1000.0;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return latencies.getPercentile(0.99) / 1000.0;
+	}
+
+	@Override
+	public double getP999Micros() {
+		return latencies.getPercentile(0.999) / 1000.0;
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return latencies.getMax() / 1000.0;
+	}
+
+	@Override
+	public void reset() {
+		latencies.reset();
+		errors.set(0);
+	}
+}
@@ -0,0 +1,23 @@
+package org.example;
+/**
+ * Management interface of {@link OperationStats}, through which the
+ * calls, errors and latencies of a power service operation are
+ * published over JMX, e.g. to jconsole.
+ */
+public interface OperationStatsMBean {
+	long getCalls();
+
+	long getErrors();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	void reset();
+}
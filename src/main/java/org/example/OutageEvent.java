@@ -0,0 +1,72 @@
+package org.example;
+/**
+ * Java class to represent a damage or repair report of a hub
+ * read from the outage event file, which is applied to the
+ * power service as hubDamage or hubRepair.
+ */
+public class OutageEvent {
+	//attributes
+	private boolean repair;
+	private String hubId;
+	private String employeeId;
+	private float hours;
+	private boolean inService;
+
+	//constructors
+	public OutageEvent(String hubId, float repairEstimate) {
+		this(false, hubId, null, repairEstimate, false);
+	}
+
+	public OutageEvent(String hubId, String employeeId, float repairTime, boolean inService) {
+		this(true, hubId, employeeId, repairTime, inService);
+	}
+
+	private OutageEvent(boolean repair, String hubId, String employeeId,
+			float hours, boolean inService) {
+		this.repair = repair;
+		this.hubId = hubId;
+		this.employeeId = employeeId;
+		this.hours = hours;
+		this.inService = inService;
+	}
+
+	/**
+	 * Function to apply the event to given power service
+	 * @param powerService
+	 * @return status of the change
+	 */
+	public ServiceStatus apply(PowerServiceOperations powerService) {
+		if (repair) {
+			return powerService.tryHubRepair(hubId, employeeId, hours, inService);
+		}
+		return powerService.tryHubDamage(hubId, hours);
+	}
+
+	//getter functions for attributes
+	public boolean isRepair() {
+		return repair;
+	}
+
+	public String getHubId() {
+		return hubId;
+	}
+
+	public String getEmployeeId() {
+		return employeeId;
+	}
+
+	public float getHours() {
+		return hours;
+	}
+
+	public boolean isInService() {
+		return inService;
+	}
+
+	@Override
+	public String toString() {
+		return repair ? "repair " + hubId + " by " + employeeId + " " + hours + "h"
+				+ (inService ? " in service" : "")
+				: "damage " + hubId + " " + hours + "h";
+	}
+}
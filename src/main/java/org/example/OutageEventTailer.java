@@ -0,0 +1,571 @@
+package org.example;
+/**
+ * Java class to feed damage and repair reports from a local event file
+ * into the power service, e.g. the export of the SCADA system. Like
+ * tail -f, only the events appended after start are read. A truncated
+ * or replaced file is read again from its start.
+ *
+ * A reader thread waits for changes to the file with a WatchService,
+ * parses the new lines and puts the events on a bounded queue, so a
+ * slow service holds back the reader instead of filling the memory.
+ * An applier thread takes the events from the queue and coalesces the
+ * identical reports that arrive within the window, i.e. of the same type,
+ * hub, employee and inService, into the latest one, which is moved to the
+ * end of the batch. Every report replaces the hours to repair of the hub
+ * and a repair makes the hub the last one of its employee, so the batch
+ * leaves the same hubs and crews as applying every report. The remaining
+ * events are applied as one batch when the window ends or the batch is
+ * full.
+ *
+ * Each line is either a JSON object or comma separated values:
+ * {"type":"damage","hub":"HUB1","hours":12.5}
+ * {"type":"repair","hub":"HUB1","employee":"E7","hours":3,"inService":true}
+ * damage,HUB1,12.5
+ * repair,HUB1,E7,3,true
+ *
+ * The service should be a ConcurrentPowerService if it is also used by
+ * other threads while the events are applied.
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OutageEventTailer implements Closeable {
+	//default time to collect reports before they are applied
+	public static final long DEFAULT_WINDOW_MILLIS = 1000;
+	//default maximum number of events in a batch
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	//default number of parsed events waiting to be applied
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+	//time to wait for a change before checking the file anyway
+	private static final long POLL_MILLIS = 500;
+	//longest wait before reading again after the file could not be read
+	private static final long MAX_BACKOFF_MILLIS = 30000;
+
+	//attributes
+	private PowerServiceOperations powerService;
+	private Path file;
+	private long windowMillis;
+	private int batchSize;
+	private BlockingQueue<OutageEvent> queue;
+	private Thread reader;
+	private Thread applier;
+	private volatile boolean running = false;
+	private volatile boolean readerDone = false;
+	//position after the last complete line read
+	private long position;
+	//bytes of the incomplete last line
+	private ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+	//counters
+	private AtomicLong eventsRead = new AtomicLong();
+	private AtomicLong eventsInvalid = new AtomicLong();
+	private AtomicLong eventsCoalesced = new AtomicLong();
+	private AtomicLong eventsApplied = new AtomicLong();
+	private AtomicLong eventsRejected = new AtomicLong();
+	private AtomicLong batchesApplied = new AtomicLong();
+	private AtomicLong readErrors = new AtomicLong();
+
+	//constructors
+	public OutageEventTailer(PowerServiceOperations powerService, Path file) {
+		this(powerService, file, DEFAULT_WINDOW_MILLIS, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public OutageEventTailer(PowerServiceOperations powerService, Path file, long windowMillis,
+			int batchSize, int queueCapacity) {
+		if (powerService == null || file == null) {
+			throw new IllegalArgumentException("Power service and file cannot be null");
+		}
+		if (windowMillis < 0 || batchSize <= 0 || queueCapacity <= 0) {
+			throw new IllegalArgumentException("Window, batch size and queue capacity should be positive");
+		}
+		this.powerService = powerService;
+		this.file = file.toAbsolutePath();
+		this.windowMillis = windowMillis;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<OutageEvent>(queueCapacity);
+	}
+
+	/**
+	 * Function to start reading the events appended to the file
+	 * from now on
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+		WatchService watcher = file.getFileSystem().newWatchService();
+		try {
+			file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			watcher.close();
+			throw e;
+		}
+		position = Files.exists(file) ? Files.size(file) : 0;
+		running = true;
+		readerDone = false;
+		reader = new Thread(() -> readLoop(watcher), "outage-event-reader");
+		applier = new Thread(this::applyLoop, "outage-event-applier");
+		reader.setDaemon(true);
+		applier.setDaemon(true);
+		reader.start();
+		applier.start();
+	}
+
+	/**
+	 * Function to stop reading the file, the events read so
+	 * far are applied before it returns
+	 */
+	@Override
+	public void close() throws IOException {
+		Thread reader;
+		Thread applier;
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			reader = this.reader;
+			applier = this.applier;
+		}
+		try {
+			reader.join();
+			applier.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while stopping the event reader", e);
+		}
+	}
+
+	//getter functions for counters
+	public long getEventsRead() {
+		return eventsRead.get();
+	}
+
+	public long getEventsInvalid() {
+		return eventsInvalid.get();
+	}
+
+	public long getEventsCoalesced() {
+		return eventsCoalesced.get();
+	}
+
+	public long getEventsApplied() {
+		return eventsApplied.get();
+	}
+
+	public long getEventsRejected() {
+		return eventsRejected.get();
+	}
+
+	public long getBatchesApplied() {
+		return batchesApplied.get();
+	}
+
+	public long getReadErrors() {
+		return readErrors.get();
+	}
+
+	/**
+	 * Function run by the reader thread, it reads the new lines
+	 * whenever the file changes, or at least every poll interval.
+	 * If the file cannot be read the error is reported to the
+	 * service log and reading is retried, waiting twice as long
+	 * after each failure in a row.
+	 * @param watcher
+	 */
+	private void readLoop(WatchService watcher) {
+		try (watcher) {
+			long backoff = 0;
+			while (running) {
+				long wait = POLL_MILLIS;
+				try {
+					readNewLines();
+					if (backoff > 0) {
+						PowerService.log(powerService.getServiceLog(), "Reading " + file + " resumed");
+						backoff = 0;
+					}
+				} catch (IOException e) {
+					readErrors.incrementAndGet();
+					backoff = (backoff == 0) ? POLL_MILLIS : Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+					wait = backoff;
+					PowerService.log(powerService.getServiceLog(), "Reading " + file + " failed: "
+							+ e.getMessage() + ", retrying in " + backoff + " ms");
+				}
+				WatchKey key = watcher.poll(wait, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					key.pollEvents();
+					key.reset();
+				}
+			}
+			//pick up what was appended just before close
+			readNewLines();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			PowerService.log(powerService.getServiceLog(),
+					"Reading " + file + " failed: " + e.getMessage());
+		} finally {
+			readerDone = true;
+		}
+	}
+
+	/**
+	 * Function to read the lines appended since the last read,
+	 * an incomplete last line is kept until its end is written
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void readNewLines() throws IOException, InterruptedException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < position) {
+				//truncated or replaced, start again
+				position = 0;
+				partialLine.reset();
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			while (position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					byte b = buffer.get(i);
+					if (b == '\n') {
+						String line = partialLine.toString(StandardCharsets.UTF_8).trim();
+						partialLine.reset();
+						if (!line.isEmpty()) {
+							handleLine(line);
+						}
+					}
+					else {
+						partialLine.write(b);
+					}
+				}
+				position += read;
+			}
+		} catch (NoSuchFileException e) {
+			//not created yet, or being replaced
+			position = 0;
+			partialLine.reset();
+		}
+	}
+
+	/**
+	 * Function to parse the line and queue the event, it
+	 * waits while the queue is full
+	 * @param line
+	 * @throws InterruptedException
+	 */
+	private void handleLine(String line) throws InterruptedException {
+		OutageEvent event;
+		try {
+			event = line.startsWith("{") ? parseJson(line) : parseCsv(line);
+		} catch (IllegalArgumentException e) {
+			eventsInvalid.incrementAndGet();
+			PowerService.log(powerService.getServiceLog(),
+					"Skipped invalid event " + line + ": " + e.getMessage());
+			return;
+		}
+		eventsRead.incrementAndGet();
+		queue.put(event);
+	}
+
+	/**
+	 * Function run by the applier thread, it collects the events of
+	 * a window, keeping the latest one of identical reports, and
+	 * applies them
+	 */
+	private void applyLoop() {
+		Map<List<Object>, OutageEvent> pending = new LinkedHashMap<List<Object>, OutageEvent>();
+		List<OutageEvent> drained = new ArrayList<OutageEvent>();
+		long windowEnd = 0;
+		try {
+			while (!readerDone || !queue.isEmpty()) {
+				long wait = pending.isEmpty() ? POLL_MILLIS
+						: Math.max(windowEnd - System.currentTimeMillis(), 0);
+				OutageEvent event = queue.poll(wait, TimeUnit.MILLISECONDS);
+				if (event != null) {
+					if (pending.isEmpty()) {
+						windowEnd = System.currentTimeMillis() + windowMillis;
+					}
+					drained.add(event);
+					queue.drainTo(drained, batchSize);
+					for (OutageEvent e : drained) {
+						List<Object> key = Arrays.asList(e.isRepair(), e.getHubId(),
+								e.getEmployeeId(), e.isInService());
+						//remove first, so the latest report keeps its place in the order
+						if (pending.remove(key) != null) {
+							eventsCoalesced.incrementAndGet();
+						}
+						pending.put(key, e);
+					}
+					drained.clear();
+				}
+				if (!pending.isEmpty() && (pending.size() >= batchSize
+						|| System.currentTimeMillis() >= windowEnd)) {
+					applyBatch(pending);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!pending.isEmpty()) {
+				applyBatch(pending);
+			}
+		}
+	}
+
+	/**
+	 * Function to apply the coalesced events to the service
+	 * @param pending
+	 */
+	private void applyBatch(Map<List<Object>, OutageEvent> pending) {
+		for (OutageEvent event : pending.values()) {
+			if (!event.apply(powerService).isSuccess()) {
+				eventsRejected.incrementAndGet();
+			}
+		}
+		eventsApplied.addAndGet(pending.size());
+		batchesApplied.incrementAndGet();
+		pending.clear();
+	}
+
+	/**
+	 * Function to parse a comma separated event, either
+	 * damage,hub,hours or repair,hub,employee,hours,inService
+	 * @param line
+	 * @return event
+	 */
+	static OutageEvent parseCsv(String line) {
+		String[] fields = line.split(",");
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = fields[i].trim();
+		}
+		switch (fields[0].toLowerCase()) {
+		case "damage":
+			if (fields.length != 3) {
+				throw new IllegalArgumentException("expected damage,hub,hours");
+			}
+			return new OutageEvent(fields[1], parseHours(fields[2]));
+		case "repair":
+			if (fields.length != 5) {
+				throw new IllegalArgumentException("expected repair,hub,employee,hours,inService");
+			}
+			return new OutageEvent(fields[1], fields[2], parseHours(fields[3]),
+					parseBoolean(fields[4]));
+		default:
+			throw new IllegalArgumentException("unknown event type " + fields[0]);
+		}
+	}
+
+	/**
+	 * Function to parse an event written as a flat JSON object with
+	 * the fields type, hub, hours and for repairs employee and inService
+	 * @param line
+	 * @return event
+	 */
+	static OutageEvent parseJson(String line) {
+		Map<String, String> fields = parseJsonObject(line);
+		String type = fields.get("type");
+		String hub = fields.get("hub");
+		String hours = fields.get("hours");
+		if (type == null || hub == null || hours == null) {
+			throw new IllegalArgumentException("expected type, hub and hours");
+		}
+		switch (type.toLowerCase()) {
+		case "damage":
+			return new OutageEvent(hub, parseHours(hours));
+		case "repair":
+			String employee = fields.get("employee");
+			String inService = fields.get("inService");
+			if (employee == null || inService == null) {
+				throw new IllegalArgumentException("expected employee and inService");
+			}
+			return new OutageEvent(hub, employee, parseHours(hours), parseBoolean(inService));
+		default:
+			throw new IllegalArgumentException("unknown event type " + type);
+		}
+	}
+
+	/**
+	 * Function to parse a JSON object whose values are strings,
+	 * numbers, booleans or null into a map of field names to values
+	 * @param text
+	 * @return map of fields
+	 */
+	private static Map<String, String> parseJsonObject(String text) {
+		Map<String, String> fields = new HashMap<String, String>();
+		int[] at = {skipSpaces(text, 0)};
+		expect(text, at, '{');
+		if (peek(text, at) == '}') {
+			at[0]++;
+			return fields;
+		}
+		while (true) {
+			String name = readJsonString(text, at);
+			expect(text, at, ':');
+			String value;
+			if (peek(text, at) == '"') {
+				value = readJsonString(text, at);
+			}
+			else {
+				int start = at[0];
+				while (at[0] < text.length() && ",} \t".indexOf(text.charAt(at[0])) < 0) {
+					at[0]++;
+				}
+				value = text.substring(start, at[0]);
+				if (value.isEmpty() || value.equals("null")) {
+					value = null;
+				}
+			}
+			fields.put(name, value);
+			char next = peek(text, at);
+			at[0]++;
+			if (next == '}') {
+				break;
+			}
+			if (next != ',') {
+				throw new IllegalArgumentException("expected , or } at " + (at[0] - 1));
+			}
+		}
+		if (skipSpaces(text, at[0]) != text.length()) {
+			throw new IllegalArgumentException("unexpected text after object");
+		}
+		return fields;
+	}
+
+	/**
+	 * Function to read a quoted JSON string at the position
+	 * @param text
+	 * @param at position, moved after the string
+	 * @return string without quotes and escapes
+	 */
+	private static String readJsonString(String text, int[] at) {
+		expect(text, at, '"');
+		StringBuilder value = new StringBuilder();
+		while (at[0] < text.length()) {
+			char c = text.charAt(at[0]++);
+			if (c == '"') {
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			if (at[0] >= text.length()) {
+				break;
+			}
+			char escaped = text.charAt(at[0]++);
+			switch (escaped) {
+			case 'n': value.append('\n'); break;
+			case 't': value.append('\t'); break;
+			case 'r': value.append('\r'); break;
+			case 'b': value.append('\b'); break;
+			case 'f': value.append('\f'); break;
+			case 'u':
+				if (at[0] + 4 > text.length()) {
+					throw new IllegalArgumentException("invalid unicode escape");
+				}
+				try {
+					value.append((char) Integer.parseInt(text.substring(at[0], at[0] + 4), 16));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("invalid unicode escape");
+				}
+				at[0] += 4;
+				break;
+			default: value.append(escaped);
+			}
+		}
+		throw new IllegalArgumentException("unterminated string");
+	}
+
+	/**
+	 * Helper function to skip white spaces and check the next character
+	 * @param text
+	 * @param at
+	 * @param c
+	 */
+	private static void expect(String text, int[] at, char c) {
+		if (peek(text, at) != c) {
+			throw new IllegalArgumentException("expected " + c + " at " + at[0]);
+		}
+		at[0]++;
+	}
+
+	/**
+	 * Helper function to skip white spaces and return the next character
+	 * @param text
+	 * @param at
+	 * @return next character, 0 at the end
+	 */
+	private static char peek(String text, int[] at) {
+		at[0] = skipSpaces(text, at[0]);
+		return at[0] < text.length() ? text.charAt(at[0]) : 0;
+	}
+
+	/**
+	 * Helper function to return the position of the next
+	 * character which is not a white space
+	 * @param text
+	 * @param at
+	 * @return position
+	 */
+	private static int skipSpaces(String text, int at) {
+		while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+			at++;
+		}
+		return at;
+	}
+
+	/**
+	 * Helper function to parse the hours of an event
+	 * @param value
+	 * @return hours
+	 */
+	private static float parseHours(String value) {
+		try {
+			return Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid hours " + value);
+		}
+	}
+
+	/**
+	 * Helper function to parse whether the hub is in service,
+	 * as true/false or y/n
+	 * @param value
+	 * @return true or false
+	 */
+	private static boolean parseBoolean(String value) {
+		switch (value.toLowerCase()) {
+		case "true": case "y": case "yes": return true;
+		case "false": case "n": case "no": return false;
+		default: throw new IllegalArgumentException("invalid inService " + value);
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package org.example;
+/**
+ * Java class to represent an immutable sorted map as a balanced (AVL)
+ * binary tree. Adding or removing a key returns a new map which shares
+ * all nodes with the old one except the path from the root to the key,
+ * so both versions stay valid and can be read by any number of threads
+ * without locks while a writer creates the next version in O(log n).
+ */
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+final class PersistentSortedMap<K, V> {
+	//order of the keys
+	private final Comparator<? super K> comparator;
+	private final Node<K, V> root;
+
+	//constructor
+	private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+		this.comparator = comparator;
+		this.root = root;
+	}
+
+	/**
+	 * Function to create an empty map
+	 * @param comparator
+	 * @return empty map
+	 */
+	static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+		return new PersistentSortedMap<K, V>(comparator, null);
+	}
+
+	/**
+	 * Function to create a map from keys which are already sorted
+	 * and distinct, in linear time
+	 * @param comparator
+	 * @param keys
+	 * @param values value of each key
+	 * @return map
+	 */
+	static <K, V> PersistentSortedMap<K, V> fromSorted(Comparator<? super K> comparator,
+			K[] keys, V[] values) {
+		return new PersistentSortedMap<K, V>(comparator, build(keys, values, 0, keys.length - 1));
+	}
+
+	/**
+	 * Function to return the number of keys
+	 * @return size
+	 */
+	int size() {
+		return root == null ? 0 : root.size;
+	}
+
+	/**
+	 * Function to return the value of given key
+	 * @param key
+	 * @return value, null if key is not present
+	 */
+	V get(K key) {
+		Node<K, V> node = root;
+		while (node != null) {
+			int c = comparator.compare(key, node.key);
+			if (c == 0) {
+				return node.value;
+			}
+			node = c < 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Function to return a map with given key set to given value
+	 * @param key
+	 * @param value
+	 * @return new map
+	 */
+	PersistentSortedMap<K, V> plus(K key, V value) {
+		return new PersistentSortedMap<K, V>(comparator, insert(root, key, value));
+	}
+
+	/**
+	 * Function to return a map without given key
+	 * @param key
+	 * @return new map, or this map if key is not present
+	 */
+	PersistentSortedMap<K, V> minus(K key) {
+		Node<K, V> node = remove(root, key);
+		return node == root ? this : new PersistentSortedMap<K, V>(comparator, node);
+	}
+
+	/**
+	 * Function to return the values in order of their keys
+	 * @return iterable over values
+	 */
+	Iterable<V> values() {
+		return () -> new NodeIterator<K, V, V>(root, node -> node.value);
+	}
+
+	/**
+	 * Function to return a read only java.util.Map view of this
+	 * version, e.g. to pass it to code written for hash maps
+	 * @return map view
+	 */
+	Map<K, V> asMap() {
+		return new AbstractMap<K, V>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public V get(Object key) {
+				return PersistentSortedMap.this.get((K) key);
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+
+			@Override
+			public int size() {
+				return PersistentSortedMap.this.size();
+			}
+
+			@Override
+			public Set<Map.Entry<K, V>> entrySet() {
+				return new AbstractSet<Map.Entry<K, V>>() {
+					@Override
+					public Iterator<Map.Entry<K, V>> iterator() {
+						return new NodeIterator<K, V, Map.Entry<K, V>>(root,
+								node -> new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+					}
+
+					@Override
+					public int size() {
+						return PersistentSortedMap.this.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Helper function to build a balanced tree from sorted keys
+	 */
+	private static <K, V> Node<K, V> build(K[] keys, V[] values, int low, int high) {
+		if (low > high) {
+			return null;
+		}
+		int mid = (low + high) >>> 1;
+		return new Node<K, V>(keys[mid], values[mid], build(keys, values, low, mid - 1),
+				build(keys, values, mid + 1, high));
+	}
+
+	/**
+	 * Helper function to insert the key into the subtree
+	 * @return new subtree
+	 */
+	private Node<K, V> insert(Node<K, V> node, K key, V value) {
+		if (node == null) {
+			return new Node<K, V>(key, value, null, null);
+		}
+		int c = comparator.compare(key, node.key);
+		if (c < 0) {
+			return balance(node.key, node.value, insert(node.left, key, value), node.right);
+		}
+		if (c > 0) {
+			return balance(node.key, node.value, node.left, insert(node.right, key, value));
+		}
+		return new Node<K, V>(key, value, node.left, node.right);
+	}
+
+	/**
+	 * Helper function to remove the key from the subtree
+	 * @return new subtree, the same subtree if key is not present
+	 */
+	private Node<K, V> remove(Node<K, V> node, K key) {
+		if (node == null) {
+			return null;
+		}
+		int c = comparator.compare(key, node.key);
+		if (c < 0) {
+			Node<K, V> left = remove(node.left, key);
+			return left == node.left ? node : balance(node.key, node.value, left, node.right);
+		}
+		if (c > 0) {
+			Node<K, V> right = remove(node.right, key);
+			return right == node.right ? node : balance(node.key, node.value, node.left, right);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node<K, V> min = node.right;
+		while (min.left != null) {
+			min = min.left;
+		}
+		return balance(min.key, min.value, node.left, remove(node.right, min.key));
+	}
+
+	/**
+	 * Helper function to create a node, rotating it if the heights
+	 * of its subtrees differ by more than one
+	 * @return balanced subtree
+	 */
+	private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+		int hl = height(left);
+		int hr = height(right);
+		if (hl > hr + 1) {
+			if (height(left.left) >= height(left.right)) {
+				return new Node<K, V>(left.key, left.value, left.left,
+						new Node<K, V>(key, value, left.right, right));
+			}
+			Node<K, V> lr = left.right;
+			return new Node<K, V>(lr.key, lr.value,
+					new Node<K, V>(left.key, left.value, left.left, lr.left),
+					new Node<K, V>(key, value, lr.right, right));
+		}
+		if (hr > hl + 1) {
+			if (height(right.right) >= height(right.left)) {
+				return new Node<K, V>(right.key, right.value,
+						new Node<K, V>(key, value, left, right.left), right.right);
+			}
+			Node<K, V> rl = right.left;
+			return new Node<K, V>(rl.key, rl.value,
+					new Node<K, V>(key, value, left, rl.left),
+					new Node<K, V>(right.key, right.value, rl.right, right.right));
+		}
+		return new Node<K, V>(key, value, left, right);
+	}
+
+	private static int height(Node<?, ?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Java class to represent an immutable node of the tree
+	 */
+	private static final class Node<K, V> {
+		final K key;
+		final V value;
+		final Node<K, V> left;
+		final Node<K, V> right;
+		final int height;
+		final int size;
+
+		Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = (left == null ? 0 : left.size) + (right == null ? 0 : right.size) + 1;
+		}
+	}
+
+	/**
+	 * Java class to walk the tree in order of the keys
+	 */
+	private static final class NodeIterator<K, V, T> implements Iterator<T> {
+		private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<Node<K, V>>();
+		private final Function<Node<K, V>, T> mapper;
+
+		NodeIterator(Node<K, V> root, Function<Node<K, V>, T> mapper) {
+			this.mapper = mapper;
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node<K, V> node) {
+			while (node != null) {
+				stack.push(node);
+				node = node.left;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !stack.isEmpty();
+		}
+
+		@Override
+		public T next() {
+			if (stack.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Node<K, V> node = stack.pop();
+			pushLeft(node.right);
+			return mapper.apply(node);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package org.example;
+/**
+ * Java class to represent a row of postal_codes.txt passed to
+ * the bulk load of the power service, which contains the postal
+ * code, population, area and number of repairs.
+ */
+public class PostalCodeRecord {
+	//attributes
+	private String id;
+	private int population;
+	private int area;
+	private int numberOfRepairs;
+
+	//constructor
+	public PostalCodeRecord(String id, int population, int area, int numberOfRepairs) {
+		this.id = id;
+		this.population = population;
+		this.area = area;
+		this.numberOfRepairs = numberOfRepairs;
+	}
+
+	//getter functions for attributes
+	public String getId() {
+		return id;
+	}
+
+	public int getPopulation() {
+		return population;
+	}
+
+	public int getArea() {
+		return area;
+	}
+
+	public int getNumberOfRepairs() {
+		return numberOfRepairs;
+	}
+}
@@ -7,18 +7,33 @@ package org.example;
  * determine the restoration rates, etc.
  */
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class PowerService implements PowerServiceOperations {
+	//order of served fractions, ties are broken by postal code
+	static final Comparator<PostalCodeServe> SERVE_ORDER =
+			Comparator.<PostalCodeServe>naturalOrder().thenComparing(PostalCodeServe::getId);
+	//order of damaged postal codes, most repairs first
+	static final Comparator<DamagedPostalCodes> DAMAGE_ORDER =
+			Comparator.comparingInt(DamagedPostalCodes::getNumberOfRepairs).reversed()
+			.thenComparing(DamagedPostalCodes::getPostalCode);
 
-public class PowerService {
 	// variable to hold all the postal codes
 	private Map<String, PostalCode> totalPostalCodes = new HashMap<String, PostalCode>();
 	//variable to hold all the hubs
@@ -26,14 +41,55 @@ public class PowerService {
 			new HashMap<String, DistributionHub>();
 	//variable to hold all hub impacts
 	private Map<String,HubImpact> hubImpacts = new HashMap<String,HubImpact>();
-	// variable to hold all damaged postal codes
-	private List<DamagedPostalCodes> damagedPostalCodes = new ArrayList<DamagedPostalCodes>();
+	// variable to hold all damaged postal codes by postal code
+	private Map<String, DamagedPostalCodes> damagedPostalCodes =
+			new HashMap<String, DamagedPostalCodes>();
+	// damaged postal codes with repairs, most repairs first
+	private TreeSet<DamagedPostalCodes> damageOrder = new TreeSet<DamagedPostalCodes>(DAMAGE_ORDER);
 
 	//map to hold the postal code name to hub
 	private Map<String, List<String>> postalCodeToHub = 
 			new HashMap<String, List<String>>();
-	//Map to hold the employee details
+	//map to hold hub id as key and ids of the postal codes it serves as value,
+	//including codes not added yet
+	private Map<String, Set<String>> hubToPostalCodes = new HashMap<String, Set<String>>();
+	//postal codes ordered by fraction served per population, least served first
+	private TreeSet<PostalCodeServe> servedByPopulation = new TreeSet<PostalCodeServe>(SERVE_ORDER);
+	//postal codes ordered by fraction served per area, least served first
+	private TreeSet<PostalCodeServe> servedByArea = new TreeSet<PostalCodeServe>(SERVE_ORDER);
+	//map to hold postal code as key and its entry in served by population as value
+	private Map<String, PostalCodeServe> populationServe = new HashMap<String, PostalCodeServe>();
+	//map to hold postal code as key and its entry in served by area as value
+	private Map<String, PostalCodeServe> areaServe = new HashMap<String, PostalCodeServe>();
+	//spatial index over the hub locations
+	private HubGrid hubGrid = new HubGrid();
+	//map to hold hub id as key and population of the postal codes it serves as value
+	private Map<String, Integer> hubPopulation = new HashMap<String, Integer>();
+	//number of people out of service over all damaged hubs
+	private int totalOutOfService = 0;
+	//queue of damaged hubs ordered by people out of service
+	private HubImpactQueue fixOrderQueue = new HubImpactQueue();
+	//whether any postal code or hub changed since last save
+	private boolean postalCodesChanged = true;
+	private boolean hubsChanged = true;
+	//write ahead log of the mutations, if attached
+	private MutationLog mutationLog;
+	//sequence number of the record logged last
+	private long loggedSequence = 0;
+	//sink of the messages for invalid input and repairs, null for none
+	private volatile ServiceLog serviceLog = ServiceLog.CONSOLE;
+	//whether a bulk load is running, the derived indexes are then
+	//built once at its end instead of after every record
+	private boolean bulkLoading = false;
+	//Map to hold the employee id as key and the hubs it repaired,
+	//in order of last repair, as value
 	private Map<String, List<String>> employeeMap = new HashMap<String, List<String>>();
+	//ids of the hubs and postal codes changed since the last published
+	//snapshot, only tracked once a snapshot has been published
+	private Set<String> unpublishedHubs;
+	private Set<String> unpublishedPostalCodes;
+	//whether the indexes were rebuilt since the last published snapshot
+	private boolean unpublishedRebuild = false;
 
 	/**
 	 * Function to add new postal code to existing list
@@ -44,77 +100,159 @@ public class PowerService {
 	 */
 	public boolean addPostalCode (String postalCode, 
 			int population, int area ) {
+		return tryAddPostalCode(postalCode, population, area).isSuccess();
+	}
+
+	/**
+	 * Function to add new postal code to existing list, or update it
+	 * @param postalCode
+	 * @param population
+	 * @param area
+	 * @return ADDED or UPDATED, else the reason it is invalid
+	 */
+	public ServiceStatus tryAddPostalCode(String postalCode, int population, int area) {
 		//check for invalid inputs
 		if (postalCode == null || postalCode.equals("")) {
-			System.out.println("Postal code cannot be null or empty");
-			return false;
+			return report(ServiceStatus.INVALID_POSTAL_CODE);
 		}
 
 		if (population <= 0|| area <=0) {
-			System.out.println("Population or area should be positive integer.");
-			return false;
+			return report(ServiceStatus.INVALID_POPULATION_OR_AREA);
+		}
+
+		if (!MutationLog.isLoggable(postalCode)) {
+			return report(ServiceStatus.ID_TOO_LONG);
+		}
+
+		if (mutationLog != null && !bulkLoading) {
+			try {
+				loggedSequence = mutationLog.logAddPostalCode(postalCode, population, area);
+			} catch (IOException e) {
+				return reportLogFailure(e);
+			}
 		}
 
 		PostalCode pCode = totalPostalCodes.get(postalCode);
+		ServiceStatus status = (pCode != null) ? ServiceStatus.UPDATED : ServiceStatus.ADDED;
 		// code exists, then update it
 		if(pCode != null) {
+			int change = population - pCode.getNumPeople();
 			pCode.setNumPeople(population);
 			pCode.setAreaCovered(area);
+			updateServingHubs(pCode, change);
 			totalPostalCodes.put(postalCode, pCode);
-			return true;
+			updateServedFraction(postalCode);
 		}
 		else {
 			//else add as new code
 			pCode = new PostalCode(postalCode, population, area);
 			totalPostalCodes.put(postalCode, pCode);
-			return true;
+			updateServedFraction(postalCode);
 		}
+		markPostalCodeChanged(postalCode);
+		return finishLogged(status);
 	}
 
 	/**
 	 * @param hubIdentifier
 	 * @param location
 	 * @param servicedAreas
-	 * @return true or false
+	 * @return true, if added as new hub, else false
 	 */
 	public boolean addDistributionHub(String hubIdentifier,Point location,
 			Set<String> servicedAreas) {
+		return tryAddDistributionHub(hubIdentifier, location, servicedAreas) == ServiceStatus.ADDED;
+	}
+
+	/**
+	 * Function to add new hub, or update the location and served
+	 * postal codes of an existing one
+	 * @param hubIdentifier
+	 * @param location
+	 * @param servicedAreas
+	 * @return ADDED or UPDATED, else the reason it is invalid
+	 */
+	public ServiceStatus tryAddDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas) {
 		//check for invalid inputs
 		if (hubIdentifier == null || hubIdentifier.equals("")) {
-			System.out.println("Hub id cannot be null or empty");
-			return false;
+			return report(ServiceStatus.INVALID_HUB_ID);
 		}
 
 		if (location == null || servicedAreas == null) {
-			System.out.println("Location or serviced aread cannot be null");
-			return false;
+			return report(ServiceStatus.INVALID_LOCATION_OR_AREAS);
+		}
+
+		if (!MutationLog.isLoggable(hubIdentifier)) {
+			return report(ServiceStatus.ID_TOO_LONG);
+		}
+		for (String area : servicedAreas) {
+			if (area != null && !MutationLog.isLoggable(area)) {
+				return report(ServiceStatus.ID_TOO_LONG);
+			}
+		}
+
+		if (mutationLog != null && !bulkLoading) {
+			try {
+				loggedSequence = mutationLog.logAddDistributionHub(hubIdentifier, location,
+						servicedAreas);
+			} catch (IOException e) {
+				return reportLogFailure(e);
+			}
 		}
 
 		DistributionHub hub = distributionHubs.get(hubIdentifier);
 		Set<PostalCode> areas = getServedCodes(servicedAreas);
-		boolean result = false;
+		ServiceStatus result;
 		//if not exists already then add as new
 		if (hub == null) {
 			hub = new DistributionHub(hubIdentifier, location, areas);
 			distributionHubs.put(hubIdentifier, hub);
-			result  = true;
+			if (!bulkLoading) {
+				hubGrid.addHub(hub);
+				hubPopulation.put(hubIdentifier, getPopulation(areas));
+			}
+			result = ServiceStatus.ADDED;
 		}
 		else {// else update
+			//remove the hub from postal codes it no longer serves
+			for (String area : hubToPostalCodes.get(hubIdentifier)) {
+				if (!servicedAreas.contains(area)) {
+					List<String> hubs = postalCodeToHub.get(area);
+					if (hubs != null && hubs.remove(hubIdentifier)) {
+						if (hubs.isEmpty()) {
+							postalCodeToHub.remove(area);
+						}
+						updateServedFraction(area);
+					}
+				}
+			}
+			int change = getPopulation(areas) - getPopulation(hub.getPostalCodesServed());
 			hub.setLocation(location);
 			hub.setPostalCodesServed(areas);
 			distributionHubs.put(hubIdentifier, hub);
-			result = false;
+			if (!bulkLoading) {
+				hubGrid.addHub(hub);
+			}
+			updateHubPopulation(hub, change);
+			result = ServiceStatus.UPDATED;
 		}
+		hubToPostalCodes.put(hubIdentifier, new HashSet<String>(servicedAreas));
 
 		for (String  area : servicedAreas) {
 			List<String> hubs =  postalCodeToHub.get(area);
 			if (hubs == null) {
 				hubs = new ArrayList<String>();
 			}
-			hubs.add(hub.getId());
-			postalCodeToHub.put(area, hubs);
+			if (!hubs.contains(hub.getId())) {
+				hubs.add(hub.getId());
+				postalCodeToHub.put(area, hubs);
+				updateServedFraction(area);
+			}
 		}
-		return result;
+
+		markHubChanged(hubIdentifier);
+		return finishLogged(result);
 	}
 
 	/**
@@ -131,6 +269,328 @@ public class PowerService {
 		return codes;
 	}
 
+	/**
+	 * Function to add or update many postal codes at once, e.g. on a
+	 * full reload. Each record is checked and applied in the same way
+	 * as by addPostalCode and addDamagedHub, but the derived indexes
+	 * are built once after the last record instead of after every one.
+	 * Records may also be streamed, e.g. () -> iterator.
+	 * @param records
+	 * @return number of postal codes added or updated
+	 */
+	public int addPostalCodes(Iterable<PostalCodeRecord> records) {
+		if (records == null) {
+			log("Postal code records cannot be null");
+			return 0;
+		}
+		int count = 0;
+		beginBulkLoad(getSize(records), 0);
+		try {
+			for (PostalCodeRecord record : records) {
+				if (addPostalCode(record.getId(), record.getPopulation(), record.getArea())) {
+					count++;
+				}
+				if (record.getId() != null && !record.getId().equals("")) {
+					addDamagedHub(record.getId(), record.getNumberOfRepairs());
+				}
+			}
+		} finally {
+			endBulkLoad(true);
+		}
+		return count;
+	}
+
+	/**
+	 * Function to add or update many hubs at once, e.g. on a full
+	 * reload. Each record is checked and applied in the same way as
+	 * by addDistributionHub, hubDamage and addHubImpact, but the derived
+	 * indexes are built once after the last record instead of after
+	 * every one. Records may also be streamed, e.g. () -> iterator.
+	 * @param records
+	 * @return number of hubs added or updated
+	 */
+	public int addDistributionHubs(Iterable<HubRecord> records) {
+		if (records == null) {
+			log("Hub records cannot be null");
+			return 0;
+		}
+		int count = 0;
+		beginBulkLoad(0, getSize(records));
+		try {
+			for (HubRecord record : records) {
+				//skip the hubs rejected as invalid
+				if (!tryAddDistributionHub(record.getId(), record.getLocation(),
+						record.getServicedAreas()).isSuccess()) {
+					continue;
+				}
+				if (record.getHoursToRepair() > 0) {
+					hubDamage(record.getId(), record.getHoursToRepair());
+				}
+				addHubImpact(record.getId(), record.getImpactValue());
+				count++;
+			}
+		} finally {
+			endBulkLoad(false);
+		}
+		return count;
+	}
+
+	/**
+	 * Helper function to return the number of records, if known
+	 * @param records
+	 * @return size of collection, else 0
+	 */
+	private static int getSize(Iterable<?> records) {
+		return (records instanceof Collection) ? ((Collection<?>) records).size() : 0;
+	}
+
+	/**
+	 * Helper function to return the capacity of a hash map
+	 * which holds given number of entries without resizing
+	 * @param entries
+	 * @return capacity
+	 */
+	private static int getCapacity(int entries) {
+		return (int) Math.min(entries / 0.75 + 1, 1 << 30);
+	}
+
+	/**
+	 * Function to start a bulk load, the maps which are still empty
+	 * are sized for the expected number of records
+	 * @param postalCodes
+	 * @param hubs
+	 */
+	private void beginBulkLoad(int postalCodes, int hubs) {
+		if (totalPostalCodes.isEmpty() && postalCodes > 0) {
+			totalPostalCodes = new HashMap<String, PostalCode>(getCapacity(postalCodes));
+		}
+		if (damagedPostalCodes.isEmpty() && postalCodes > 0) {
+			damagedPostalCodes = new HashMap<String, DamagedPostalCodes>(getCapacity(postalCodes));
+		}
+		if (distributionHubs.isEmpty() && hubs > 0) {
+			distributionHubs = new HashMap<String, DistributionHub>(getCapacity(hubs));
+		}
+		if (hubImpacts.isEmpty() && hubs > 0) {
+			hubImpacts = new HashMap<String, HubImpact>(getCapacity(hubs));
+		}
+		bulkLoading = true;
+	}
+
+	/**
+	 * Function to finish a bulk load by building the derived indexes
+	 * from the hubs and postal codes. As the records were not logged
+	 * one by one, the attached log is compacted into a new snapshot.
+	 * @param postalCodes true if postal codes were loaded, false for hubs
+	 */
+	private void endBulkLoad(boolean postalCodes) {
+		bulkLoading = false;
+		rebuildIndexes(postalCodes);
+		compactLog();
+	}
+
+	/**
+	 * Function to build the people out of service, fix order, spatial
+	 * grid, under served and, after loading postal codes, damage order
+	 * indexes from scratch. The two under served indexes are built on
+	 * the common pool while the others are built on the calling thread.
+	 * @param postalCodes true to also build the damage order
+	 */
+	private void rebuildIndexes(boolean postalCodes) {
+		unpublishedRebuild = true;
+		ForkJoinTask<?> byPopulation = ForkJoinPool.commonPool().submit(
+				() -> rebuildServedFractions(populationServe, servedByPopulation, true));
+		ForkJoinTask<?> byArea = ForkJoinPool.commonPool().submit(
+				() -> rebuildServedFractions(areaServe, servedByArea, false));
+
+		hubGrid = new HubGrid();
+		hubPopulation = new HashMap<String, Integer>(getCapacity(distributionHubs.size()));
+		fixOrderQueue = new HubImpactQueue();
+		totalOutOfService = 0;
+		for (DistributionHub hub : distributionHubs.values()) {
+			hubGrid.addHub(hub);
+			int population = getPopulation(hub.getPostalCodesServed());
+			hubPopulation.put(hub.getId(), population);
+			if (hub.getHoursToRepair() > 0) {
+				totalOutOfService += population;
+			}
+			updateFixOrder(hub);
+		}
+
+		if (postalCodes) {
+			List<DamagedPostalCodes> damaged = new ArrayList<DamagedPostalCodes>();
+			for (DamagedPostalCodes dm : damagedPostalCodes.values()) {
+				if (dm.getNumberOfRepairs() > 0) {
+					damaged.add(dm);
+				}
+			}
+			fillSorted(damageOrder, damaged.toArray(new DamagedPostalCodes[0]));
+		}
+
+		byPopulation.join();
+		byArea.join();
+	}
+
+	/**
+	 * Function to build an under served index from scratch, in the
+	 * same way as updateServedFraction does for a single postal code
+	 * @param serve map of postal code to its entry
+	 * @param served entries ordered by fraction served
+	 * @param byPopulation true for fraction per population, false for per area
+	 */
+	private void rebuildServedFractions(Map<String, PostalCodeServe> serve,
+			TreeSet<PostalCodeServe> served, boolean byPopulation) {
+		serve.clear();
+		List<PostalCodeServe> fractions = new ArrayList<PostalCodeServe>(postalCodeToHub.size());
+		for (Map.Entry<String, List<String>> entry : postalCodeToHub.entrySet()) {
+			PostalCode pCode = totalPostalCodes.get(entry.getKey());
+			if (pCode == null) {
+				continue;
+			}
+			double size = byPopulation ? pCode.getNumPeople() : pCode.getAreaCovered();
+			PostalCodeServe fraction = new PostalCodeServe(entry.getKey(),
+					entry.getValue().size() / size);
+			serve.put(entry.getKey(), fraction);
+			fractions.add(fraction);
+		}
+		fillSorted(served, fractions.toArray(new PostalCodeServe[0]));
+	}
+
+	/**
+	 * Function to replace the content of given set, the elements are
+	 * sorted in parallel and the tree is then built in linear time
+	 * @param set
+	 * @param elements distinct elements in any order
+	 */
+	private static <E> void fillSorted(TreeSet<E> set, E[] elements) {
+		Arrays.parallelSort(elements, set.comparator());
+		set.clear();
+		set.addAll(new SortedArraySet<E>(elements, set.comparator()));
+	}
+
+	/**
+	 * Function to update the fractions served of given postal code
+	 * in the under served indexes, it should be called whenever the
+	 * population or area of the code or the hubs serving it change
+	 * @param postalCode
+	 */
+	private void updateServedFraction(String postalCode) {
+		if (bulkLoading) {
+			return;
+		}
+		trackPostalCodeChange(postalCode);
+		PostalCodeServe old = populationServe.remove(postalCode);
+		if (old != null) {
+			servedByPopulation.remove(old);
+		}
+		old = areaServe.remove(postalCode);
+		if (old != null) {
+			servedByArea.remove(old);
+		}
+
+		List<String> hubs = postalCodeToHub.get(postalCode);
+		PostalCode pCode = totalPostalCodes.get(postalCode);
+		if (hubs == null || pCode == null) {
+			return;
+		}
+		PostalCodeServe byPopulation = new PostalCodeServe(postalCode,
+				(double) hubs.size() / pCode.getNumPeople());
+		populationServe.put(postalCode, byPopulation);
+		servedByPopulation.add(byPopulation);
+		PostalCodeServe byArea = new PostalCodeServe(postalCode,
+				(double) hubs.size() / pCode.getAreaCovered());
+		areaServe.put(postalCode, byArea);
+		servedByArea.add(byArea);
+	}
+
+	/**
+	 * Function to determine the total population of given postal codes
+	 * @param codes
+	 * @return population as integer
+	 */
+	private int getPopulation(Set<PostalCode> codes) {
+		int population = 0;
+		for (PostalCode code : codes) {
+			if (code != null) {
+				population += code.getNumPeople();
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Function to apply the change in population of given postal code
+	 * to the hubs serving it
+	 * @param pCode
+	 * @param change
+	 */
+	private void updateServingHubs(PostalCode pCode, int change) {
+		List<String> hubs = postalCodeToHub.get(pCode.getId());
+		if (hubs == null || change == 0 || bulkLoading) {
+			return;
+		}
+		for (String hubId : hubs) {
+			DistributionHub hub = distributionHubs.get(hubId);
+			if (hub != null && hub.getPostalCodesServed().contains(pCode)) {
+				updateHubPopulation(hub, change);
+			}
+		}
+	}
+
+	/**
+	 * Function to update the population served by given hub and
+	 * the people out of service, if the hub is damaged
+	 * @param hub
+	 * @param change
+	 */
+	private void updateHubPopulation(DistributionHub hub, int change) {
+		if (bulkLoading) {
+			return;
+		}
+		hubPopulation.merge(hub.getId(), change, Integer::sum);
+		if (hub.getHoursToRepair() > 0) {
+			totalOutOfService += change;
+		}
+		updateFixOrder(hub);
+	}
+
+	/**
+	 * Function to set the hours to repair of given hub and
+	 * update the people out of service, if the hub goes out of
+	 * service or comes back in service
+	 * @param hub
+	 * @param hours
+	 */
+	private void updateHoursToRepair(DistributionHub hub, double hours) {
+		boolean wasDamaged = hub.getHoursToRepair() > 0;
+		hub.setHoursToRepair(hours);
+		markHubChanged(hub.getId());
+		boolean isDamaged = hub.getHoursToRepair() > 0;
+		if (wasDamaged != isDamaged && !bulkLoading) {
+			int population = hubPopulation.getOrDefault(hub.getId(), 0);
+			totalOutOfService += isDamaged ? population : -population;
+		}
+		updateFixOrder(hub);
+	}
+
+	/**
+	 * Function to update the position of given hub in the fix order,
+	 * only hubs with an impact and people out of service are kept
+	 * @param hub
+	 */
+	private void updateFixOrder(DistributionHub hub) {
+		if (bulkLoading) {
+			return;
+		}
+		trackHubChange(hub.getId());
+		int os = (hubImpacts.get(hub.getId()) != null) ? peopleOutOfService(hub) : 0;
+		if (os > 0) {
+			fixOrderQueue.update(hub.getId(), os);
+		}
+		else {
+			fixOrderQueue.remove(hub.getId());
+		}
+	}
+
 	/**
 	 * Function to set the hub as damaged and print the
 	 * employee details
@@ -138,32 +598,62 @@ public class PowerService {
 	 * @param repairEstimate
 	 */
 	public void hubDamage(String hubIdentifier, float repairEstimate) {
+		tryHubDamage(hubIdentifier, repairEstimate);
+	}
+
+	/**
+	 * Function to set the hub as damaged with given hours to repair
+	 * @param hubIdentifier
+	 * @param repairEstimate
+	 * @return UPDATED, else the reason it is invalid
+	 */
+	public ServiceStatus tryHubDamage(String hubIdentifier, float repairEstimate) {
 		//check for invalid inputs
 		if (hubIdentifier == null || hubIdentifier.equals("")) {
-			System.out.println("Hub id cannot be null or empty");
-			return;
+			return report(ServiceStatus.INVALID_HUB_ID);
 		}
 
 		if (repairEstimate <=0) {
-			System.out.println("Repair estimate should be positive");
-			return;
+			return report(ServiceStatus.INVALID_REPAIR_ESTIMATE);
 		}
 		
 		
 		DistributionHub hub = distributionHubs.get(hubIdentifier);
+		if (hub == null) {
+			return report(ServiceStatus.UNKNOWN_HUB);
+		}
 
-		
-		//update the details to hub
-		if (hub!=null) {
-			hub.setHoursToRepair(repairEstimate);
-			HubImpact hubImpact = hubImpacts.get(hubIdentifier);
-			if (hubImpact == null) 
-				hubImpact = new HubImpact(hubIdentifier, 0);
-			hubImpacts.put(hubIdentifier, hubImpact);
+		//hubs of a bulk load are not checked when they are added
+		if (!MutationLog.isLoggable(hubIdentifier)) {
+			return report(ServiceStatus.ID_TOO_LONG);
 		}
-		else {
-			System.out.println("Hub id does not exists!");
+
+		if (mutationLog != null && !bulkLoading) {
+			try {
+				loggedSequence = mutationLog.logHubDamage(hubIdentifier, repairEstimate);
+			} catch (IOException e) {
+				return reportLogFailure(e);
+			}
 		}
+
+		//update the details to hub
+		damageHub(hub, repairEstimate);
+		return finishLogged(ServiceStatus.UPDATED);
+	}
+
+	/**
+	 * Helper function to set the hours to repair of given hub
+	 * and make sure it has an impact entry
+	 * @param hub
+	 * @param repairEstimate
+	 */
+	private void damageHub(DistributionHub hub, float repairEstimate) {
+		updateHoursToRepair(hub, repairEstimate);
+		HubImpact hubImpact = hubImpacts.get(hub.getId());
+		if (hubImpact == null) 
+			hubImpact = new HubImpact(hub.getId(), 0);
+		hubImpacts.put(hub.getId(), hubImpact);
+		updateFixOrder(hub);
 	}
 
 	/**
@@ -176,59 +666,224 @@ public class PowerService {
 	 */
 	public void hubRepair(String hubIdentifier, String employeeId, 
 			float repairTime, boolean inService ) {
+		tryHubRepair(hubIdentifier, employeeId, repairTime, inService);
+	}
+
+	/**
+	 * Function to report a repair of a hub by given employee, the
+	 * message of the repair is only built if a service log is set
+	 * @param hubIdentifier
+	 * @param employeeId
+	 * @param repairTime
+	 * @param inService
+	 * @return UPDATED, else the reason it is invalid
+	 */
+	public ServiceStatus tryHubRepair(String hubIdentifier, String employeeId,
+			float repairTime, boolean inService) {
 		//check for invalid inputs
 		if (hubIdentifier == null || hubIdentifier.equals("")) {
-			System.out.println("Hub id cannot be null or empty");
-			return;
+			return report(ServiceStatus.INVALID_HUB_ID);
 		}
 
 		if (repairTime <=0) {
-			System.out.println("Repair estimate should be positive");
-			return;
+			return report(ServiceStatus.INVALID_REPAIR_ESTIMATE);
 		}
 		
 		if (employeeId == null || employeeId.equals("")) {
-			System.out.println("Employee id cannot be null or empty");
-			return;
+			return report(ServiceStatus.INVALID_EMPLOYEE_ID);
 		}
 		
-		if (distributionHubs.get(hubIdentifier) == null) {
-			System.out.println("Hub id does not exists");
-			return;
+		DistributionHub hub = distributionHubs.get(hubIdentifier);
+		if (hub == null) {
+			return report(ServiceStatus.UNKNOWN_HUB);
+		}
+
+		if (!MutationLog.isLoggable(hubIdentifier) || !MutationLog.isLoggable(employeeId)) {
+			return report(ServiceStatus.ID_TOO_LONG);
 		}
 		
+		if (mutationLog != null && !bulkLoading) {
+			try {
+				loggedSequence = mutationLog.logHubRepair(hubIdentifier, employeeId, repairTime,
+						inService);
+			} catch (IOException e) {
+				return reportLogFailure(e);
+			}
+		}
+
 		List<String> hubList  = employeeMap.get(employeeId);
 		if (hubList == null) {
 			hubList = new ArrayList<>();
 		}
+		//hubs in order of last repair, so replaying a repair changes nothing
+		hubList.remove(hubIdentifier);
 		hubList.add(hubIdentifier);
 		employeeMap.put(employeeId, hubList);
 		// if its in service, then print the message 
+		ServiceLog log = serviceLog;
 		if (inService) {
-			System.out.println("Employee " + employeeId + " has done repair for " 
-					+ repairTime + " in hub id " + hubIdentifier);
-			hubDamage(hubIdentifier, repairTime);
+			if (log != null) {
+				log.log("Employee " + employeeId + " has done repair for " 
+						+ repairTime + " in hub id " + hubIdentifier);
+			}
+			damageHub(hub, repairTime);
 		}
 		else { // else consider it as damaged
-			hubDamage(hubIdentifier, repairTime);
-			System.out.println("Hub id " + hubIdentifier + " is being repaired by "+ employeeId);
+			damageHub(hub, repairTime);
+			if (log != null) {
+				log.log("Hub id " + hubIdentifier + " is being repaired by "+ employeeId);
+			}
+		}
+		return finishLogged(ServiceStatus.UPDATED);
+	}
+
+	/**
+	 * Function to attach the write ahead log, after which every
+	 * change is appended to it. The log should be replayed before
+	 * it is attached.
+	 * @param mutationLog
+	 */
+	public void setMutationLog(MutationLog mutationLog) {
+		this.mutationLog = mutationLog;
+	}
+
+	/**
+	 * Function to set the sink of the messages for invalid input and
+	 * repairs, e.g. an {@link AsyncServiceLog} so that reporting never
+	 * waits for the console, or null to report nothing. The console
+	 * is used until another sink is set.
+	 * @param serviceLog
+	 */
+	public void setServiceLog(ServiceLog serviceLog) {
+		this.serviceLog = serviceLog;
+	}
+
+	/**
+	 * Function to return the sink of the messages
+	 * @return service log, null if none
+	 */
+	public ServiceLog getServiceLog() {
+		return serviceLog;
+	}
+
+	/**
+	 * Helper function to report the message of given status
+	 * @param status
+	 * @return status
+	 */
+	private ServiceStatus report(ServiceStatus status) {
+		log(status.getMessage());
+		return status;
+	}
+
+	/**
+	 * Helper function to report a message to the service log
+	 * @param message
+	 */
+	private void log(String message) {
+		log(serviceLog, message);
+	}
+
+	/**
+	 * Helper function to report a message to given service log
+	 * @param serviceLog null to report nothing
+	 * @param message
+	 */
+	static void log(ServiceLog serviceLog, String message) {
+		if (serviceLog != null) {
+			serviceLog.log(message);
 		}
 	}
 
+	/**
+	 * Function to fold the attached log into a new snapshot
+	 */
+	public void compactLog() {
+		if (mutationLog == null) {
+			return;
+		}
+		try {
+			mutationLog.compact(copyToCompactModelStore(), serviceLog);
+		} catch (IOException e) {
+			log("Compacting the log failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Helper function to compact the log once it has grown too large
+	 * @throws IOException
+	 */
+	private void compactLogIfNeeded() throws IOException {
+		if (mutationLog.needsCompaction()) {
+			mutationLog.compact(copyToCompactModelStore(), serviceLog);
+		}
+	}
+
+	/**
+	 * Helper function to finish a change logged before it was applied,
+	 * the log is compacted if it has grown too large and the change is
+	 * acknowledged once its record is on disk
+	 * @param status
+	 * @return status, else LOG_FAILURE if the record is not on disk
+	 */
+	private ServiceStatus finishLogged(ServiceStatus status) {
+		if (mutationLog == null || bulkLoading) {
+			return status;
+		}
+		try {
+			compactLogIfNeeded();
+		} catch (IOException e) {
+			return reportLogFailure(e);
+		}
+		return awaitLogged(status, loggedSequence);
+	}
+
+	/**
+	 * Function to wait till the record of a successful change is on
+	 * disk. It is overridden to wait only after the lock of a shared
+	 * service is released, so that changes of other threads can be
+	 * forced to disk with the same fsync.
+	 * @param status
+	 * @param sequence of the record, as returned by getLoggedSequence
+	 * @return status, else LOG_FAILURE if the record is not on disk
+	 */
+	protected ServiceStatus awaitLogged(ServiceStatus status, long sequence) {
+		MutationLog current = mutationLog;
+		if (current == null || sequence == 0 || !status.isSuccess()) {
+			return status;
+		}
+		try {
+			current.awaitDurable(sequence);
+			return status;
+		} catch (IOException e) {
+			return reportLogFailure(e);
+		}
+	}
+
+	/**
+	 * Function to return the sequence number of the record logged last
+	 * @return sequence, 0 if nothing is logged
+	 */
+	protected long getLoggedSequence() {
+		return loggedSequence;
+	}
+
+	/**
+	 * Helper function to report a change which could not be logged
+	 * @param e
+	 * @return LOG_FAILURE
+	 */
+	private ServiceStatus reportLogFailure(IOException e) {
+		log(ServiceStatus.LOG_FAILURE.getMessage() + ": " + e.getMessage());
+		return ServiceStatus.LOG_FAILURE;
+	}
+
 	/**
 	 * Function to determine the people out of service for all hubs
 	 * @return integer
 	 */
 	public int peopleOutOfService () {
-		int outOfService = 0;
-		for (DistributionHub hub : distributionHubs.values()) {
-			if (hub.getHoursToRepair() > 0) {
-				for (PostalCode code : hub.getPostalCodesServed()) {
-					outOfService += code.getNumPeople();
-				}
-			}
-		}
-		return outOfService;
+		return totalOutOfService;
 	}
 
 	/**
@@ -237,17 +892,14 @@ public class PowerService {
 	 */
 	public int peopleOutOfService(DistributionHub hub) {
 		if (hub == null) {
-			System.out.println("Hub id does not exists");
+			log("Hub id does not exists");
 			return 0;
 		}
 		
-		int outOfService = 0;
 		if (hub.getHoursToRepair() > 0) {
-			for (PostalCode code : hub.getPostalCodesServed()) {
-				outOfService += code.getNumPeople();
-			}
+			return hubPopulation.getOrDefault(hub.getId(), 0);
 		}
-		return outOfService;
+		return 0;
 	}
 
 	/**
@@ -260,35 +912,21 @@ public class PowerService {
 	}
 
 	/**
-	 * Function to print the most important hubs to be fixed
+	 * Function to print the most important hubs to be fixed,
+	 * i.e. the damaged hubs with most people out of service
 	 * @param limit
 	 * @return list of hubs
 	 */
 	public List<HubImpact> fixOrder (int limit) {
 		List<HubImpact> result = new ArrayList<>();
 		if (limit <=0) {
-			System.out.println("Limit should be positive");
+			log("Limit should be positive");
 			return result;
 		}
 		
-		Collection<HubImpact> impacts = hubImpacts.values();
-		List<HubImpactPopulation> impPopList = new ArrayList<HubImpactPopulation>();
-		for (HubImpact imp : impacts) {
-			DistributionHub hub = distributionHubs.get(imp.getHubId());
-			int os = peopleOutOfService(hub);
-			// if impact value is positive, then hub is damaged 
-			if (os > 0) {
-				HubImpactPopulation hip = new HubImpactPopulation(imp, os);
-				impPopList.add(hip);
-			}
-		}
-
-		//sort the list
-		Collections.sort(impPopList);
-		
 		//retrieve for given limit
-		for (int i=0; i<limit; i++) {
-			result.add(i, impPopList.get(i).getImpact());
+		for (String hubId : fixOrderQueue.getTop(limit)) {
+			result.add(hubImpacts.get(hubId));
 		}
 		return result;
 	}
@@ -301,63 +939,121 @@ public class PowerService {
 	public  List<DamagedPostalCodes> mostDamagedPostalCodes(int limit) {
 		List<DamagedPostalCodes> mostDamaged = new ArrayList<DamagedPostalCodes>();
 		if (limit <=0) {
-			System.out.println("Limit should be positive");
+			log("Limit should be positive");
 			return mostDamaged;
 		}
 		
-		if (damagedPostalCodes.isEmpty()) {
-			System.out.println("There are no damaged postal codes");
-			return damagedPostalCodes;
-		}
-
-		//sort the codes
-		Collections.sort(damagedPostalCodes);
-		
-
-		//set the limit
-		if (limit> damagedPostalCodes.size()) {
-			limit = damagedPostalCodes.size();
+		if (damageOrder.isEmpty()) {
+			log("There are no damaged postal codes");
+			return mostDamaged;
 		}
 
-		//determine most damaged
-		for (int i=0; i<limit; i++) {
-			if (damagedPostalCodes.get(i).getNumberOfRepairs() > 0)
-				mostDamaged.add(damagedPostalCodes.get(i));
+		//determine most damaged, codes are already in order
+		for (DamagedPostalCodes code : damageOrder) {
+			if (mostDamaged.size() >= limit)
+				break;
+			mostDamaged.add(code);
 		}
 		return mostDamaged;
 	}
 
 	/**
-	 * Function to print the rate of restoration for 
-	 * given percentage of increment
+	 * Function to determine the rate of restoration for given
+	 * percentage of increment, when a single crew repairs the
+	 * damaged hubs in fix order
 	 * @param increment
-	 * @return list of hours 
+	 * @return list of hours, the hour at index i restores
+	 * i * increment percent of the people out of service
 	 */
 	public  List<Integer> rateOfServiceRestoration(float increment) {
-		List<Integer> percents = new ArrayList<Integer>();
-		if (increment <=0) {
-			System.out.println("Increment should be a positive integer");
-			return percents;
+		return rateOfServiceRestoration(increment, 1,
+				RestorationSimulator.DispatchPolicy.MOST_PEOPLE_FIRST);
+	}
+
+	/**
+	 * Function to determine the rate of restoration for given
+	 * percentage of increment, by simulating the repairs of the
+	 * damaged hubs by given number of crews
+	 * @param increment
+	 * @param crews
+	 * @param policy order in which hubs are given to the crews
+	 * @return list of whole hours, the hour at index i restores
+	 * i * increment percent of the people out of service
+	 */
+	public List<Integer> rateOfServiceRestoration(float increment, int crews,
+			RestorationSimulator.DispatchPolicy policy) {
+		List<Integer> hours = new ArrayList<Integer>();
+		for (double time : restorationSimulator().simulate(increment, crews, policy)) {
+			hours.add((int) Math.ceil(time));
 		}
-		
-		float currentPercentage = 0;
-		float initial = increment / 100; 
-		int i=0;
-		//generate the percentage for various hours  
-		while(true) {
-			if (currentPercentage>1) {
-				break;
+		return hours;
+	}
+
+	/**
+	 * Function to create a restoration simulator over the hubs
+	 * damaged now, with the people out of service of each
+	 * @return simulator
+	 */
+	public RestorationSimulator restorationSimulator() {
+		RestorationSimulator simulator = new RestorationSimulator(serviceLog);
+		for (DistributionHub hub : distributionHubs.values()) {
+			if (hub.getHoursToRepair() > 0) {
+				HubImpact impact = hubImpacts.get(hub.getId());
+				simulator.addDamagedHub(hub.getId(), hubPopulation.getOrDefault(hub.getId(), 0),
+						hub.getHoursToRepair(), (impact == null) ? 0 : impact.getImpactValue());
 			}
-			int percent = (int)(currentPercentage * 100);
-			percents.add(i, percent);
-			currentPercentage += initial;
-			i++;
 		}
-		//return result
-		return percents;
+		return simulator;
 	}
 
 
+	/**
+	 * Function to create a repair scheduler over the hubs damaged
+	 * now, with the people out of service of each
+	 * @return scheduler
+	 */
+	public RepairScheduler repairScheduler() {
+		RepairScheduler scheduler = new RepairScheduler(serviceLog);
+		for (DistributionHub hub : distributionHubs.values()) {
+			if (hub.getHoursToRepair() > 0) {
+				scheduler.addDamagedHub(hub.getId(), hub.getLocation(),
+						hubPopulation.getOrDefault(hub.getId(), 0), hub.getHoursToRepair());
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Function to return the crews known from the repairs reported
+	 * so far, each located at the hub it repaired last
+	 * @return list of crews
+	 */
+	public List<Crew> getCrews() {
+		List<Crew> crews = new ArrayList<Crew>();
+		for (Map.Entry<String, List<String>> entry : employeeMap.entrySet()) {
+			List<String> hubs = entry.getValue();
+			DistributionHub hub = distributionHubs.get(hubs.get(hubs.size() - 1));
+			if (hub != null) {
+				crews.add(new Crew(entry.getKey(), hub.getLocation()));
+			}
+		}
+		return crews;
+	}
+
+	/**
+	 * Function to assign the damaged hubs to given crews so that the
+	 * people out of service are restored as soon as possible, i.e. the
+	 * total of people times hours without power is minimized
+	 * @param crews
+	 * @param travelSpeed distance covered by a crew in an hour
+	 * @param timeLimitMillis time to spend improving the schedule
+	 * @return work list of each crew
+	 */
+	public RepairSchedule scheduleRepairs(List<Crew> crews, float travelSpeed,
+			long timeLimitMillis) {
+		return repairScheduler().schedule(crews, travelSpeed, timeLimitMillis);
+	}
+
 	/**
 	 * Function to schedule the repair plan 
 	 * for given start hub and optimal end hub
@@ -369,74 +1065,124 @@ public class PowerService {
 	 */
 	public List<HubImpact> repairPlan(String startHub, int maxDistance, 
 			float maxTime ) {
+		return planRepair(startHub, maxDistance, maxTime, distributionHubs, hubImpacts, hubGrid,
+				serviceLog);
+	}
+
+	/**
+	 * Function to schedule the repair plans of many crews at once,
+	 * one for each start hub. The plans are made in parallel and
+	 * share the lookups which do not depend on the start hub.
+	 * 
+	 * @param startHubs
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return plan of each start hub with its timing, in the order
+	 * of the start hubs
+	 */
+	public List<RepairPlanResult> repairPlans(List<String> startHubs, int maxDistance,
+			float maxTime) {
+		return RepairPlanBatch.plan(startHubs, maxDistance, maxTime, distributionHubs,
+				hubImpacts, hubGrid, serviceLog);
+	}
+
+	/**
+	 * Function to schedule the repair plan over given hubs, impacts
+	 * and spatial grid, so that the plan can also be made on a
+	 * snapshot of them
+	 * 
+	 * @param startHub
+	 * @param maxDistance
+	 * @param maxTime
+	 * @param distributionHubs
+	 * @param hubImpacts
+	 * @param hubGrid
+	 * @param serviceLog sink of the messages for invalid input, or null
+	 * @return path as list of hubs
+	 */
+	static List<HubImpact> planRepair(String startHub, int maxDistance, float maxTime,
+			Map<String, DistributionHub> distributionHubs, Map<String, HubImpact> hubImpacts,
+			HubGrid hubGrid, ServiceLog serviceLog) {
+		PowerServiceEvents.RepairPlanEvent event = new PowerServiceEvents.RepairPlanEvent();
+		event.begin();
+		List<HubImpact> plan = planRepair(startHub, maxDistance, maxTime, distributionHubs,
+				hubImpacts, hubGrid, serviceLog, event);
+		if (event.shouldCommit()) {
+			event.startHub = startHub;
+			event.maxDistance = maxDistance;
+			event.maxTime = maxTime;
+			event.pathLength = plan.size();
+			event.commit();
+		}
+		return plan;
+	}
+
+	/**
+	 * Helper function to schedule the repair plan, the sizes of
+	 * its stages are noted in given event
+	 * @param startHub
+	 * @param maxDistance
+	 * @param maxTime
+	 * @param distributionHubs
+	 * @param hubImpacts
+	 * @param hubGrid
+	 * @param serviceLog
+	 * @param event
+	 * @return path as list of hubs
+	 */
+	private static List<HubImpact> planRepair(String startHub, int maxDistance, float maxTime,
+			Map<String, DistributionHub> distributionHubs, Map<String, HubImpact> hubImpacts,
+			HubGrid hubGrid, ServiceLog serviceLog, PowerServiceEvents.RepairPlanEvent event) {
 		//variable to hold the result hub impacts
 		List<HubImpact> result = new ArrayList<>();
 
 		if (startHub == null || startHub.equals("")) {
-			System.out.println("Start hub cannot be null or empty");
+			log(serviceLog, "Start hub cannot be null or empty");
 			return result;
 		}
 		
 		if (maxDistance<=0 || maxTime <=0) {
-			System.out.println("Maximum distance or time cannot be negative");
+			log(serviceLog, "Maximum distance or time cannot be negative");
 			return result;
 		}
 		
 		//start hub 
 		DistributionHub start  = distributionHubs.get(startHub);
 		if (start == null) {
-			System.out.println("Start hub does not exists");
+			log(serviceLog, "Start hub does not exists");
 			return result;
 		}
 
 		//determine hubs in range	
-		List<DistributionHub> hubsInRange = getHubsInRange(start, maxDistance, maxTime);
+		List<DistributionHub> hubsInRange = getHubsInRange(hubGrid, start, maxDistance, maxTime);
+		event.hubsInRange = hubsInRange.size();
+		if (hubsInRange.isEmpty()) {
+			result.add(hubImpacts.get(startHub));
+			return result;
+		}
 
 		//determine max impact hub, and set it as end hub
-		DistributionHub endHub = getMaxImpactHub(hubsInRange);
-		if (startHub.equals(endHub)) {
+		DistributionHub endHub = getMaxImpactHub(distributionHubs, hubImpacts, hubsInRange);
+		if (start.equals(endHub)) {
 			result.add(hubImpacts.get(startHub));
 			return result;
 		}
 
 		//remove end hub from list of hubs, so that we can 
 		//determine the remaining hubs in rectangle
-		hubsInRange.remove(endHub);
-		List<DistributionHub> hubsInRect = getHubsInRect(start, endHub, hubsInRange);
+		List<DistributionHub> hubsInRect = getHubsInRect(hubGrid, hubImpacts, start, endHub,
+				maxDistance, maxTime);
+		event.hubsInRect = hubsInRect.size();
 
 		//Generate graph for hubs in rectangle, hence we can
 		//determine the path for repair plan
 		HubGraph hubGraph = new HubGraph(hubsInRect, start, endHub);
 
-		// get the monotonic hubs within the rectangular region
-		Set<List<DistributionHub>> monotonicHubs = hubGraph.getMonotonicHubs();
-
-		//determine the optimal set of hubs from monotonic hubs
-		int optimalSet = -1;
-		double maxImpact = 0;
-		Object[] hsets = monotonicHubs.toArray();
-		for (int l=0; l< monotonicHubs.size(); l++) {
-			double totalImpact = 0;
-			List<DistributionHub> hubs= (List<DistributionHub>)hsets[l];
-			for (DistributionHub h : hubs) {
-				HubImpact impact = hubImpacts.get(h.getId());
-				totalImpact += impact.getImpactValue();
-			}
-			if (totalImpact > maxImpact) {
-				maxImpact = totalImpact;
-				optimalSet = l;
-			}
-		}
+		// get the maximum impact monotonic path within the rectangular region
+		List<DistributionHub> optimalHubs = hubGraph.getMaxImpactPath(hubImpacts);
 		List<HubImpact> optimalImpacts = new ArrayList<>();
-		if (optimalSet >= 0) {
-			List<DistributionHub> optimalHubs = (List<DistributionHub>)hsets[optimalSet];
-			for (DistributionHub dh : optimalHubs) {
-				optimalImpacts.add(hubImpacts.get(dh.getId()));
-			}
-		}
-		else {
-			optimalImpacts.add(hubImpacts.get(start.getId()));
-			optimalImpacts.add(hubImpacts.get(endHub.getId()));
+		for (DistributionHub dh : optimalHubs) {
+			optimalImpacts.add(hubImpacts.get(dh.getId()));
 		}
 
 		return optimalImpacts;
@@ -444,52 +1190,47 @@ public class PowerService {
 
 	/**
 	 * Function to determine the list of hubs in a 
-	 * rectangular region
+	 * rectangular region between start hub and end hub, which
+	 * are also in range of the start hub
 	 * 
+	 * @param hubGrid
+	 * @param hubImpacts
 	 * @param startHub
 	 * @param endHub
-	 * @param hubsInRange
+	 * @param maxDistance
+	 * @param maxTime
 	 * @return list of hubs
 	 */
-	private List<DistributionHub> getHubsInRect(DistributionHub startHub, DistributionHub endHub,
-			List<DistributionHub> hubsInRange) {
+	private static List<DistributionHub> getHubsInRect(HubGrid hubGrid, Map<String, HubImpact> hubImpacts,
+			DistributionHub startHub, DistributionHub endHub, int maxDistance, float maxTime) {
+		PowerServiceEvents.HubsInRectEvent event = new PowerServiceEvents.HubsInRectEvent();
+		event.begin();
 		List<DistributionHub> hubs = new ArrayList<DistributionHub> ();
-		int startX,endX,startY, endY;
-		//determine the start hub and end hub by their coordinates
-		if (startHub.getLocation().getX() < endHub.getLocation().getX()) {
-			startX = startHub.getLocation().getX();
-			endX = endHub.getLocation().getX();
-			if (startHub.getLocation().getY() < endHub.getLocation().getY()) {
-				startY = startHub.getLocation().getY();
-				endY = endHub.getLocation().getY();
+		Point start = startHub.getLocation();
+		Point end = endHub.getLocation();
+		//determine the rectangle by coordinates of start and end hub
+		int startX = Math.min(start.getX(), end.getX());
+		int endX = Math.max(start.getX(), end.getX());
+		int startY = Math.min(start.getY(), end.getY());
+		int endY = Math.max(start.getY(), end.getY());
+
+		// check whether the hubs within the rectangle are in range
+		List<DistributionHub> candidates = hubGrid.getHubsInRect(startX, startY, endX, endY);
+		for (DistributionHub hub : candidates) {
+			if (hub.equals(startHub) || hub.equals(endHub)) {
+				continue;
 			}
-			else {
-				startY = endHub.getLocation().getY();
-				endY = startHub.getLocation().getY();
+			if (hubImpacts.get(hub.getId()) != null
+					&& isInRange(start, hub, maxDistance, maxTime)) {
+				hubs.add(hub);
 			}
 		}
-		else {
-			startX = endHub.getLocation().getX();
-			endX = startHub.getLocation().getX();
-			if (startHub.getLocation().getY() < endHub.getLocation().getY()) {
-				startY = startHub.getLocation().getY();
-				endY = endHub.getLocation().getY();
-			}
-			else {
-				startY = endHub.getLocation().getY();
-				endY = startHub.getLocation().getY();
-			}
-		}
-
-		// check whether coordinated of other hubs lies within the range
-		for (DistributionHub hub : hubsInRange) {
-			if (hubImpacts.get(hub.getId()) != null) {
-				Point p1 = hub.getLocation();
-				if (p1.getX()>=startX && p1.getX() <=endX 
-						&& p1.getY()>=startY && p1.getY() <=endY) {
-					hubs.add(hub);
-				}
-			}
+		if (event.shouldCommit()) {
+			event.startHub = startHub.getId();
+			event.endHub = endHub.getId();
+			event.candidates = candidates.size();
+			event.hubsInRect = hubs.size();
+			event.commit();
 		}
 		return hubs;
 	}
@@ -502,29 +1243,15 @@ public class PowerService {
 	 */
 	public List<String> underservedPostalByPopulation ( int limit ) {
 		List<String> underServed = new ArrayList<String>();
-		List<PostalCodeServe> servedRates = new ArrayList<>();
 		if (limit <=0) {
-			System.out.println("Limit should be positive");
+			log("Limit should be positive");
 			return underServed;
 		}
-		//iterate through the list to determine the under served
-		for (String area : postalCodeToHub.keySet()) {
-			List<String> hubs = postalCodeToHub.get(area);
-			if (hubs!=null) {
-				double res = (double) hubs.size() / totalPostalCodes.get(area).getNumPeople();
-				servedRates.add(new PostalCodeServe(area, res));
-			}
-		}
-
-		//sort list
-		Collections.sort(servedRates);
-		int i = 0;
 		//for the given limit, generate the under served
-		for (PostalCodeServe s : servedRates ) {
-			if (i>=limit)
+		for (PostalCodeServe s : servedByPopulation) {
+			if (underServed.size() >= limit)
 				break;
 			underServed.add(s.getId());
-			i++;
 		}
 
 		return underServed;
@@ -538,184 +1265,543 @@ public class PowerService {
 	 */
 	public List<String> underservedPostalByArea ( int limit ) {
 		List<String> underServed = new ArrayList<String>();
-		List<PostalCodeServe> servedRates = new ArrayList<>();
 		//check input values 
 		if (limit <=0) {
-			System.out.println("Limit should be positive");
+			log("Limit should be positive");
 			return underServed;
 		}
 		
-		for (String area : postalCodeToHub.keySet()) {
-			List<String> hubs = postalCodeToHub.get(area);
-			if (hubs!=null) {
-				double res = (double) hubs.size() / totalPostalCodes.get(area).getAreaCovered();
-				servedRates.add(new PostalCodeServe(area, res));
-			}
-		}
-
-		Collections.sort(servedRates);
-		
-		int i = 0;
-		for (PostalCodeServe s : servedRates ) {
-			if (i>=limit)
+		for (PostalCodeServe s : servedByArea) {
+			if (underServed.size() >= limit)
 				break;
 			underServed.add(s.getId());
-			i++;
 		}
 
 		return underServed;
 	}
 
 	/**
-	 * Function to determine the maximum impact hub
+	 * Function to determine the maximum impact hub, a hub without
+	 * impact counts as 0 and equal impacts are broken by the smaller
+	 * hub id, so the result does not depend on the order of the hubs
+	 * @param distributionHubs
+	 * @param hubImpacts
 	 * @param hubsInRange
 	 * @return hub 
 	 */
-	private DistributionHub getMaxImpactHub(List<DistributionHub> hubsInRange) {
-		DistributionHub maxHub = hubsInRange.get(0);
-		HubImpact maxImpact = hubImpacts.get(maxHub.getId());
-		double maxImpactValue = (maxImpact!=null)? maxImpact.getImpactValue() : 0; 
+	private static DistributionHub getMaxImpactHub(Map<String, DistributionHub> distributionHubs,
+			Map<String, HubImpact> hubImpacts, List<DistributionHub> hubsInRange) {
+		DistributionHub maxHub = null;
+		double maxImpactValue = 0;
 		for (DistributionHub hub : hubsInRange) {	
-			HubImpact impact2 = hubImpacts.get(hub.getId());
-			if (impact2 == null) {
-				continue;
-			}
-
-			if (impact2.getImpactValue() > maxImpactValue) {
-				maxImpactValue = impact2.getImpactValue();
-				maxImpact = impact2;
+			HubImpact impact = hubImpacts.get(hub.getId());
+			double impactValue = (impact != null) ? impact.getImpactValue() : 0;
+			if (maxHub == null || impactValue > maxImpactValue
+					|| (impactValue == maxImpactValue && hub.getId().compareTo(maxHub.getId()) < 0)) {
+				maxImpactValue = impactValue;
+				maxHub = hub;
 			}
 		}
 
-		return distributionHubs.get(maxImpact.getHubId());
+		return distributionHubs.get(maxHub.getId());
 	}
 
 	/**
 	 * Function to determine the hubs in given range
 	 * of distance and maximum time to repair
 	 *  
+	 * @param hubGrid
 	 * @param startHub
 	 * @param maxDistance
 	 * @param maxTime
 	 * @return list of hubs
 	 */
-	private List<DistributionHub> getHubsInRange(DistributionHub startHub, int maxDistance, float maxTime) {
+	private static List<DistributionHub> getHubsInRange(HubGrid hubGrid, DistributionHub startHub,
+			int maxDistance, float maxTime) {
+		PowerServiceEvents.HubsInRangeEvent event = new PowerServiceEvents.HubsInRangeEvent();
+		event.begin();
 		List<DistributionHub> hubs = new ArrayList<DistributionHub> ();
-		Point location1 = startHub.getLocation();
-		for (DistributionHub hub : distributionHubs.values()) {
+		List<DistributionHub> candidates = hubGrid.getHubsInRange(startHub.getLocation(), maxDistance);
+		for (DistributionHub hub : candidates) {
 			if (startHub.equals(hub)) {
 				continue;
 			}
-			Point location2 =  hub.getLocation();
-			float distance = getDistance(location1, location2);
-			if (distance <= maxDistance && hub.getHoursToRepair() <= maxTime) {
+			if (hub.getHoursToRepair() <= maxTime) {
 				hubs.add(hub);
 			}
 		}
+		if (event.shouldCommit()) {
+			event.startHub = startHub.getId();
+			event.candidates = candidates.size();
+			event.hubsInRange = hubs.size();
+			event.commit();
+		}
 		return hubs;
 	}
 
 	/**
-	 * Function to determine the distance between 
-	 * given two points , the formula is 
-	 * sqrt ((x2-x1)^2 + (y2-y1)^2)
+	 * Function to check whether the given hub is in range of
+	 * given location by distance and maximum time to repair.
+	 * The distance formula is sqrt ((x2-x1)^2 + (y2-y1)^2),
+	 * which is compared without square root.
 	 * 
-	 * @param location1
-	 * @param location2
-	 * @return distance as float
+	 * @param location
+	 * @param hub
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return true or false
 	 */
-	private float getDistance(Point location1, Point location2) {
-		int x1,y1,x2,y2;
-		x1 = location1.getX();
-		y1 = location1.getY();
-		x2 = location2.getX();
-		y2 = location2.getY();
-
-		int xsq = (x2-x1) * (x2-x1);
-		int ysq = (y2-y1) * (y2-y1);
-		return (float) Math.sqrt(xsq + ysq);
+	private static boolean isInRange(Point location, DistributionHub hub, int maxDistance, float maxTime) {
+		long dx = hub.getLocation().getX() - location.getX();
+		long dy = hub.getLocation().getY() - location.getY();
+		return dx * dx + dy * dy <= (long) maxDistance * maxDistance
+				&& hub.getHoursToRepair() <= maxTime;
 	}
 
 	/**
-	 * Function to add new hub impact value to list
+	 * Function to add new hub impact value to list, it is written
+	 * to the log first if one is attached
 	 * @param id
 	 * @param impactValue
 	 */
 	public void addHubImpact(String id, int impactValue) {
+		if (mutationLog != null && !bulkLoading) {
+			if (!MutationLog.isLoggable(id)) {
+				report(ServiceStatus.ID_TOO_LONG);
+				return;
+			}
+			try {
+				loggedSequence = mutationLog.logHubImpact(id, impactValue);
+			} catch (IOException e) {
+				reportLogFailure(e);
+				return;
+			}
+		}
 		HubImpact impact = new HubImpact(id, impactValue);
 		hubImpacts.put(id, impact);
+		markHubChanged(id);
+		DistributionHub hub = distributionHubs.get(id);
+		if (hub != null) {
+			updateFixOrder(hub);
+		}
+		finishLogged(ServiceStatus.UPDATED);
 	}
 
 	/**
-	 * Function to add given hub to damaged hub list
+	 * Function to add given hub to damaged hub list, it is written
+	 * to the log first if one is attached
 	 * @param id
 	 * @param numRepairs
 	 */
 	public void addDamagedHub(String id, int numRepairs) {
-		DamagedPostalCodes dm = new DamagedPostalCodes(id, numRepairs);
-		damagedPostalCodes.add(dm);
+		if (mutationLog != null && !bulkLoading) {
+			if (!MutationLog.isLoggable(id)) {
+				report(ServiceStatus.ID_TOO_LONG);
+				return;
+			}
+			try {
+				loggedSequence = mutationLog.logDamagedPostalCode(id, numRepairs);
+			} catch (IOException e) {
+				reportLogFailure(e);
+				return;
+			}
+		}
+		DamagedPostalCodes dm = damagedPostalCodes.get(id);
+		if (dm == null) {
+			dm = new DamagedPostalCodes(id, numRepairs);
+			damagedPostalCodes.put(id, dm);
+		}
+		else {
+			//remove before changing the repairs, so that order is kept
+			if (!bulkLoading) {
+				damageOrder.remove(dm);
+			}
+			dm.setNumberOfRepairs(numRepairs);
+		}
+		if (numRepairs > 0 && !bulkLoading) {
+			damageOrder.add(dm);
+		}
+		markPostalCodeChanged(id);
+		finishLogged(ServiceStatus.UPDATED);
+	}
+
+	/**
+	 * Function to copy the existing status of hubs and postal codes
+	 * into a compact struct-of-arrays store
+	 * @return store with all hubs and postal codes
+	 */
+	public CompactModelStore toCompactModelStore() {
+		return copyToCompactModelStore();
+	}
+
+	/**
+	 * Helper function to copy the status into a compact store, the log
+	 * is always compacted from the status itself and not from an
+	 * overriding toCompactModelStore
+	 * @return store with all hubs and postal codes
+	 */
+	private CompactModelStore copyToCompactModelStore() {
+		CompactModelStore store = new CompactModelStore(totalPostalCodes.size(),
+				distributionHubs.size());
+		for (PostalCode pcode : totalPostalCodes.values()) {
+			store.addPostalCode(pcode.getId(), pcode.getNumPeople(), (int) pcode.getAreaCovered());
+			store.setRepairCount(pcode.getId(), (int) getRepairCount(pcode.getId()));
+		}
+		List<String> codes = new ArrayList<String>();
+		for (DistributionHub dhub : distributionHubs.values()) {
+			codes.clear();
+			for (PostalCode pcode : dhub.getPostalCodesServed()) {
+				if (pcode != null) {
+					codes.add(pcode.getId());
+				}
+			}
+			int index = store.addDistributionHub(dhub.getId(), dhub.getLocation().getX(),
+					dhub.getLocation().getY(), codes);
+			store.setHoursToRepair(index, (float) dhub.getHoursToRepair());
+			HubImpact impact = hubImpacts.get(dhub.getId());
+			if (impact != null) {
+				store.setImpactValue(index, impact.getImpactValue());
+			}
+		}
+		copyEmployees(store);
+		return store;
+	}
+
+	/**
+	 * Helper function to copy the hubs repaired by each employee into
+	 * a compact store, the hubs should already be in the store
+	 * @param store
+	 */
+	void copyEmployees(CompactModelStore store) {
+		for (Map.Entry<String, List<String>> entry : employeeMap.entrySet()) {
+			store.addEmployee(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Function to save the existing status of hubs and postal codes
+	 * to a binary snapshot file
+	 * @param fileName
+	 * @return true, if saved successfully, else false
+	 */
+	public boolean saveSnapshot(String fileName) {
+		try {
+			ModelSnapshot.write(toCompactModelStore(), Path.of(fileName));
+			return true;
+		} catch (IOException e) {
+			log("Saving snapshot " + fileName + " failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Function to load the hubs and postal codes from a binary
+	 * snapshot file, in the same way as they are loaded from
+	 * hubs.txt and postal_codes.txt
+	 * @param fileName
+	 * @return true, if loaded successfully, else false
+	 */
+	public boolean loadSnapshot(String fileName) {
+		CompactModelStore store;
+		try {
+			store = ModelSnapshot.read(Path.of(fileName));
+		} catch (IOException e) {
+			log("Loading snapshot " + fileName + " failed: " + e.getMessage());
+			return false;
+		}
+
+		List<PostalCodeRecord> codes = new ArrayList<PostalCodeRecord>(store.getPostalCodeCount());
+		for (int i = 0; i < store.getPostalCodeCount(); i++) {
+			//codes only referred by hubs have no population
+			if (store.getPopulation(i) > 0) {
+				codes.add(new PostalCodeRecord(store.getPostalCode(i), store.getPopulation(i),
+						store.getArea(i), store.getRepairCount(i)));
+			}
+		}
+		addPostalCodes(codes);
+
+		//employees before hubs, so the log compacted after the hubs has them
+		for (int i = 0; i < store.getEmployeeCount(); i++) {
+			List<String> hubList = new ArrayList<String>();
+			for (int hub : store.getEmployeeHubs(i)) {
+				hubList.add(store.getHubId(hub));
+			}
+			employeeMap.put(store.getEmployeeId(i), hubList);
+		}
+
+		List<HubRecord> hubs = new ArrayList<HubRecord>(store.getHubCount());
+		for (int i = 0; i < store.getHubCount(); i++) {
+			Set<String> areas = new HashSet<String>();
+			for (int code : store.getServed(i)) {
+				areas.add(store.getPostalCode(code));
+			}
+			hubs.add(new HubRecord(store.getHubId(i), new Point(store.getX(i), store.getY(i)),
+					areas, store.getHoursToRepair(i), (int) store.getImpactValue(i)));
+		}
+		addDistributionHubs(hubs);
+		return true;
 	}
 
 	/**
 	 * Function to save the existing status of hubs
-	 * and postal codes to hubs.txt and postal_codes.txt
+	 * and postal codes to hubs.txt and postal_codes.txt.
+	 * Each file is written to a temporary file which is then
+	 * renamed over the original, and it is skipped if nothing
+	 * in it has changed since the last save.
 	 */
 	public void saveToFile() {
 		try {
-			BufferedWriter codeWriter = new BufferedWriter(new FileWriter("postal_codes.txt"));
-			BufferedWriter hubWriter = new BufferedWriter(new FileWriter("hubs.txt"));
-
-			for (PostalCode pcode : totalPostalCodes.values()) {
-				float repairCount = getRepairCount(pcode.getId());
-				String result = pcode.getId() +","+pcode.getNumPeople()+","+
-						pcode.getAreaCovered()+","+repairCount+"\n";
-				codeWriter.write(result);
+			StringBuilder line = new StringBuilder();
+			Path codeFile = Path.of("postal_codes.txt");
+			if (postalCodesChanged || !Files.exists(codeFile)) {
+				PowerServiceEvents.TextSaveEvent event = new PowerServiceEvents.TextSaveEvent();
+				event.begin();
+				Path temp = codeFile.resolveSibling("postal_codes.txt.tmp");
+				try (BufferedWriter codeWriter = Files.newBufferedWriter(temp)) {
+					for (PostalCode pcode : totalPostalCodes.values()) {
+						line.setLength(0);
+						line.append(pcode.getId()).append(',').append(pcode.getNumPeople())
+						.append(',').append(pcode.getAreaCovered())
+						.append(',').append(getRepairCount(pcode.getId())).append('\n');
+						codeWriter.append(line);
+					}
+				}
+				Files.move(temp, codeFile, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				postalCodesChanged = false;
+				commitSaveEvent(event, codeFile, totalPostalCodes.size());
 			}
 
-			for (DistributionHub dhub : distributionHubs.values()) {
-				double impactValue = 0;
-				if (hubImpacts.get(dhub.getId()) != null) {
-					impactValue = hubImpacts.get(dhub.getId()).getImpactValue();
+			Path hubFile = Path.of("hubs.txt");
+			if (hubsChanged || !Files.exists(hubFile)) {
+				PowerServiceEvents.TextSaveEvent event = new PowerServiceEvents.TextSaveEvent();
+				event.begin();
+				Path temp = hubFile.resolveSibling("hubs.txt.tmp");
+				try (BufferedWriter hubWriter = Files.newBufferedWriter(temp)) {
+					for (DistributionHub dhub : distributionHubs.values()) {
+						double impactValue = 0;
+						if (hubImpacts.get(dhub.getId()) != null) {
+							impactValue = hubImpacts.get(dhub.getId()).getImpactValue();
+						}
+						line.setLength(0);
+						line.append(dhub.getId()).append(',').append(dhub.getLocation().getX())
+						.append(',').append(dhub.getLocation().getY())
+						.append(',').append(dhub.getAreaCovered())
+						.append(',').append(dhub.getHoursToRepair())
+						.append(',').append(impactValue).append(',');
+						appendCodesServed(dhub, line);
+						line.append('\n');
+						hubWriter.append(line);
+					}
 				}
-				String result = dhub.getId() +","+dhub.getLocation().getX()+","+
-						dhub.getLocation().getY()+","+dhub.getAreaCovered()
-						+","+dhub.getHoursToRepair()
-						+","+impactValue+","+ getCodesServed(dhub.getId())
-						+"\n";
-				hubWriter.write(result);
-			}
-			codeWriter.close();
-			hubWriter.close();
+				Files.move(temp, hubFile, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				hubsChanged = false;
+				commitSaveEvent(event, hubFile, distributionHubs.size());
+			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			log("Saving to file failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Helper function to commit the event of saving a text file
+	 * @param event
+	 * @param file
+	 * @param records
+	 * @throws IOException
+	 */
+	private static void commitSaveEvent(PowerServiceEvents.TextSaveEvent event, Path file,
+			int records) throws IOException {
+		if (event.shouldCommit()) {
+			event.file = file.toString();
+			event.records = records;
+			event.bytesWritten = Files.size(file);
+			event.commit();
 		}
 	}
 
 	/**
-	 * Function to return the codes served by a hub
+	 * Function to append the codes served by a hub
 	 * as comma separated string 
-	 * @param id
-	 * @return
+	 * @param hub
+	 * @param line
 	 */
-	private String  getCodesServed(String id) {
-		DistributionHub hub = distributionHubs.get(id);
-		String result = "";
-		int i =0, size;
-		size = hub.getPostalCodesServed().size();
+	private void appendCodesServed(DistributionHub hub, StringBuilder line) {
+		boolean first = true;
 		//iterate through the list
 		for (PostalCode pcode:hub.getPostalCodesServed()) {
 			if (pcode == null) {
 				continue;
 			}
-			//construct the result
-			result +=pcode.getId();
-			if (i!=size-1) {
-				result+=",";
+			if (!first) {
+				line.append(',');
 			}
-			i++;
+			line.append(pcode.getId());
+			first = false;
 		}
-		//return result
-		return result;
+	}
+
+	/**
+	 * Helper function to mark the postal code as changed
+	 * since the last save
+	 * @param id
+	 */
+	private void markPostalCodeChanged(String id) {
+		postalCodesChanged = true;
+		trackPostalCodeChange(id);
+	}
+
+	/**
+	 * Helper function to mark the hub as changed
+	 * since the last save
+	 * @param id
+	 */
+	private void markHubChanged(String id) {
+		hubsChanged = true;
+		trackHubChange(id);
+	}
+
+	/**
+	 * Helper function to remember the hub as changed since the
+	 * last published snapshot, bulk loads are published as a whole
+	 * @param id
+	 */
+	private void trackHubChange(String id) {
+		if (unpublishedHubs != null && !bulkLoading) {
+			unpublishedHubs.add(id);
+		}
+	}
+
+	/**
+	 * Helper function to remember the postal code as changed since
+	 * the last published snapshot, bulk loads are published as a whole
+	 * @param id
+	 */
+	private void trackPostalCodeChange(String id) {
+		if (unpublishedPostalCodes != null && !bulkLoading) {
+			unpublishedPostalCodes.add(id);
+		}
+	}
+
+	/**
+	 * Function to publish the current status as a new immutable
+	 * snapshot. Only the hubs and postal codes changed since the
+	 * previous snapshot are copied, which shares everything else
+	 * with it, unless the indexes were rebuilt by a bulk load. The
+	 * caller should make sure no change runs at the same time.
+	 * @param previous snapshot published last, null for the first one
+	 * @return new snapshot
+	 */
+	PowerServiceSnapshot publishSnapshot(PowerServiceSnapshot previous) {
+		PowerServiceEvents.SnapshotPublishEvent event = new PowerServiceEvents.SnapshotPublishEvent();
+		event.begin();
+		if (previous == null || unpublishedHubs == null || unpublishedRebuild) {
+			long version = (previous == null) ? 1 : previous.getVersion() + 1;
+			List<PowerServiceSnapshot.HubState> hubs =
+					new ArrayList<PowerServiceSnapshot.HubState>(distributionHubs.size());
+			for (DistributionHub hub : distributionHubs.values()) {
+				hubs.add(getHubState(hub));
+			}
+			Set<String> ids = new HashSet<String>(totalPostalCodes.keySet());
+			ids.addAll(damagedPostalCodes.keySet());
+			List<PowerServiceSnapshot.PostalState> codes =
+					new ArrayList<PowerServiceSnapshot.PostalState>(ids.size());
+			for (String id : ids) {
+				codes.add(getPostalState(id));
+			}
+			unpublishedHubs = new HashSet<String>();
+			unpublishedPostalCodes = new HashSet<String>();
+			unpublishedRebuild = false;
+			PowerServiceSnapshot snapshot = PowerServiceSnapshot.build(version, totalOutOfService,
+					hubs, codes, servedByPopulation.toArray(new PostalCodeServe[0]),
+					servedByArea.toArray(new PostalCodeServe[0]), serviceLog);
+			commitPublishEvent(event, snapshot, true, hubs.size(), codes.size());
+			return snapshot;
+		}
+
+		if (unpublishedHubs.isEmpty() && unpublishedPostalCodes.isEmpty()) {
+			return previous;
+		}
+		List<PowerServiceSnapshot.PostalState> codes =
+				new ArrayList<PowerServiceSnapshot.PostalState>(unpublishedPostalCodes.size());
+		for (String id : unpublishedPostalCodes) {
+			codes.add(getPostalState(id));
+			//hubs hold copies of the postal codes they serve
+			List<String> serving = postalCodeToHub.get(id);
+			if (serving != null) {
+				unpublishedHubs.addAll(serving);
+			}
+		}
+		List<PowerServiceSnapshot.HubState> hubs =
+				new ArrayList<PowerServiceSnapshot.HubState>(unpublishedHubs.size());
+		for (String id : unpublishedHubs) {
+			DistributionHub hub = distributionHubs.get(id);
+			if (hub != null) {
+				hubs.add(getHubState(hub));
+			}
+		}
+		unpublishedHubs.clear();
+		unpublishedPostalCodes.clear();
+		PowerServiceSnapshot snapshot = previous.update(totalOutOfService, hubs, codes,
+				serviceLog);
+		commitPublishEvent(event, snapshot, false, hubs.size(), codes.size());
+		return snapshot;
+	}
+
+	/**
+	 * Helper function to commit the event of publishing a snapshot
+	 * @param event
+	 * @param snapshot
+	 * @param rebuild true, if snapshot was built from scratch
+	 * @param hubs number of hubs copied
+	 * @param postalCodes number of postal codes copied
+	 */
+	private static void commitPublishEvent(PowerServiceEvents.SnapshotPublishEvent event,
+			PowerServiceSnapshot snapshot, boolean rebuild, int hubs, int postalCodes) {
+		if (event.shouldCommit()) {
+			event.version = snapshot.getVersion();
+			event.rebuild = rebuild;
+			event.hubs = hubs;
+			event.postalCodes = postalCodes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Helper function to copy the status of given hub for a snapshot
+	 * @param hub
+	 * @return hub state
+	 */
+	private PowerServiceSnapshot.HubState getHubState(DistributionHub hub) {
+		Set<PostalCode> served = new HashSet<PostalCode>();
+		for (PostalCode code : hub.getPostalCodesServed()) {
+			if (code != null) {
+				served.add(new PostalCode(code.getId(), code.getNumPeople(), code.getAreaCovered()));
+			}
+		}
+		DistributionHub copy = new DistributionHub(hub.getId(), hub.getLocation(),
+				Collections.unmodifiableSet(served));
+		copy.setAreaCovered(hub.getAreaCovered());
+		copy.setHoursToRepair(hub.getHoursToRepair());
+		HubImpact impact = hubImpacts.get(hub.getId());
+		return new PowerServiceSnapshot.HubState(copy, hubPopulation.getOrDefault(hub.getId(), 0),
+				(impact == null) ? null : new HubImpact(impact.getHubId(), impact.getImpactValue()));
+	}
+
+	/**
+	 * Helper function to copy the status of given postal code for
+	 * a snapshot
+	 * @param id
+	 * @return postal code state
+	 */
+	private PowerServiceSnapshot.PostalState getPostalState(String id) {
+		PostalCode code = totalPostalCodes.get(id);
+		DamagedPostalCodes damaged = damagedPostalCodes.get(id);
+		return new PowerServiceSnapshot.PostalState(id,
+				(code == null) ? null : new PostalCode(id, code.getNumPeople(), code.getAreaCovered()),
+				(damaged == null) ? null : new DamagedPostalCodes(id, damaged.getNumberOfRepairs()),
+				populationServe.get(id), areaServe.get(id));
 	}
 
 	/**
@@ -725,10 +1811,9 @@ public class PowerService {
 	 * @return repair count as integer
 	 */
 	private float getRepairCount(String id) {
-		for (DamagedPostalCodes dcode : damagedPostalCodes) {
-			if (dcode.getPostalCode().equals(id)) {
-				return dcode.getNumberOfRepairs();
-			}
+		DamagedPostalCodes dcode = damagedPostalCodes.get(id);
+		if (dcode != null) {
+			return dcode.getNumberOfRepairs();
 		}
 		return 0;
 	}
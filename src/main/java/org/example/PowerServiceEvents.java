@@ -0,0 +1,245 @@
+package org.example;
+/**
+ * Java class to hold the Java Flight Recorder events of the power service.
+ * The stages of a repair plan, the loaders and the saves each emit an
+ * event with its duration and a few counts, so a recording shows which
+ * stage the time and allocation of a slow operation go to, e.g. with
+ * jcmd pid JFR.start settings=profile or -XX:StartFlightRecording.
+ *
+ * The events are only filled and committed if shouldCommit() returns
+ * true, i.e. the event is enabled and above its threshold. Otherwise an
+ * event is never stored anywhere, the JIT removes its allocation and
+ * only the check of the enabled flag remains.
+ */
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public final class PowerServiceEvents {
+	//categories shown by JDK Mission Control
+	private static final String CATEGORY = "Power Service";
+	private static final String REPAIR_PLAN = "Repair Plan";
+	private static final String PERSISTENCE = "Persistence";
+
+	//holder class
+	private PowerServiceEvents() {
+	}
+
+	/**
+	 * Event for a whole repair plan, from the start hub to the plan
+	 */
+	@Name("org.example.RepairPlan")
+	@Label("Repair Plan")
+	@Category({CATEGORY, REPAIR_PLAN})
+	public static final class RepairPlanEvent extends Event {
+		@Label("Start Hub")
+		String startHub;
+
+		@Label("Max Distance")
+		int maxDistance;
+
+		@Label("Max Time")
+		float maxTime;
+
+		@Label("Hubs In Range")
+		int hubsInRange;
+
+		@Label("Hubs In Rectangle")
+		int hubsInRect;
+
+		@Label("Path Length")
+		@Description("Number of hubs in the plan")
+		int pathLength;
+	}
+
+	/**
+	 * Event for finding the hubs in range of the start hub
+	 */
+	@Name("org.example.HubsInRange")
+	@Label("Hubs In Range")
+	@Category({CATEGORY, REPAIR_PLAN})
+	public static final class HubsInRangeEvent extends Event {
+		@Label("Start Hub")
+		String startHub;
+
+		@Label("Candidates")
+		@Description("Hubs within the distance, as returned by the grid")
+		int candidates;
+
+		@Label("Hubs In Range")
+		@Description("Candidates which can also be repaired in time")
+		int hubsInRange;
+	}
+
+	/**
+	 * Event for finding the hubs in the rectangle of start and end hub
+	 */
+	@Name("org.example.HubsInRect")
+	@Label("Hubs In Rectangle")
+	@Category({CATEGORY, REPAIR_PLAN})
+	public static final class HubsInRectEvent extends Event {
+		@Label("Start Hub")
+		String startHub;
+
+		@Label("End Hub")
+		String endHub;
+
+		@Label("Candidates")
+		@Description("Hubs in the cells covering the rectangle")
+		int candidates;
+
+		@Label("Hubs In Rectangle")
+		@Description("Candidates in the rectangle and in range of the start hub")
+		int hubsInRect;
+	}
+
+	/**
+	 * Event for building the graph of the hubs in the rectangle
+	 */
+	@Name("org.example.HubGraphBuild")
+	@Label("Hub Graph Build")
+	@Category({CATEGORY, REPAIR_PLAN})
+	public static final class HubGraphBuildEvent extends Event {
+		@Label("Hubs")
+		int hubs;
+	}
+
+	/**
+	 * Event for finding the maximum impact monotonic path and summing
+	 * up its impact
+	 */
+	@Name("org.example.MaxImpactPath")
+	@Label("Max Impact Path")
+	@Category({CATEGORY, REPAIR_PLAN})
+	public static final class MaxImpactPathEvent extends Event {
+		@Label("Hubs")
+		int hubs;
+
+		@Label("Edges Checked")
+		@Description("Pairs of hubs checked as steps of a monotonic path")
+		long edgesChecked;
+
+		@Label("Paths Extended")
+		@Description("Times a better path to a hub was found")
+		long pathsExtended;
+
+		@Label("Path Length")
+		int pathLength;
+
+		@Label("Impact")
+		double impact;
+	}
+
+	/**
+	 * Event for a phase of loading a csv file, parsing the rows of one
+	 * chunk, or the whole load of the file into the power service,
+	 * which overlaps with parsing the chunks
+	 */
+	@Name("org.example.CsvLoad")
+	@Label("Csv Load")
+	@Category({CATEGORY, PERSISTENCE})
+	public static final class CsvLoadEvent extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Phase")
+		@Description("parse of a chunk, or apply of the whole file")
+		String phase;
+
+		@Label("Size")
+		@DataAmount
+		long bytes;
+
+		@Label("Chunks")
+		int chunks;
+
+		@Label("Records")
+		int records;
+
+		@Label("Errors")
+		int errors;
+	}
+
+	/**
+	 * Event for writing a binary snapshot file
+	 */
+	@Name("org.example.SnapshotWrite")
+	@Label("Snapshot Write")
+	@Category({CATEGORY, PERSISTENCE})
+	public static final class SnapshotWriteEvent extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Bytes Written")
+		@DataAmount
+		long bytesWritten;
+
+		@Label("Postal Codes")
+		int postalCodes;
+
+		@Label("Hubs")
+		int hubs;
+	}
+
+	/**
+	 * Event for reading a binary snapshot file
+	 */
+	@Name("org.example.SnapshotRead")
+	@Label("Snapshot Read")
+	@Category({CATEGORY, PERSISTENCE})
+	public static final class SnapshotReadEvent extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Bytes Read")
+		@DataAmount
+		long bytesRead;
+
+		@Label("Postal Codes")
+		int postalCodes;
+
+		@Label("Hubs")
+		int hubs;
+	}
+
+	/**
+	 * Event for saving hubs.txt or postal_codes.txt
+	 */
+	@Name("org.example.TextSave")
+	@Label("Text Save")
+	@Category({CATEGORY, PERSISTENCE})
+	public static final class TextSaveEvent extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Records")
+		int records;
+
+		@Label("Bytes Written")
+		@DataAmount
+		long bytesWritten;
+	}
+
+	/**
+	 * Event for publishing a snapshot of the status for the queries
+	 */
+	@Name("org.example.SnapshotPublish")
+	@Label("Snapshot Publish")
+	@Category({CATEGORY, PERSISTENCE})
+	public static final class SnapshotPublishEvent extends Event {
+		@Label("Version")
+		long version;
+
+		@Label("Full Rebuild")
+		boolean rebuild;
+
+		@Label("Hubs Changed")
+		int hubs;
+
+		@Label("Postal Codes Changed")
+		int postalCodes;
+	}
+}
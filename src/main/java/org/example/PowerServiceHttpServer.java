@@ -0,0 +1,576 @@
+package org.example;
+/**
+ * Java class to serve the queries and field reports of the power service
+ * as JSON over HTTP, so that many dashboards can use one service at the
+ * same time. It is built on the HTTP server of the JDK and runs each
+ * request on its own virtual thread where the JDK has them (Java 21, or
+ * Java 20 with --enable-preview), else on a cached thread pool. The
+ * service should be a ConcurrentPowerService, whose queries do not lock.
+ *
+ * Endpoints, parameters are given in the query string, or for POST also
+ * as a form in the body:
+ * GET  /peopleOutOfService[?hub=HUB1]
+ * GET  /fixOrder?limit=10
+ * GET  /mostDamagedPostalCodes?limit=10
+ * GET  /underserved/population?limit=10
+ * GET  /underserved/area?limit=10
+ * GET  /repairPlan?hub=HUB1&maxDistance=40&maxTime=48
+ * POST /hubDamage?hub=HUB1&hours=12.5
+ * POST /hubRepair?hub=HUB1&employee=E7&hours=3&inService=true
+ * GET  /metrics
+ *
+ * The server listens on the loopback address unless a host is given.
+ * Invalid parameters are answered with 400, unknown hubs with 404 and
+ * bodies larger than MAX_BODY_BYTES with 413, all with {"error":"message"}. The latency, calls and errors of every
+ * endpoint are kept in {@link #getMetrics()} and shown by /metrics.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PowerServiceHttpServer implements Closeable {
+	//default port of the server
+	public static final int DEFAULT_PORT = 8080;
+	//connections waiting to be accepted
+	private static final int BACKLOG = 1024;
+	//seconds to let running requests finish on close
+	private static final int STOP_SECONDS = 1;
+	//largest request body which is read
+	public static final int MAX_BODY_BYTES = 64 * 1024;
+
+	//attributes
+	private final PowerServiceOperations powerService;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	//latencies and counters of the endpoints
+	private final PowerServiceMetrics metrics = new PowerServiceMetrics("HttpServer");
+
+	//constructors, the server is started by start()
+	public PowerServiceHttpServer(PowerServiceOperations powerService, int port) throws IOException {
+		this(powerService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	public PowerServiceHttpServer(PowerServiceOperations powerService, String host, int port)
+			throws IOException {
+		this(powerService, new InetSocketAddress(host, port));
+	}
+
+	public PowerServiceHttpServer(PowerServiceOperations powerService, InetSocketAddress address)
+			throws IOException {
+		if (address.isUnresolved()) {
+			throw new IOException("Unknown host " + address.getHostString());
+		}
+		this.powerService = powerService;
+		this.server = HttpServer.create(address, BACKLOG);
+		ExecutorService virtual = newVirtualThreadExecutor();
+		this.virtualThreads = virtual != null;
+		this.executor = virtualThreads ? virtual : Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+
+		addEndpoint("GET", "/peopleOutOfService", this::peopleOutOfService);
+		addEndpoint("GET", "/fixOrder", this::fixOrder);
+		addEndpoint("GET", "/mostDamagedPostalCodes", this::mostDamagedPostalCodes);
+		addEndpoint("GET", "/underserved/population", params ->
+				toJson(powerService.underservedPostalByPopulation(getLimit(params))));
+		addEndpoint("GET", "/underserved/area", params ->
+				toJson(powerService.underservedPostalByArea(getLimit(params))));
+		addEndpoint("GET", "/repairPlan", this::repairPlan);
+		addEndpoint("POST", "/hubDamage", this::hubDamage);
+		addEndpoint("POST", "/hubRepair", this::hubRepair);
+		addEndpoint("GET", "/metrics", params -> metricsJson());
+	}
+
+	/**
+	 * Helper function to create an executor running each task on a new
+	 * virtual thread. It is looked up at run time, as virtual threads
+	 * are a preview in Java 20 and missing before.
+	 * @return executor, null if virtual threads are not available
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Function to start serving requests
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Function to return the address the server listens on
+	 * @return address
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Function to return the port the server listens on, e.g.
+	 * the one chosen by the system for port 0
+	 * @return port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Function to check whether requests run on virtual threads
+	 * @return true, if virtual threads, else false for a thread pool
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Function to return the latencies and counters of the endpoints
+	 * @return metrics
+	 */
+	public PowerServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Function to stop the server, the requests running are
+	 * given a second to finish
+	 */
+	@Override
+	public void close() {
+		server.stop(STOP_SECONDS);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(STOP_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Helper function to serve given endpoint at given path
+	 * @param method GET or POST
+	 * @param path
+	 * @param endpoint
+	 */
+	private void addEndpoint(String method, String path, Endpoint endpoint) {
+		OperationStats stats = metrics.getOperation(method + " " + path);
+		server.createContext(path, new EndpointHandler(powerService, method, path, endpoint, stats));
+	}
+
+	/**
+	 * Function to answer the people out of service, of all
+	 * hubs or of given hub
+	 * @param params
+	 * @return JSON
+	 * @throws RequestException if hub does not exist
+	 */
+	private String peopleOutOfService(Map<String, String> params) throws RequestException {
+		String hubId = params.get("hub");
+		int count;
+		if (hubId == null) {
+			count = powerService.peopleOutOfService();
+		}
+		else {
+			count = powerService.peopleOutOfService(getHub(hubId));
+		}
+		return "{\"peopleOutOfService\":" + count + "}";
+	}
+
+	/**
+	 * Function to answer the hubs to fix first
+	 * @param params
+	 * @return JSON
+	 * @throws RequestException if limit is invalid
+	 */
+	private String fixOrder(Map<String, String> params) throws RequestException {
+		return toJson(powerService.fixOrder(getLimit(params)));
+	}
+
+	/**
+	 * Function to answer the postal codes with most repairs
+	 * @param params
+	 * @return JSON
+	 * @throws RequestException if limit is invalid
+	 */
+	private String mostDamagedPostalCodes(Map<String, String> params) throws RequestException {
+		List<DamagedPostalCodes> codes = powerService.mostDamagedPostalCodes(getLimit(params));
+		StringBuilder json = new StringBuilder("[");
+		for (DamagedPostalCodes code : codes) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append("{\"postalCode\":");
+			appendString(json, code.getPostalCode());
+			json.append(",\"repairs\":").append(code.getNumberOfRepairs()).append('}');
+		}
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Function to answer the repair plan from given hub
+	 * @param params
+	 * @return JSON
+	 * @throws RequestException if a parameter is invalid or hub does not exist
+	 */
+	private String repairPlan(Map<String, String> params) throws RequestException {
+		String hubId = getRequired(params, "hub");
+		int maxDistance = getInt(params, "maxDistance");
+		float maxTime = getFloat(params, "maxTime");
+		if (maxDistance <= 0 || maxTime <= 0) {
+			throw new RequestException(400, "maxDistance and maxTime should be positive");
+		}
+		getHub(hubId);
+		return toJson(powerService.repairPlan(hubId, maxDistance, maxTime));
+	}
+
+	/**
+	 * Function to report a damaged hub
+	 * @param params
+	 * @return JSON with the status
+	 * @throws RequestException if a parameter is invalid or hub does not exist
+	 */
+	private String hubDamage(Map<String, String> params) throws RequestException {
+		return toJson(powerService.tryHubDamage(getRequired(params, "hub"),
+				getFloat(params, "hours")));
+	}
+
+	/**
+	 * Function to report a repair of a hub
+	 * @param params
+	 * @return JSON with the status
+	 * @throws RequestException if a parameter is invalid or hub does not exist
+	 */
+	private String hubRepair(Map<String, String> params) throws RequestException {
+		String inService = getRequired(params, "inService");
+		if (!inService.equals("true") && !inService.equals("false")) {
+			throw new RequestException(400, "inService should be true or false");
+		}
+		return toJson(powerService.tryHubRepair(getRequired(params, "hub"),
+				getRequired(params, "employee"), getFloat(params, "hours"),
+				inService.equals("true")));
+	}
+
+	/**
+	 * Function to answer the latencies and counters of the endpoints
+	 * @return JSON, latencies in microseconds
+	 */
+	private String metricsJson() {
+		StringBuilder json = new StringBuilder("[");
+		for (OperationStats stats : metrics.getOperations()) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append("{\"endpoint\":");
+			appendString(json, stats.getName());
+			json.append(",\"calls\":").append(stats.getCalls())
+			.append(",\"errors\":").append(stats.getErrors())
+			.append(",\"meanMicros\":").append(stats.getMeanMicros())
+			.append(",\"p50Micros\":").append(stats.getP50Micros())
+			.append(",\"p99Micros\":").append(stats.getP99Micros())
+			.append(",\"p999Micros\":").append(stats.getP999Micros())
+			.append(",\"maxMicros\":").append(stats.getMaxMicros()).append('}');
+		}
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Helper function to return the hub of given id
+	 * @param hubId
+	 * @return hub
+	 * @throws RequestException if hub does not exist
+	 */
+	private DistributionHub getHub(String hubId) throws RequestException {
+		DistributionHub hub = powerService.getHub(hubId);
+		if (hub == null) {
+			throw new RequestException(404, ServiceStatus.UNKNOWN_HUB.getMessage());
+		}
+		return hub;
+	}
+
+	/**
+	 * Helper function to return the limit of a ranked query
+	 * @param params
+	 * @return limit, 10 if not given
+	 * @throws RequestException if limit is not a positive integer
+	 */
+	private static int getLimit(Map<String, String> params) throws RequestException {
+		if (params.get("limit") == null) {
+			return 10;
+		}
+		int limit = getInt(params, "limit");
+		if (limit <= 0) {
+			throw new RequestException(400, "Limit should be positive");
+		}
+		return limit;
+	}
+
+	/**
+	 * Helper function to return a parameter which must be given
+	 * @param params
+	 * @param name
+	 * @return value
+	 * @throws RequestException if parameter is missing
+	 */
+	private static String getRequired(Map<String, String> params, String name)
+			throws RequestException {
+		String value = params.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new RequestException(400, "Missing parameter " + name);
+		}
+		return value;
+	}
+
+	private static int getInt(Map<String, String> params, String name) throws RequestException {
+		String value = getRequired(params, name);
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, name + " should be an integer");
+		}
+	}
+
+	private static float getFloat(Map<String, String> params, String name) throws RequestException {
+		String value = getRequired(params, name);
+		try {
+			float number = Float.parseFloat(value);
+			if (Float.isNaN(number) || Float.isInfinite(number)) {
+				throw new NumberFormatException(value);
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, name + " should be a number");
+		}
+	}
+
+	/**
+	 * Helper function to convert hub impacts or ids to JSON
+	 * @param values
+	 * @return JSON array
+	 */
+	private static String toJson(List<?> values) {
+		StringBuilder json = new StringBuilder("[");
+		for (Object value : values) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			if (value instanceof HubImpact) {
+				HubImpact impact = (HubImpact) value;
+				json.append("{\"hubId\":");
+				appendString(json, impact.getHubId());
+				json.append(",\"impactValue\":").append(impact.getImpactValue()).append('}');
+			}
+			else if (value == null) {
+				json.append("null");
+			}
+			else {
+				appendString(json, value.toString());
+			}
+		}
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Helper function to convert the status of a change to JSON
+	 * @param status
+	 * @return JSON
+	 * @throws RequestException if status is not a success
+	 */
+	private static String toJson(ServiceStatus status) throws RequestException {
+		if (status == ServiceStatus.UNKNOWN_HUB) {
+			throw new RequestException(404, status.getMessage());
+		}
+		//not the request but the server failed
+		if (status == ServiceStatus.LOG_FAILURE) {
+			throw new RequestException(503, status.getMessage());
+		}
+		if (!status.isSuccess()) {
+			throw new RequestException(400, status.getMessage());
+		}
+		return "{\"status\":\"" + status.name() + "\"}";
+	}
+
+	/**
+	 * Helper function to append a JSON string
+	 * @param json
+	 * @param value
+	 */
+	static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': json.append("\\\""); break;
+			case '\\': json.append("\\\\"); break;
+			case '\n': json.append("\\n"); break;
+			case '\r': json.append("\\r"); break;
+			case '\t': json.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * Helper function to parse the parameters of a request, from
+	 * the query string and for POST also from a form body
+	 * @param exchange
+	 * @return parameter name to value
+	 * @throws IOException
+	 * @throws RequestException if the body is larger than MAX_BODY_BYTES
+	 */
+	private static Map<String, String> getParams(HttpExchange exchange)
+			throws IOException, RequestException {
+		Map<String, String> params = new HashMap<String, String>();
+		parseForm(exchange.getRequestURI().getRawQuery(), params);
+		if (exchange.getRequestMethod().equals("POST")) {
+			//read one byte more than allowed to notice a larger body
+			try (InputStream in = exchange.getRequestBody()) {
+				byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+				if (body.length > MAX_BODY_BYTES) {
+					throw bodyTooLarge();
+				}
+				parseForm(new String(body, StandardCharsets.UTF_8), params);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Helper function to create the answer to a body above MAX_BODY_BYTES
+	 * @return request exception with status 413
+	 */
+	private static RequestException bodyTooLarge() {
+		return new RequestException(413, "Body cannot be larger than " + MAX_BODY_BYTES + " bytes");
+	}
+
+	/**
+	 * Helper function to parse url encoded name=value pairs
+	 * separated by &amp;
+	 * @param form
+	 * @param params map the pairs are put into
+	 */
+	private static void parseForm(String form, Map<String, String> params) {
+		if (form == null || form.isEmpty()) {
+			return;
+		}
+		for (String pair : form.split("&")) {
+			int split = pair.indexOf('=');
+			String name = (split < 0) ? pair : pair.substring(0, split);
+			String value = (split < 0) ? "" : pair.substring(split + 1);
+			params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Interface of an endpoint, which answers the parameters
+	 * of a request with a JSON document
+	 */
+	private interface Endpoint {
+		String handle(Map<String, String> params) throws RequestException;
+	}
+
+	/**
+	 * Java class to represent a request which cannot be answered,
+	 * with its HTTP status code
+	 */
+	private static final class RequestException extends Exception {
+		private static final long serialVersionUID = 1L;
+		private final int statusCode;
+
+		RequestException(int statusCode, String message) {
+			super(message);
+			this.statusCode = statusCode;
+		}
+	}
+
+	/**
+	 * Java class to handle the requests of an endpoint, it checks
+	 * the method, sends the answer and records its latency
+	 */
+	private static final class EndpointHandler implements HttpHandler {
+		private final PowerServiceOperations powerService;
+		private final String method;
+		private final String path;
+		private final Endpoint endpoint;
+		private final OperationStats stats;
+
+		EndpointHandler(PowerServiceOperations powerService, String method, String path,
+				Endpoint endpoint, OperationStats stats) {
+			this.powerService = powerService;
+			this.method = method;
+			this.path = path;
+			this.endpoint = endpoint;
+			this.stats = stats;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			long start = System.nanoTime();
+			int statusCode = 200;
+			String body;
+			try {
+				//contexts also match longer paths
+				if (!exchange.getRequestURI().getPath().equals(path)) {
+					throw new RequestException(404, "No endpoint " + exchange.getRequestURI().getPath());
+				}
+				if (!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					throw new RequestException(405, "Use " + method);
+				}
+				body = endpoint.handle(getParams(exchange));
+			} catch (RequestException e) {
+				statusCode = e.statusCode;
+				StringBuilder json = new StringBuilder("{\"error\":");
+				appendString(json, e.getMessage());
+				body = json.append('}').toString();
+			} catch (RuntimeException e) {
+				statusCode = 500;
+				body = "{\"error\":\"Internal error\"}";
+				PowerService.log(powerService.getServiceLog(), "Request " + exchange.getRequestMethod()
+						+ " " + exchange.getRequestURI().getPath() + " failed: " + e);
+			}
+			try {
+				byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(statusCode, bytes.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(bytes);
+				}
+			} finally {
+				exchange.close();
+				if (statusCode != 200) {
+					stats.error();
+				}
+				stats.record(start);
+			}
+		}
+	}
+}
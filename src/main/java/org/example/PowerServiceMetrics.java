@@ -0,0 +1,121 @@
+package org.example;
+/**
+ * Java class to hold the statistics of each power service operation,
+ * and to publish them as MBeans named
+ * org.example:type=PowerService,operation=name, or print them as a table.
+ * The statistics of other components, e.g. the requests of the HTTP
+ * server, are published under their own type.
+ */
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class PowerServiceMetrics {
+	//default type of the MBean names
+	public static final String DEFAULT_TYPE = "PowerService";
+
+	//domain and type of the MBean names
+	private final String namePrefix;
+	//map to hold operation name as key and its statistics as value
+	private final Map<String, OperationStats> operations = new LinkedHashMap<String, OperationStats>();
+	//names of the MBeans registered by this instance
+	private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+	//constructors
+	public PowerServiceMetrics() {
+		this(DEFAULT_TYPE);
+	}
+
+	public PowerServiceMetrics(String type) {
+		this.namePrefix = "org.example:type=" + type + ",operation=";
+	}
+
+	/**
+	 * Function to return the statistics of given operation,
+	 * they are created on first use
+	 * @param name
+	 * @return statistics
+	 */
+	public synchronized OperationStats getOperation(String name) {
+		return operations.computeIfAbsent(name, OperationStats::new);
+	}
+
+	/**
+	 * Function to return the statistics of all operations
+	 * @return statistics in order of creation
+	 */
+	public synchronized Collection<OperationStats> getOperations() {
+		return new ArrayList<OperationStats>(operations.values());
+	}
+
+	/**
+	 * Function to publish the statistics of every operation as an MBean
+	 * of the platform MBean server, MBeans of the same name registered
+	 * before, e.g. by an earlier service, are replaced
+	 * @param serviceLog log to report a failure to, may be null
+	 * @return true, if registered successfully, else false
+	 */
+	public synchronized boolean registerMBeans(ServiceLog serviceLog) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (OperationStats stats : operations.values()) {
+				ObjectName name = new ObjectName(namePrefix + stats.getName());
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				server.registerMBean(stats, name);
+				registered.add(name);
+			}
+			return true;
+		} catch (JMException e) {
+			PowerService.log(serviceLog, "Registering MBeans failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Function to remove the MBeans registered by this instance
+	 * @param serviceLog log to report a failure to, may be null
+	 */
+	public synchronized void unregisterMBeans(ServiceLog serviceLog) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+			} catch (JMException e) {
+				PowerService.log(serviceLog, "Unregistering MBean " + name + " failed: " + e.getMessage());
+			}
+		}
+		registered.clear();
+	}
+
+	/**
+	 * Function to format the statistics of the operations called
+	 * so far as a table, latencies are in microseconds
+	 * @return table
+	 */
+	public String toTable() {
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%-30s %10s %8s %10s %10s %10s %10s %10s%n", "Operation",
+				"Calls", "Errors", "Mean", "p50", "p99", "p999", "Max"));
+		for (OperationStats stats : getOperations()) {
+			if (stats.getCalls() == 0 && stats.getErrors() == 0) {
+				continue;
+			}
+			table.append(String.format("%-30s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+					stats.getName(), stats.getCalls(), stats.getErrors(), stats.getMeanMicros(),
+					stats.getP50Micros(), stats.getP99Micros(), stats.getP999Micros(),
+					stats.getMaxMicros()));
+		}
+		return table.toString();
+	}
+}
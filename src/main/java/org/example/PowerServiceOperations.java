@@ -0,0 +1,280 @@
+package org.example;
+/**
+ * Interface of the operations of a power service, which are used by the
+ * menu, the HTTP server, the event tailer and the log replay. It is
+ * implemented by {@link PowerService} and its subclasses, and by
+ * wrappers such as {@link InstrumentedPowerService} which pass every
+ * operation on to another service.
+ */
+import java.util.List;
+import java.util.Set;
+
+public interface PowerServiceOperations {
+	/**
+	 * Function to add new postal code to existing list
+	 * @param postalCode
+	 * @param population
+	 * @param area
+	 * @return true, if added successfully, else false.
+	 */
+	boolean addPostalCode(String postalCode, int population, int area);
+
+	/**
+	 * Function to add new postal code to existing list, or update it
+	 * @param postalCode
+	 * @param population
+	 * @param area
+	 * @return ADDED or UPDATED, else the reason it is invalid
+	 */
+	ServiceStatus tryAddPostalCode(String postalCode, int population, int area);
+
+	/**
+	 * Function to add new hub
+	 * @param hubIdentifier
+	 * @param location
+	 * @param servicedAreas
+	 * @return true, if added as new hub, else false
+	 */
+	boolean addDistributionHub(String hubIdentifier, Point location, Set<String> servicedAreas);
+
+	/**
+	 * Function to add new hub, or update the location and served
+	 * postal codes of an existing one
+	 * @param hubIdentifier
+	 * @param location
+	 * @param servicedAreas
+	 * @return ADDED or UPDATED, else the reason it is invalid
+	 */
+	ServiceStatus tryAddDistributionHub(String hubIdentifier, Point location,
+			Set<String> servicedAreas);
+
+	/**
+	 * Function to add or update many postal codes at once, the
+	 * derived indexes are built once after the last record
+	 * @param records
+	 * @return number of postal codes added or updated
+	 */
+	int addPostalCodes(Iterable<PostalCodeRecord> records);
+
+	/**
+	 * Function to add or update many hubs at once, the derived
+	 * indexes are built once after the last record
+	 * @param records
+	 * @return number of hubs added or updated
+	 */
+	int addDistributionHubs(Iterable<HubRecord> records);
+
+	/**
+	 * Function to set the hub as damaged
+	 * @param hubIdentifier
+	 * @param repairEstimate
+	 */
+	void hubDamage(String hubIdentifier, float repairEstimate);
+
+	/**
+	 * Function to set the hub as damaged with given hours to repair
+	 * @param hubIdentifier
+	 * @param repairEstimate
+	 * @return UPDATED, else the reason it is invalid
+	 */
+	ServiceStatus tryHubDamage(String hubIdentifier, float repairEstimate);
+
+	/**
+	 * Function to repair a particular hub, with given employee
+	 * @param hubIdentifier
+	 * @param employeeId
+	 * @param repairTime
+	 * @param inService
+	 */
+	void hubRepair(String hubIdentifier, String employeeId, float repairTime, boolean inService);
+
+	/**
+	 * Function to report a repair of a hub by given employee
+	 * @param hubIdentifier
+	 * @param employeeId
+	 * @param repairTime
+	 * @param inService
+	 * @return UPDATED, else the reason it is invalid
+	 */
+	ServiceStatus tryHubRepair(String hubIdentifier, String employeeId,
+			float repairTime, boolean inService);
+
+	/**
+	 * Function to add new hub impact value to list
+	 * @param id
+	 * @param impactValue
+	 */
+	void addHubImpact(String id, int impactValue);
+
+	/**
+	 * Function to add given hub to damaged hub list
+	 * @param id
+	 * @param numRepairs
+	 */
+	void addDamagedHub(String id, int numRepairs);
+
+	/**
+	 * Function to attach the write ahead log, after which every
+	 * change is appended to it
+	 * @param mutationLog
+	 */
+	void setMutationLog(MutationLog mutationLog);
+
+	/**
+	 * Function to set the sink of the messages, or null to report nothing
+	 * @param serviceLog
+	 */
+	void setServiceLog(ServiceLog serviceLog);
+
+	/**
+	 * Function to return the sink of the messages
+	 * @return service log, null if none
+	 */
+	ServiceLog getServiceLog();
+
+	/**
+	 * Function to fold the attached log into a new snapshot
+	 */
+	void compactLog();
+
+	/**
+	 * Function to determine the people out of service for all hubs
+	 * @return integer
+	 */
+	int peopleOutOfService();
+
+	/**
+	 * Function to determine the people out of service for given hub
+	 * @param hub
+	 * @return integer
+	 */
+	int peopleOutOfService(DistributionHub hub);
+
+	/**
+	 * Function to return the hub object for given hub id
+	 * @param hubId
+	 * @return hub object
+	 */
+	DistributionHub getHub(String hubId);
+
+	/**
+	 * Function to return the damaged hubs with most people out of service
+	 * @param limit
+	 * @return list of hubs
+	 */
+	List<HubImpact> fixOrder(int limit);
+
+	/**
+	 * Function to determine the most damaged postal codes
+	 * @param limit
+	 * @return list of codes
+	 */
+	List<DamagedPostalCodes> mostDamagedPostalCodes(int limit);
+
+	/**
+	 * Function to determine the rate of restoration for given
+	 * percentage of increment with a single crew
+	 * @param increment
+	 * @return list of hours
+	 */
+	List<Integer> rateOfServiceRestoration(float increment);
+
+	/**
+	 * Function to determine the rate of restoration for given
+	 * percentage of increment with given number of crews
+	 * @param increment
+	 * @param crews
+	 * @param policy order in which hubs are given to the crews
+	 * @return list of whole hours
+	 */
+	List<Integer> rateOfServiceRestoration(float increment, int crews,
+			RestorationSimulator.DispatchPolicy policy);
+
+	/**
+	 * Function to create a restoration simulator over the hubs damaged now
+	 * @return simulator
+	 */
+	RestorationSimulator restorationSimulator();
+
+	/**
+	 * Function to create a repair scheduler over the hubs damaged now
+	 * @return scheduler
+	 */
+	RepairScheduler repairScheduler();
+
+	/**
+	 * Function to return the crews known from the repairs reported so far
+	 * @return list of crews
+	 */
+	List<Crew> getCrews();
+
+	/**
+	 * Function to assign the damaged hubs to given crews
+	 * @param crews
+	 * @param travelSpeed distance covered by a crew in an hour
+	 * @param timeLimitMillis time to spend improving the schedule
+	 * @return work list of each crew
+	 */
+	RepairSchedule scheduleRepairs(List<Crew> crews, float travelSpeed, long timeLimitMillis);
+
+	/**
+	 * Function to schedule the repair plan for given start hub
+	 * @param startHub
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return path as list of hubs
+	 */
+	List<HubImpact> repairPlan(String startHub, int maxDistance, float maxTime);
+
+	/**
+	 * Function to schedule the repair plans of many crews at once
+	 * @param startHubs
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return plan of each start hub with its timing
+	 */
+	List<RepairPlanResult> repairPlans(List<String> startHubs, int maxDistance, float maxTime);
+
+	/**
+	 * Function to determine the list of under served postal codes
+	 * by population
+	 * @param limit
+	 * @return postal codes list
+	 */
+	List<String> underservedPostalByPopulation(int limit);
+
+	/**
+	 * Function to determine the list of under served postal codes
+	 * by area
+	 * @param limit
+	 * @return postal codes list
+	 */
+	List<String> underservedPostalByArea(int limit);
+
+	/**
+	 * Function to copy the existing status of hubs and postal codes
+	 * into a compact struct-of-arrays store
+	 * @return store with all hubs and postal codes
+	 */
+	CompactModelStore toCompactModelStore();
+
+	/**
+	 * Function to save the existing status to a binary snapshot file
+	 * @param fileName
+	 * @return true, if saved successfully, else false
+	 */
+	boolean saveSnapshot(String fileName);
+
+	/**
+	 * Function to load the hubs and postal codes from a binary snapshot file
+	 * @param fileName
+	 * @return true, if loaded successfully, else false
+	 */
+	boolean loadSnapshot(String fileName);
+
+	/**
+	 * Function to save the existing status of hubs
+	 * and postal codes to hubs.txt and postal_codes.txt
+	 */
+	void saveToFile();
+}
@@ -0,0 +1,634 @@
+package org.example;
+/**
+ * Java class to represent an immutable version of the power service
+ * status, which answers the same queries as {@link PowerService}.
+ *
+ * A snapshot never changes once it is published, so any number of
+ * threads can query it without locks and a query which looks at many
+ * hubs, such as repairPlan, sees them all at the same version even while
+ * a writer applies further changes. The writer publishes the next version
+ * from the previous one by replacing only the changed hubs and postal
+ * codes in persistent trees, hence both versions share all other entries
+ * and publishing costs O(log n) per change instead of a copy of the model.
+ *
+ * Hubs returned by a snapshot are copies owned by it and should only be
+ * read by the caller.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class PowerServiceSnapshot {
+	//order of the hub ids and postal codes in the trees, by hash code
+	//as it is cheaper to compare, ties are broken by the id itself
+	private static final Comparator<String> ID_ORDER = (a, b) -> (a.hashCode() != b.hashCode())
+			? Integer.compare(a.hashCode(), b.hashCode()) : a.compareTo(b);
+	//order of the fix order, most people out of service first,
+	//ties are broken by hub id
+	private static final Comparator<HubState> FIX_ORDER =
+			Comparator.comparingInt(HubState::getOutOfService).reversed()
+			.thenComparing(HubState::getId);
+
+	//version of the status, increased by one on every published change
+	private final long version;
+	//number of people out of service over all damaged hubs
+	private final int totalOutOfService;
+	//hub id to its state, and to the hub and impact copies in the state
+	private final PersistentSortedMap<String, HubState> hubStates;
+	private final PersistentSortedMap<String, DistributionHub> hubs;
+	private final PersistentSortedMap<String, HubImpact> hubImpacts;
+	//postal code to its state
+	private final PersistentSortedMap<String, PostalState> postalStates;
+	//cell key to the hubs in the cell, as read by the spatial grid
+	private final PersistentSortedMap<Long, List<DistributionHub>> cells;
+	//hubs with an impact and people out of service, in fix order
+	private final PersistentSortedMap<HubState, HubState> fixOrder;
+	//damaged postal codes with repairs, most repairs first
+	private final PersistentSortedMap<DamagedPostalCodes, DamagedPostalCodes> damageOrder;
+	//postal codes ordered by fraction served, least served first
+	private final PersistentSortedMap<PostalCodeServe, PostalCodeServe> servedByPopulation;
+	private final PersistentSortedMap<PostalCodeServe, PostalCodeServe> servedByArea;
+	//spatial grid over the cells
+	private final HubGrid hubGrid;
+	//sink of the messages for invalid input, null for none
+	private final ServiceLog serviceLog;
+
+	//constructor
+	private PowerServiceSnapshot(long version, int totalOutOfService, ServiceLog serviceLog,
+			PersistentSortedMap<String, HubState> hubStates,
+			PersistentSortedMap<String, DistributionHub> hubs,
+			PersistentSortedMap<String, HubImpact> hubImpacts,
+			PersistentSortedMap<String, PostalState> postalStates,
+			PersistentSortedMap<Long, List<DistributionHub>> cells,
+			PersistentSortedMap<HubState, HubState> fixOrder,
+			PersistentSortedMap<DamagedPostalCodes, DamagedPostalCodes> damageOrder,
+			PersistentSortedMap<PostalCodeServe, PostalCodeServe> servedByPopulation,
+			PersistentSortedMap<PostalCodeServe, PostalCodeServe> servedByArea) {
+		this.version = version;
+		this.totalOutOfService = totalOutOfService;
+		this.serviceLog = serviceLog;
+		this.hubStates = hubStates;
+		this.hubs = hubs;
+		this.hubImpacts = hubImpacts;
+		this.postalStates = postalStates;
+		this.cells = cells;
+		this.fixOrder = fixOrder;
+		this.damageOrder = damageOrder;
+		this.servedByPopulation = servedByPopulation;
+		this.servedByArea = servedByArea;
+		this.hubGrid = new HubGrid(HubGrid.DEFAULT_CELL_SIZE, cells.asMap());
+	}
+
+	/**
+	 * Function to build a snapshot from the state of every hub and
+	 * postal code. The served fractions, which are immutable and kept
+	 * sorted by the live service, are taken as they are, the other
+	 * entries are sorted in parallel, and each tree is then built in
+	 * linear time.
+	 * @param version
+	 * @param totalOutOfService
+	 * @param hubList state of every hub
+	 * @param postalList state of every postal code
+	 * @param servedByPopulation fractions served per population, in serve order
+	 * @param servedByArea fractions served per area, in serve order
+	 * @param serviceLog sink of the messages for invalid input, or null
+	 * @return snapshot
+	 */
+	static PowerServiceSnapshot build(long version, int totalOutOfService,
+			Collection<HubState> hubList, Collection<PostalState> postalList,
+			PostalCodeServe[] servedByPopulation,
+			PostalCodeServe[] servedByArea, ServiceLog serviceLog) {
+		HubState[] states = hubList.toArray(new HubState[0]);
+		//cells keep the hubs in the given order, as the live grid does,
+		//so that ties in a repair plan are broken in the same way
+		Map<Long, List<DistributionHub>> cellMap = new HashMap<Long, List<DistributionHub>>();
+		HubGrid grid = new HubGrid();
+		for (HubState state : states) {
+			cellMap.computeIfAbsent(grid.getCellKey(state.getHub().getLocation()),
+					key -> new ArrayList<DistributionHub>()).add(state.getHub());
+		}
+		states = sortById(states, HubState::getId);
+		String[] hubIds = new String[states.length];
+		DistributionHub[] hubCopies = new DistributionHub[states.length];
+		List<String> impactIds = new ArrayList<String>();
+		List<HubImpact> impacts = new ArrayList<HubImpact>();
+		List<HubState> damaged = new ArrayList<HubState>();
+		for (int i = 0; i < states.length; i++) {
+			HubState state = states[i];
+			hubIds[i] = state.getId();
+			hubCopies[i] = state.getHub();
+			if (state.getImpact() != null) {
+				impactIds.add(state.getId());
+				impacts.add(state.getImpact());
+			}
+			if (state.isInFixOrder()) {
+				damaged.add(state);
+			}
+		}
+
+		PostalState[] codes = sortById(postalList.toArray(new PostalState[0]), PostalState::getId);
+		String[] codeIds = new String[codes.length];
+		List<DamagedPostalCodes> repaired = new ArrayList<DamagedPostalCodes>();
+		for (int i = 0; i < codes.length; i++) {
+			codeIds[i] = codes[i].getId();
+			if (codes[i].isDamaged()) {
+				repaired.add(codes[i].getDamaged());
+			}
+		}
+
+		Long[] cellKeys = cellMap.keySet().toArray(new Long[0]);
+		Arrays.sort(cellKeys);
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		List<DistributionHub>[] cellHubs = new List[cellKeys.length];
+		for (int i = 0; i < cellKeys.length; i++) {
+			cellHubs[i] = Collections.unmodifiableList(cellMap.get(cellKeys[i]));
+		}
+
+		return new PowerServiceSnapshot(version, totalOutOfService, serviceLog,
+				PersistentSortedMap.fromSorted(ID_ORDER, hubIds, states),
+				PersistentSortedMap.fromSorted(ID_ORDER, hubIds, hubCopies),
+				PersistentSortedMap.fromSorted(ID_ORDER,
+						impactIds.toArray(new String[0]), impacts.toArray(new HubImpact[0])),
+				PersistentSortedMap.fromSorted(ID_ORDER, codeIds, codes),
+				PersistentSortedMap.fromSorted(Comparator.<Long>naturalOrder(), cellKeys, cellHubs),
+				sortedSet(FIX_ORDER, damaged.toArray(new HubState[0])),
+				sortedSet(PowerService.DAMAGE_ORDER, repaired.toArray(new DamagedPostalCodes[0])),
+				PersistentSortedMap.fromSorted(PowerService.SERVE_ORDER, servedByPopulation,
+						servedByPopulation),
+				PersistentSortedMap.fromSorted(PowerService.SERVE_ORDER, servedByArea, servedByArea));
+	}
+
+	/**
+	 * Helper function to sort the states in ID_ORDER. The hash code and
+	 * position of each state are packed into a long, which are sorted
+	 * in parallel as primitives, and only states with the same hash code
+	 * are then compared by id.
+	 * @param states
+	 * @param id function to return the id of a state
+	 * @return sorted states
+	 */
+	private static <S> S[] sortById(S[] states, Function<S, String> id) {
+		long[] keys = new long[states.length];
+		for (int i = 0; i < states.length; i++) {
+			keys[i] = ((long) id.apply(states[i]).hashCode() << 32) | i;
+		}
+		Arrays.parallelSort(keys);
+		S[] sorted = Arrays.copyOf(states, states.length);
+		for (int i = 0; i < keys.length; i++) {
+			sorted[i] = states[(int) keys[i]];
+		}
+		int start = 0;
+		for (int i = 1; i <= keys.length; i++) {
+			if (i == keys.length || (keys[i] >> 32) != (keys[start] >> 32)) {
+				if (i - start > 1) {
+					Arrays.sort(sorted, start, i, Comparator.comparing(id));
+				}
+				start = i;
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Helper function to build a tree holding each element as key
+	 * and value, from distinct elements in any order
+	 * @param comparator
+	 * @param elements
+	 * @return tree
+	 */
+	private static <E> PersistentSortedMap<E, E> sortedSet(Comparator<? super E> comparator,
+			E[] elements) {
+		Arrays.parallelSort(elements, comparator);
+		return PersistentSortedMap.fromSorted(comparator, elements, elements);
+	}
+
+	/**
+	 * Function to create the next version with the new state of given
+	 * hubs and postal codes, this version is not changed
+	 * @param totalOutOfService
+	 * @param changedHubs new state of the changed hubs
+	 * @param changedPostalCodes new state of the changed postal codes
+	 * @param serviceLog sink of the messages for invalid input, or null
+	 * @return next version
+	 */
+	PowerServiceSnapshot update(int totalOutOfService, Collection<HubState> changedHubs,
+			Collection<PostalState> changedPostalCodes, ServiceLog serviceLog) {
+		PersistentSortedMap<String, HubState> newStates = hubStates;
+		PersistentSortedMap<String, DistributionHub> newHubs = hubs;
+		PersistentSortedMap<String, HubImpact> newImpacts = hubImpacts;
+		PersistentSortedMap<Long, List<DistributionHub>> newCells = cells;
+		PersistentSortedMap<HubState, HubState> newFixOrder = fixOrder;
+		for (HubState state : changedHubs) {
+			HubState old = newStates.get(state.getId());
+			if (old != null && old.isInFixOrder()) {
+				newFixOrder = newFixOrder.minus(old);
+			}
+			newStates = newStates.plus(state.getId(), state);
+			newHubs = newHubs.plus(state.getId(), state.getHub());
+			newImpacts = (state.getImpact() == null) ? newImpacts.minus(state.getId())
+					: newImpacts.plus(state.getId(), state.getImpact());
+			if (state.isInFixOrder()) {
+				newFixOrder = newFixOrder.plus(state, state);
+			}
+			newCells = moveToCell(newCells, (old == null) ? null : old.getHub(), state.getHub());
+		}
+
+		PersistentSortedMap<String, PostalState> newPostalStates = postalStates;
+		PersistentSortedMap<DamagedPostalCodes, DamagedPostalCodes> newDamageOrder = damageOrder;
+		PersistentSortedMap<PostalCodeServe, PostalCodeServe> newByPopulation = servedByPopulation;
+		PersistentSortedMap<PostalCodeServe, PostalCodeServe> newByArea = servedByArea;
+		for (PostalState state : changedPostalCodes) {
+			PostalState old = newPostalStates.get(state.getId());
+			if (old != null) {
+				if (old.isDamaged()) {
+					newDamageOrder = newDamageOrder.minus(old.getDamaged());
+				}
+				if (old.getServedByPopulation() != null) {
+					newByPopulation = newByPopulation.minus(old.getServedByPopulation());
+				}
+				if (old.getServedByArea() != null) {
+					newByArea = newByArea.minus(old.getServedByArea());
+				}
+			}
+			newPostalStates = newPostalStates.plus(state.getId(), state);
+			if (state.isDamaged()) {
+				newDamageOrder = newDamageOrder.plus(state.getDamaged(), state.getDamaged());
+			}
+			if (state.getServedByPopulation() != null) {
+				newByPopulation = newByPopulation.plus(state.getServedByPopulation(),
+						state.getServedByPopulation());
+			}
+			if (state.getServedByArea() != null) {
+				newByArea = newByArea.plus(state.getServedByArea(), state.getServedByArea());
+			}
+		}
+
+		return new PowerServiceSnapshot(version + 1, totalOutOfService, serviceLog, newStates,
+				newHubs, newImpacts, newPostalStates, newCells, newFixOrder, newDamageOrder,
+				newByPopulation, newByArea);
+	}
+
+	/**
+	 * Function to return the same version reporting its messages
+	 * to given sink
+	 * @param serviceLog sink of the messages for invalid input, or null
+	 * @return snapshot of the same version
+	 */
+	PowerServiceSnapshot withServiceLog(ServiceLog serviceLog) {
+		return new PowerServiceSnapshot(version, totalOutOfService, serviceLog, hubStates, hubs,
+				hubImpacts, postalStates, cells, fixOrder, damageOrder, servedByPopulation,
+				servedByArea);
+	}
+
+	/**
+	 * Helper function to return the cells with the old copy of a hub
+	 * replaced by the new one. As in the live grid, a hub keeps its
+	 * position if it stays in the same cell, else it is moved to the
+	 * end of its new cell.
+	 * @param cells
+	 * @param oldHub old copy, null for a new hub
+	 * @param hub new copy
+	 * @return new cells
+	 */
+	private PersistentSortedMap<Long, List<DistributionHub>> moveToCell(
+			PersistentSortedMap<Long, List<DistributionHub>> cells,
+			DistributionHub oldHub, DistributionHub hub) {
+		Long key = hubGrid.getCellKey(hub.getLocation());
+		if (oldHub != null) {
+			Long oldKey = hubGrid.getCellKey(oldHub.getLocation());
+			List<DistributionHub> oldCell = cells.get(oldKey);
+			List<DistributionHub> newCell = new ArrayList<DistributionHub>(oldCell);
+			int position = newCell.indexOf(oldHub);
+			if (oldKey.equals(key)) {
+				newCell.set(position, hub);
+				return cells.plus(key, Collections.unmodifiableList(newCell));
+			}
+			newCell.remove(position);
+			cells = newCell.isEmpty() ? cells.minus(oldKey)
+					: cells.plus(oldKey, Collections.unmodifiableList(newCell));
+		}
+		List<DistributionHub> cell = cells.get(key);
+		List<DistributionHub> newCell = new ArrayList<DistributionHub>(
+				(cell == null) ? 1 : cell.size() + 1);
+		if (cell != null) {
+			newCell.addAll(cell);
+		}
+		newCell.add(hub);
+		return cells.plus(key, Collections.unmodifiableList(newCell));
+	}
+
+	/**
+	 * Function to return the version of this snapshot
+	 * @return version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Function to determine the people out of service for all hubs
+	 * @return integer
+	 */
+	public int peopleOutOfService() {
+		return totalOutOfService;
+	}
+
+	/**
+	 * Function to determine the people out of service for given hub,
+	 * as of this snapshot
+	 * @param hub
+	 * @return integer
+	 */
+	public int peopleOutOfService(DistributionHub hub) {
+		if (hub == null) {
+			PowerService.log(serviceLog, "Hub id does not exists");
+			return 0;
+		}
+		HubState state = hubStates.get(hub.getId());
+		return (state == null) ? 0 : state.getOutOfService();
+	}
+
+	/**
+	 * Function to return the hub object for given hub id
+	 * @param hubId
+	 * @return hub object
+	 */
+	public DistributionHub getHub(String hubId) {
+		return (hubId == null) ? null : hubs.get(hubId);
+	}
+
+	/**
+	 * Function to return the damaged hubs with most people out of service
+	 * @param limit
+	 * @return list of hubs
+	 */
+	public List<HubImpact> fixOrder(int limit) {
+		List<HubImpact> result = new ArrayList<>();
+		if (limit <= 0) {
+			PowerService.log(serviceLog, "Limit should be positive");
+			return result;
+		}
+		for (HubState state : fixOrder.values()) {
+			if (result.size() >= limit)
+				break;
+			result.add(state.getImpact());
+		}
+		return result;
+	}
+
+	/**
+	 * Function to determine the most damaged postal codes
+	 * @param limit
+	 * @return list of codes
+	 */
+	public List<DamagedPostalCodes> mostDamagedPostalCodes(int limit) {
+		List<DamagedPostalCodes> mostDamaged = new ArrayList<DamagedPostalCodes>();
+		if (limit <= 0) {
+			PowerService.log(serviceLog, "Limit should be positive");
+			return mostDamaged;
+		}
+
+		if (damageOrder.size() == 0) {
+			PowerService.log(serviceLog, "There are no damaged postal codes");
+			return mostDamaged;
+		}
+
+		for (DamagedPostalCodes code : damageOrder.values()) {
+			if (mostDamaged.size() >= limit)
+				break;
+			mostDamaged.add(code);
+		}
+		return mostDamaged;
+	}
+
+	/**
+	 * Function to create a restoration simulator over the hubs
+	 * damaged in this snapshot
+	 * @return simulator
+	 */
+	public RestorationSimulator restorationSimulator() {
+		RestorationSimulator simulator = new RestorationSimulator(serviceLog);
+		for (HubState state : hubStates.values()) {
+			if (state.getHub().getHoursToRepair() > 0) {
+				simulator.addDamagedHub(state.getId(), state.getOutOfService(),
+						state.getHub().getHoursToRepair(),
+						(state.getImpact() == null) ? 0 : state.getImpact().getImpactValue());
+			}
+		}
+		return simulator;
+	}
+
+	/**
+	 * Function to create a repair scheduler over the hubs damaged
+	 * in this snapshot
+	 * @return scheduler
+	 */
+	public RepairScheduler repairScheduler() {
+		RepairScheduler scheduler = new RepairScheduler(serviceLog);
+		for (HubState state : hubStates.values()) {
+			DistributionHub hub = state.getHub();
+			if (hub.getHoursToRepair() > 0) {
+				scheduler.addDamagedHub(hub.getId(), hub.getLocation(), state.getOutOfService(),
+						hub.getHoursToRepair());
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Function to schedule the repair plan for given start hub,
+	 * over the hubs of this snapshot
+	 * @param startHub
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return path as list of hubs
+	 */
+	public List<HubImpact> repairPlan(String startHub, int maxDistance, float maxTime) {
+		return PowerService.planRepair(startHub, maxDistance, maxTime, hubs.asMap(),
+				hubImpacts.asMap(), hubGrid, serviceLog);
+	}
+
+	/**
+	 * Function to schedule the repair plans of many crews at once,
+	 * over the hubs of this snapshot
+	 * @param startHubs
+	 * @param maxDistance
+	 * @param maxTime
+	 * @return plan of each start hub with its timing
+	 */
+	public List<RepairPlanResult> repairPlans(List<String> startHubs, int maxDistance,
+			float maxTime) {
+		return RepairPlanBatch.plan(startHubs, maxDistance, maxTime, hubs.asMap(),
+				hubImpacts.asMap(), hubGrid, serviceLog);
+	}
+
+	/**
+	 * Function to determine the list of under served postal codes
+	 * by population
+	 * @param limit
+	 * @return postal codes list
+	 */
+	public List<String> underservedPostalByPopulation(int limit) {
+		return getUnderserved(servedByPopulation, limit);
+	}
+
+	/**
+	 * Function to determine the list of under served postal codes
+	 * by area
+	 * @param limit
+	 * @return postal codes list
+	 */
+	public List<String> underservedPostalByArea(int limit) {
+		return getUnderserved(servedByArea, limit);
+	}
+
+	/**
+	 * Helper function to return the least served postal codes
+	 * @param served
+	 * @param limit
+	 * @return postal codes list
+	 */
+	private List<String> getUnderserved(
+			PersistentSortedMap<PostalCodeServe, PostalCodeServe> served, int limit) {
+		List<String> underServed = new ArrayList<String>();
+		if (limit <= 0) {
+			PowerService.log(serviceLog, "Limit should be positive");
+			return underServed;
+		}
+		for (PostalCodeServe s : served.values()) {
+			if (underServed.size() >= limit)
+				break;
+			underServed.add(s.getId());
+		}
+		return underServed;
+	}
+
+	/**
+	 * Function to copy the hubs and postal codes of this snapshot
+	 * into a compact struct-of-arrays store
+	 * @return store with all hubs and postal codes
+	 */
+	public CompactModelStore toCompactModelStore() {
+		CompactModelStore store = new CompactModelStore(postalStates.size(), hubStates.size());
+		for (PostalState state : postalStates.values()) {
+			PostalCode pcode = state.getPostalCode();
+			if (pcode == null) {
+				continue;
+			}
+			store.addPostalCode(pcode.getId(), pcode.getNumPeople(), (int) pcode.getAreaCovered());
+			if (state.getDamaged() != null) {
+				store.setRepairCount(pcode.getId(), state.getDamaged().getNumberOfRepairs());
+			}
+		}
+		List<String> codes = new ArrayList<String>();
+		for (HubState state : hubStates.values()) {
+			DistributionHub dhub = state.getHub();
+			codes.clear();
+			for (PostalCode pcode : dhub.getPostalCodesServed()) {
+				codes.add(pcode.getId());
+			}
+			int index = store.addDistributionHub(dhub.getId(), dhub.getLocation().getX(),
+					dhub.getLocation().getY(), codes);
+			store.setHoursToRepair(index, (float) dhub.getHoursToRepair());
+			if (state.getImpact() != null) {
+				store.setImpactValue(index, state.getImpact().getImpactValue());
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Java class to represent the status of a hub in a snapshot
+	 */
+	static final class HubState {
+		//copy of the hub
+		private final DistributionHub hub;
+		//population of the postal codes served by the hub
+		private final int population;
+		//copy of the impact, null if hub has none
+		private final HubImpact impact;
+
+		//constructor
+		HubState(DistributionHub hub, int population, HubImpact impact) {
+			this.hub = hub;
+			this.population = population;
+			this.impact = impact;
+		}
+
+		String getId() {
+			return hub.getId();
+		}
+
+		DistributionHub getHub() {
+			return hub;
+		}
+
+		HubImpact getImpact() {
+			return impact;
+		}
+
+		int getOutOfService() {
+			return (hub.getHoursToRepair() > 0) ? population : 0;
+		}
+
+		//hubs with an impact and people out of service are in fix order
+		boolean isInFixOrder() {
+			return impact != null && getOutOfService() > 0;
+		}
+	}
+
+	/**
+	 * Java class to represent the status of a postal code in a snapshot
+	 */
+	static final class PostalState {
+		private final String id;
+		//copy of the postal code, null if only its repairs are known
+		private final PostalCode postalCode;
+		//copy of the repairs, null if none are known
+		private final DamagedPostalCodes damaged;
+		//fractions served, null if no hub serves the postal code
+		private final PostalCodeServe servedByPopulation;
+		private final PostalCodeServe servedByArea;
+
+		//constructor
+		PostalState(String id, PostalCode postalCode, DamagedPostalCodes damaged,
+				PostalCodeServe servedByPopulation, PostalCodeServe servedByArea) {
+			this.id = id;
+			this.postalCode = postalCode;
+			this.damaged = damaged;
+			this.servedByPopulation = servedByPopulation;
+			this.servedByArea = servedByArea;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		PostalCode getPostalCode() {
+			return postalCode;
+		}
+
+		DamagedPostalCodes getDamaged() {
+			return damaged;
+		}
+
+		//only postal codes with repairs are in damage order
+		boolean isDamaged() {
+			return damaged != null && damaged.getNumberOfRepairs() > 0;
+		}
+
+		PostalCodeServe getServedByPopulation() {
+			return servedByPopulation;
+		}
+
+		PostalCodeServe getServedByArea() {
+			return servedByArea;
+		}
+	}
+}
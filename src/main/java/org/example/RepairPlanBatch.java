@@ -0,0 +1,213 @@
+package org.example;
+/**
+ * Java class to plan the repairs of many crews at once, one plan for
+ * each start hub. The plans only read the hubs, so they are made in
+ * parallel on the common fork-join pool, split in halves till a task
+ * holds a single start hub.
+ *
+ * The work which does not depend on the start hub is shared by the
+ * whole batch: every start hub is planned once however often it is
+ * given, and each cell of the spatial grid is filtered to the hubs
+ * repairable within the maximum time only once, by the first plan which
+ * reads it. The filtered cells keep the order of the hubs, so each plan
+ * is the same as the one made by repairPlan.
+ */
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+final class RepairPlanBatch {
+	//attributes shared by all plans of the batch
+	private final int maxDistance;
+	private final float maxTime;
+	private final Map<String, DistributionHub> distributionHubs;
+	private final Map<String, HubImpact> hubImpacts;
+	private final HubGrid filteredGrid;
+	private final ServiceLog serviceLog;
+
+	//constructor
+	private RepairPlanBatch(int maxDistance, float maxTime,
+			Map<String, DistributionHub> distributionHubs, Map<String, HubImpact> hubImpacts,
+			HubGrid hubGrid, ServiceLog serviceLog) {
+		this.maxDistance = maxDistance;
+		this.maxTime = maxTime;
+		this.distributionHubs = distributionHubs;
+		this.hubImpacts = hubImpacts;
+		this.filteredGrid = new HubGrid(hubGrid.getCellSize(),
+				new FilteredCells(hubGrid.getCells(), maxTime));
+		this.serviceLog = serviceLog;
+	}
+
+	/**
+	 * Function to schedule the repair plan of every start hub over
+	 * given hubs, impacts and spatial grid, which must not change
+	 * till the plans are made
+	 * @param startHubs
+	 * @param maxDistance
+	 * @param maxTime
+	 * @param distributionHubs
+	 * @param hubImpacts
+	 * @param hubGrid
+	 * @param serviceLog sink of the messages for invalid input, or null
+	 * @return plan of each start hub, in the order of the start hubs
+	 */
+	static List<RepairPlanResult> plan(List<String> startHubs, int maxDistance, float maxTime,
+			Map<String, DistributionHub> distributionHubs, Map<String, HubImpact> hubImpacts,
+			HubGrid hubGrid, ServiceLog serviceLog) {
+		List<RepairPlanResult> results = new ArrayList<RepairPlanResult>();
+		if (startHubs == null) {
+			PowerService.log(serviceLog, "Start hubs cannot be null");
+			return results;
+		}
+
+		//plan each start hub once
+		Map<String, RepairPlanResult> plans = new LinkedHashMap<String, RepairPlanResult>();
+		for (String startHub : startHubs) {
+			plans.put(startHub, null);
+		}
+		String[] distinct = plans.keySet().toArray(new String[0]);
+		RepairPlanResult[] planned = new RepairPlanResult[distinct.length];
+		RepairPlanBatch batch = new RepairPlanBatch(maxDistance, maxTime, distributionHubs,
+				hubImpacts, hubGrid, serviceLog);
+		ForkJoinPool.commonPool().invoke(batch.new PlanTask(distinct, planned, 0, distinct.length));
+
+		for (int i = 0; i < distinct.length; i++) {
+			plans.put(distinct[i], planned[i]);
+		}
+		for (String startHub : startHubs) {
+			results.add(plans.get(startHub));
+		}
+		return results;
+	}
+
+	/**
+	 * Function to schedule the repair plan of one start hub and
+	 * measure the time taken
+	 * @param startHub
+	 * @return plan with its timing
+	 */
+	private RepairPlanResult plan(String startHub) {
+		long start = System.nanoTime();
+		List<HubImpact> plan = PowerService.planRepair(startHub, maxDistance, maxTime,
+				distributionHubs, hubImpacts, filteredGrid, serviceLog);
+		return new RepairPlanResult(startHub, plan, System.nanoTime() - start);
+	}
+
+	/**
+	 * Java class to represent the task of planning a range of the
+	 * start hubs, split in halves till it holds a single start hub
+	 */
+	private final class PlanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		//tasks are never serialized, the arrays are shared with the batch
+		private final transient String[] startHubs;
+		private final transient RepairPlanResult[] results;
+		private final int from;
+		private final int to;
+
+		PlanTask(String[] startHubs, RepairPlanResult[] results, int from, int to) {
+			this.startHubs = startHubs;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (from < to) {
+					results[from] = plan(startHubs[from]);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new PlanTask(startHubs, results, from, mid),
+					new PlanTask(startHubs, results, mid, to));
+		}
+	}
+
+	/**
+	 * Java class to view the cells of a grid with only the hubs which
+	 * are repairable within the maximum time, each cell is filtered
+	 * once when it is first read and then shared by all threads
+	 */
+	private static final class FilteredCells extends AbstractMap<Long, List<DistributionHub>> {
+		private final Map<Long, List<DistributionHub>> cells;
+		private final float maxTime;
+		//cells filtered so far
+		private final Map<Long, List<DistributionHub>> filtered =
+				new ConcurrentHashMap<Long, List<DistributionHub>>();
+
+		FilteredCells(Map<Long, List<DistributionHub>> cells, float maxTime) {
+			this.cells = cells;
+			this.maxTime = maxTime;
+		}
+
+		@Override
+		public List<DistributionHub> get(Object key) {
+			List<DistributionHub> cell = cells.get(key);
+			return (cell == null) ? null : filter((Long) key, cell);
+		}
+
+		//the grid decides how to scan by the number of cells
+		@Override
+		public int size() {
+			return cells.size();
+		}
+
+		@Override
+		public Set<Map.Entry<Long, List<DistributionHub>>> entrySet() {
+			return new AbstractSet<Map.Entry<Long, List<DistributionHub>>>() {
+				@Override
+				public Iterator<Map.Entry<Long, List<DistributionHub>>> iterator() {
+					Iterator<Map.Entry<Long, List<DistributionHub>>> entries = cells.entrySet().iterator();
+					return new Iterator<Map.Entry<Long, List<DistributionHub>>>() {
+						@Override
+						public boolean hasNext() {
+							return entries.hasNext();
+						}
+
+						@Override
+						public Map.Entry<Long, List<DistributionHub>> next() {
+							Map.Entry<Long, List<DistributionHub>> entry = entries.next();
+							return new AbstractMap.SimpleImmutableEntry<Long, List<DistributionHub>>(
+									entry.getKey(), filter(entry.getKey(), entry.getValue()));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return cells.size();
+				}
+			};
+		}
+
+		/**
+		 * Helper function to return the hubs of the cell repairable
+		 * within the maximum time, in the order of the cell
+		 * @param key
+		 * @param cell
+		 * @return filtered hubs
+		 */
+		private List<DistributionHub> filter(Long key, List<DistributionHub> cell) {
+			return filtered.computeIfAbsent(key, k -> {
+				List<DistributionHub> hubs = new ArrayList<DistributionHub>(cell.size());
+				for (DistributionHub hub : cell) {
+					if (hub.getHoursToRepair() <= maxTime) {
+						hubs.add(hub);
+					}
+				}
+				return hubs;
+			});
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package org.example;
+/**
+ * Java class to represent the repair plan of one start hub in a
+ * batch of plans, together with the time taken to plan it.
+ */
+import java.util.List;
+
+public class RepairPlanResult {
+	//attributes
+	private String startHub;
+	private List<HubImpact> plan;
+	private long elapsedNanos;
+
+	//constructor
+	public RepairPlanResult(String startHub, List<HubImpact> plan, long elapsedNanos) {
+		this.startHub = startHub;
+		this.plan = plan;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	//getter functions for attributes
+	public String getStartHub() {
+		return startHub;
+	}
+
+	public List<HubImpact> getPlan() {
+		return plan;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getElapsedMillis() {
+		return elapsedNanos / 1e6;
+	}
+}
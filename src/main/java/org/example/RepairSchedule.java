@@ -0,0 +1,51 @@
+package org.example;
+/**
+ * Java class to represent the work lists of the crews, i.e. the
+ * damaged hubs each crew repairs in order, and the total of people
+ * times hours they stay without power under this schedule.
+ */
+import java.util.List;
+import java.util.Map;
+
+public class RepairSchedule {
+	//attributes
+	private Map<String, List<String>> workLists;
+	private double populationHours;
+	private double initialPopulationHours;
+	private long movesTried;
+	private int failedSearches;
+
+	//constructor
+	public RepairSchedule(Map<String, List<String>> workLists, double populationHours,
+			double initialPopulationHours, long movesTried, int failedSearches) {
+		this.workLists = workLists;
+		this.populationHours = populationHours;
+		this.initialPopulationHours = initialPopulationHours;
+		this.movesTried = movesTried;
+		this.failedSearches = failedSearches;
+	}
+
+	//getter functions for attributes
+	//crew id to the ids of the hubs it repairs, in order
+	public Map<String, List<String>> getWorkLists() {
+		return workLists;
+	}
+
+	public double getPopulationHours() {
+		return populationHours;
+	}
+
+	//population hours of the constructed schedule, before local search
+	public double getInitialPopulationHours() {
+		return initialPopulationHours;
+	}
+
+	public long getMovesTried() {
+		return movesTried;
+	}
+
+	//number of local searches which failed and did not add to the schedule
+	public int getFailedSearches() {
+		return failedSearches;
+	}
+}
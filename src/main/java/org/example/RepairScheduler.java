@@ -0,0 +1,431 @@
+package org.example;
+/**
+ * Java class to assign the damaged hubs to repair crews, so that the
+ * total of people times hours without power is as small as possible.
+ * Each crew starts at its location, travels to the hubs of its work list
+ * in order and repairs them one at a time, and a hub is back in service
+ * once its repair completes.
+ *
+ * A schedule is first constructed greedily: hubs with most people per
+ * hour of repair are taken first and each is appended to the crew which
+ * would complete it earliest. It is then improved by local search, which
+ * tries random moves (move a hub to another position or crew, swap two
+ * hubs, reverse part of a work list) and keeps those which lower the
+ * total. One search runs on each thread of the common fork-join pool,
+ * from a different random seed, till the deadline, and the best schedule
+ * found by any of them is returned.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class RepairScheduler {
+	//number of moves between two checks of the deadline
+	private static final int DEADLINE_CHECK = 256;
+
+	//damaged hubs, the hub at index i has its details at index i
+	private List<String> hubIds = new ArrayList<String>();
+	private List<Point> locations = new ArrayList<Point>();
+	private List<Integer> populations = new ArrayList<Integer>();
+	private List<Double> hoursToRepair = new ArrayList<Double>();
+	//sink of the messages for invalid input, null for none
+	private ServiceLog serviceLog;
+
+	//constructor
+	public RepairScheduler(ServiceLog serviceLog) {
+		this.serviceLog = serviceLog;
+	}
+
+	/**
+	 * Function to add a damaged hub to be scheduled
+	 * @param hubId
+	 * @param location
+	 * @param population people out of service till hub is repaired
+	 * @param hours hours to repair the hub
+	 */
+	public void addDamagedHub(String hubId, Point location, int population, double hours) {
+		hubIds.add(hubId);
+		locations.add(location);
+		populations.add(population);
+		hoursToRepair.add(hours);
+	}
+
+	/**
+	 * Function to return the number of damaged hubs
+	 * @return size as integer
+	 */
+	public int size() {
+		return hubIds.size();
+	}
+
+	/**
+	 * Function to schedule the damaged hubs over given crews, the best
+	 * schedule found is returned once the time limit is reached
+	 * @param crews
+	 * @param travelSpeed distance covered by a crew in an hour
+	 * @param timeLimitMillis time to spend on local search
+	 * @return schedule
+	 */
+	public RepairSchedule schedule(List<Crew> crews, float travelSpeed, long timeLimitMillis) {
+		if (crews == null || crews.isEmpty()) {
+			PowerService.log(serviceLog, "Crews cannot be null or empty");
+			return new RepairSchedule(new LinkedHashMap<String, List<String>>(), 0, 0, 0, 0);
+		}
+		if (travelSpeed <= 0) {
+			PowerService.log(serviceLog, "Travel speed should be positive");
+			return new RepairSchedule(new LinkedHashMap<String, List<String>>(), 0, 0, 0, 0);
+		}
+		long deadline = System.nanoTime() + Math.max(0, timeLimitMillis) * 1000000;
+
+		Problem problem = new Problem(crews, travelSpeed);
+		Solution initial = problem.construct();
+		double initialCost = initial.cost;
+		Solution best = initial;
+		long moves = 0;
+		int failed = 0;
+
+		if (hubIds.size() > 1 && timeLimitMillis > 0) {
+			int searches = ForkJoinPool.commonPool().getParallelism();
+			List<Callable<Search>> tasks = new ArrayList<Callable<Search>>(searches);
+			for (int i = 0; i < searches; i++) {
+				Search search = new Search(problem, initial.copy(), new Random(i), deadline);
+				tasks.add(() -> {
+					search.run();
+					return search;
+				});
+			}
+			for (Future<Search> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				try {
+					Search search = future.get();
+					moves += search.moves;
+					if (search.best.cost < best.cost) {
+						best = search.best;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failed++;
+				} catch (ExecutionException e) {
+					PowerService.log(serviceLog, "Repair search failed: " + e.getCause());
+					failed++;
+				}
+			}
+		}
+		return problem.toSchedule(best, initialCost, moves, failed);
+	}
+
+	/**
+	 * Java class to hold the crews and hubs of a scheduling problem
+	 * as arrays, which are only read by the searches
+	 */
+	private final class Problem {
+		private final String[] crewIds;
+		private final double[] crewX;
+		private final double[] crewY;
+		private final double[] hubX;
+		private final double[] hubY;
+		private final double[] weight;
+		private final double[] hours;
+		private final double speed;
+
+		Problem(List<Crew> crews, double speed) {
+			this.speed = speed;
+			crewIds = new String[crews.size()];
+			crewX = new double[crews.size()];
+			crewY = new double[crews.size()];
+			for (int c = 0; c < crewIds.length; c++) {
+				crewIds[c] = crews.get(c).getId();
+				crewX[c] = crews.get(c).getLocation().getX();
+				crewY[c] = crews.get(c).getLocation().getY();
+			}
+			int n = hubIds.size();
+			hubX = new double[n];
+			hubY = new double[n];
+			weight = new double[n];
+			hours = new double[n];
+			for (int i = 0; i < n; i++) {
+				hubX[i] = locations.get(i).getX();
+				hubY[i] = locations.get(i).getY();
+				weight[i] = populations.get(i);
+				hours[i] = hoursToRepair.get(i);
+			}
+		}
+
+		/**
+		 * Function to construct a schedule greedily, hubs with most
+		 * people per hour of repair are appended first, each to the
+		 * crew which completes it earliest
+		 * @return schedule
+		 */
+		Solution construct() {
+			int n = hours.length;
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(weight[b] * hours[a], weight[a] * hours[b]));
+
+			Solution solution = new Solution(crewIds.length, n);
+			double[] time = new double[crewIds.length];
+			for (int i : order) {
+				int bestCrew = 0;
+				double bestTime = Double.MAX_VALUE;
+				for (int c = 0; c < crewIds.length; c++) {
+					int last = solution.lengths[c] - 1;
+					double done = time[c] + travel(c, (last < 0) ? -1 : solution.routes[c][last], i)
+							+ hours[i];
+					if (done < bestTime) {
+						bestTime = done;
+						bestCrew = c;
+					}
+				}
+				solution.routes[bestCrew][solution.lengths[bestCrew]++] = i;
+				time[bestCrew] = bestTime;
+			}
+			for (int c = 0; c < crewIds.length; c++) {
+				solution.costs[c] = routeCost(c, solution.routes[c], solution.lengths[c]);
+				solution.cost += solution.costs[c];
+			}
+			return solution;
+		}
+
+		/**
+		 * Function to determine the hours of travel of a crew from
+		 * one hub, or its start if from is -1, to another hub
+		 * @param crew
+		 * @param from
+		 * @param to
+		 * @return hours
+		 */
+		double travel(int crew, int from, int to) {
+			double dx = hubX[to] - ((from < 0) ? crewX[crew] : hubX[from]);
+			double dy = hubY[to] - ((from < 0) ? crewY[crew] : hubY[from]);
+			return Math.sqrt(dx * dx + dy * dy) / speed;
+		}
+
+		/**
+		 * Function to determine the population hours of a work list
+		 * @param crew
+		 * @param route hubs of the work list
+		 * @param length number of hubs
+		 * @return population hours
+		 */
+		double routeCost(int crew, int[] route, int length) {
+			double time = 0;
+			double cost = 0;
+			int previous = -1;
+			for (int k = 0; k < length; k++) {
+				int hub = route[k];
+				time += travel(crew, previous, hub) + hours[hub];
+				cost += weight[hub] * time;
+				previous = hub;
+			}
+			return cost;
+		}
+
+		/**
+		 * Function to convert the solution to the work lists of the crews
+		 * @param solution
+		 * @param initialCost
+		 * @param moves
+		 * @param failed number of searches which failed
+		 * @return schedule
+		 */
+		RepairSchedule toSchedule(Solution solution, double initialCost, long moves, int failed) {
+			Map<String, List<String>> workLists = new LinkedHashMap<String, List<String>>();
+			for (int c = 0; c < crewIds.length; c++) {
+				List<String> hubs = new ArrayList<String>(solution.lengths[c]);
+				for (int k = 0; k < solution.lengths[c]; k++) {
+					hubs.add(hubIds.get(solution.routes[c][k]));
+				}
+				workLists.put(crewIds[c], hubs);
+			}
+			return new RepairSchedule(workLists, solution.cost, initialCost, moves, failed);
+		}
+	}
+
+	/**
+	 * Java class to represent the work lists of a schedule and
+	 * the population hours of each
+	 */
+	private static final class Solution {
+		private final int[][] routes;
+		private final int[] lengths;
+		private final double[] costs;
+		private double cost;
+
+		Solution(int crews, int hubs) {
+			routes = new int[crews][hubs];
+			lengths = new int[crews];
+			costs = new double[crews];
+		}
+
+		Solution copy() {
+			Solution copy = new Solution(routes.length, 0);
+			for (int c = 0; c < routes.length; c++) {
+				copy.routes[c] = routes[c].clone();
+			}
+			System.arraycopy(lengths, 0, copy.lengths, 0, lengths.length);
+			System.arraycopy(costs, 0, copy.costs, 0, costs.length);
+			copy.cost = cost;
+			return copy;
+		}
+	}
+
+	/**
+	 * Java class to run the local search from a schedule till the
+	 * deadline. A move is undone unless it lowers the population hours,
+	 * and when no move has helped for a while the current schedule is
+	 * shaken by a few random moves to leave the local optimum.
+	 */
+	private static final class Search {
+		private final Problem problem;
+		private final Solution current;
+		private final Random random;
+		private final long deadline;
+		private Solution best;
+		private long moves = 0;
+		//work lists changed by the last move, and their copies before it
+		private final int[] changed = new int[2];
+		private int changedCount;
+		private final int[][] saved = new int[2][];
+		private final int[] savedLengths = new int[2];
+		private final double[] savedCosts = new double[2];
+
+		Search(Problem problem, Solution start, Random random, long deadline) {
+			this.problem = problem;
+			this.current = start;
+			this.random = random;
+			this.deadline = deadline;
+			this.best = start.copy();
+		}
+
+		void run() {
+			int hubs = 0;
+			for (int length : current.lengths) {
+				hubs += length;
+			}
+			int stall = 0;
+			while (true) {
+				if (moves % DEADLINE_CHECK == 0 && System.nanoTime() >= deadline) {
+					return;
+				}
+				moves++;
+				double before = current.cost;
+				if (!move()) {
+					continue;
+				}
+				if (current.cost < before - 1e-9) {
+					stall = 0;
+					if (current.cost < best.cost) {
+						best = current.copy();
+					}
+				}
+				else {
+					undo();
+					if (++stall > 50 * hubs) {
+						//shake the schedule to leave the local optimum
+						for (int k = 0; k < 3; k++) {
+							move();
+						}
+						stall = 0;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Function to apply a random move to the current schedule,
+		 * the changed work lists are saved first so it can be undone
+		 * @return false if no move was possible
+		 */
+		private boolean move() {
+			int crews = current.routes.length;
+			int a = random.nextInt(crews);
+			if (current.lengths[a] == 0) {
+				return false;
+			}
+			int i = random.nextInt(current.lengths[a]);
+			int b = random.nextInt(crews);
+			int kind = random.nextInt(3);
+			if (kind == 2 && a == b && current.lengths[a] > 1) {
+				//reverse the hubs between two positions
+				int j = random.nextInt(current.lengths[a]);
+				save(a, a);
+				int[] route = current.routes[a];
+				for (int lo = Math.min(i, j), hi = Math.max(i, j); lo < hi; lo++, hi--) {
+					int t = route[lo];
+					route[lo] = route[hi];
+					route[hi] = t;
+				}
+			}
+			else if (kind == 1 && current.lengths[b] > 0) {
+				//swap two hubs
+				int j = random.nextInt(current.lengths[b]);
+				save(a, b);
+				int t = current.routes[a][i];
+				current.routes[a][i] = current.routes[b][j];
+				current.routes[b][j] = t;
+			}
+			else {
+				//move a hub to another position, possibly of another crew
+				save(a, b);
+				int[] from = current.routes[a];
+				int hub = from[i];
+				System.arraycopy(from, i + 1, from, i, current.lengths[a] - i - 1);
+				current.lengths[a]--;
+				int j = random.nextInt(current.lengths[b] + 1);
+				int[] to = current.routes[b];
+				System.arraycopy(to, j, to, j + 1, current.lengths[b] - j);
+				to[j] = hub;
+				current.lengths[b]++;
+			}
+			for (int k = 0; k < changedCount; k++) {
+				int c = changed[k];
+				current.cost -= current.costs[c];
+				current.costs[c] = problem.routeCost(c, current.routes[c], current.lengths[c]);
+				current.cost += current.costs[c];
+			}
+			return true;
+		}
+
+		/**
+		 * Function to save the work lists about to be changed
+		 * @param a
+		 * @param b
+		 */
+		private void save(int a, int b) {
+			changedCount = (a == b) ? 1 : 2;
+			changed[0] = a;
+			changed[1] = b;
+			for (int k = 0; k < changedCount; k++) {
+				int c = changed[k];
+				if (saved[k] == null || saved[k].length < current.lengths[c]) {
+					saved[k] = new int[current.routes[c].length];
+				}
+				System.arraycopy(current.routes[c], 0, saved[k], 0, current.lengths[c]);
+				savedLengths[k] = current.lengths[c];
+				savedCosts[k] = current.costs[c];
+			}
+		}
+
+		/**
+		 * Function to restore the work lists changed by the last move
+		 */
+		private void undo() {
+			for (int k = 0; k < changedCount; k++) {
+				int c = changed[k];
+				System.arraycopy(saved[k], 0, current.routes[c], 0, savedLengths[k]);
+				current.lengths[c] = savedLengths[k];
+				current.cost += savedCosts[k] - current.costs[c];
+				current.costs[c] = savedCosts[k];
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.example;
+/**
+ * Java class to simulate the restoration of service by repair crews as
+ * a discrete event simulation. The damaged hubs are dispatched to the
+ * crews in the order of a dispatch policy, each crew repairs one hub at
+ * a time, and a priority queue holds the repair completions of the busy
+ * crews in order of time. Every completion brings the people of the hub
+ * back in service and frees its crew for the next hub, hence the curve
+ * of people restored over time is found in O(n log n) for n hubs.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class RestorationSimulator {
+	/**
+	 * Order in which the damaged hubs are given to the crews
+	 */
+	public enum DispatchPolicy {
+		//hubs with most people out of service first, as in fix order
+		MOST_PEOPLE_FIRST,
+		//hubs with shortest repair first
+		SHORTEST_REPAIR_FIRST,
+		//hubs with most people restored per hour of repair first
+		MOST_PEOPLE_PER_HOUR,
+		//hubs with highest impact value first
+		HIGHEST_IMPACT_FIRST
+	}
+
+	//damaged hubs, the hub at index i has its details at index i
+	private List<String> hubIds = new ArrayList<String>();
+	private int[] populations = new int[16];
+	private double[] hoursToRepair = new double[16];
+	private double[] impacts = new double[16];
+	//number of people out of service over all damaged hubs
+	private long totalPopulation = 0;
+	//sink of the messages for invalid input, null for none
+	private ServiceLog serviceLog;
+
+	//constructor
+	public RestorationSimulator(ServiceLog serviceLog) {
+		this.serviceLog = serviceLog;
+	}
+
+	/**
+	 * Function to add a damaged hub to be repaired
+	 * @param hubId
+	 * @param population people out of service till hub is repaired
+	 * @param hours hours to repair the hub
+	 * @param impactValue
+	 */
+	public void addDamagedHub(String hubId, int population, double hours, double impactValue) {
+		int index = hubIds.size();
+		if (index == populations.length) {
+			populations = Arrays.copyOf(populations, index * 2);
+			hoursToRepair = Arrays.copyOf(hoursToRepair, index * 2);
+			impacts = Arrays.copyOf(impacts, index * 2);
+		}
+		hubIds.add(hubId);
+		populations[index] = population;
+		hoursToRepair[index] = hours;
+		impacts[index] = impactValue;
+		totalPopulation += population;
+	}
+
+	/**
+	 * Function to return the number of damaged hubs
+	 * @return size as integer
+	 */
+	public int size() {
+		return hubIds.size();
+	}
+
+	/**
+	 * Function to simulate the repairs and determine the hours at which
+	 * each percentage of the people out of service is restored, for the
+	 * percentages 0, increment, 2 * increment, ... up to 100
+	 * @param increment percentage between two points of the curve
+	 * @param crews number of crews repairing in parallel
+	 * @param policy order in which hubs are dispatched
+	 * @return hours for each percentage
+	 */
+	public List<Double> simulate(float increment, int crews, DispatchPolicy policy) {
+		List<Double> curve = new ArrayList<Double>();
+		if (increment <= 0) {
+			PowerService.log(serviceLog, "Increment should be a positive integer");
+			return curve;
+		}
+		if (crews <= 0) {
+			PowerService.log(serviceLog, "Number of crews should be positive");
+			return curve;
+		}
+		if (policy == null) {
+			PowerService.log(serviceLog, "Dispatch policy cannot be null");
+			return curve;
+		}
+
+		int[] order = getDispatchOrder(policy);
+		//repair completions of the busy crews, earliest first
+		PriorityQueue<Completion> completions = new PriorityQueue<Completion>(Math.min(crews, order.length) + 1);
+		int next = 0;
+		for (; next < order.length && next < crews; next++) {
+			completions.add(new Completion(hoursToRepair[order[next]], order[next]));
+		}
+
+		long restored = 0;
+		double time = 0;
+		for (int k = 0; k * (double) increment <= 100; k++) {
+			//people to be restored for this percentage
+			long target = (long) Math.ceil(k * (double) increment / 100 * totalPopulation);
+			while (restored < target) {
+				Completion completion = completions.poll();
+				time = completion.time;
+				restored += populations[completion.hub];
+				//the crew moves on to the next hub
+				if (next < order.length) {
+					completions.add(new Completion(time + hoursToRepair[order[next]], order[next]));
+					next++;
+				}
+			}
+			curve.add(time);
+		}
+		return curve;
+	}
+
+	/**
+	 * Helper function to sort the hubs by given dispatch policy,
+	 * ties are broken by hub id
+	 * @param policy
+	 * @return indexes of the hubs in dispatch order
+	 */
+	private int[] getDispatchOrder(DispatchPolicy policy) {
+		Dispatch[] dispatches = new Dispatch[hubIds.size()];
+		for (int i = 0; i < dispatches.length; i++) {
+			double key;
+			switch (policy) {
+			case SHORTEST_REPAIR_FIRST:
+				key = hoursToRepair[i];
+				break;
+			case MOST_PEOPLE_PER_HOUR:
+				key = -populations[i] / hoursToRepair[i];
+				break;
+			case HIGHEST_IMPACT_FIRST:
+				key = -impacts[i];
+				break;
+			default:
+				key = -populations[i];
+			}
+			dispatches[i] = new Dispatch(key, hubIds.get(i), i);
+		}
+		Arrays.sort(dispatches);
+		int[] order = new int[dispatches.length];
+		for (int i = 0; i < dispatches.length; i++) {
+			order[i] = dispatches[i].hub;
+		}
+		return order;
+	}
+
+	/**
+	 * Java class to represent a hub to be dispatched, ordered by
+	 * its key, lowest first, and then by its id
+	 */
+	private static final class Dispatch implements Comparable<Dispatch> {
+		private final double key;
+		private final String hubId;
+		//index of the hub
+		private final int hub;
+
+		Dispatch(double key, String hubId, int hub) {
+			this.key = key;
+			this.hubId = hubId;
+			this.hub = hub;
+		}
+
+		@Override
+		public int compareTo(Dispatch other) {
+			int c = Double.compare(key, other.key);
+			return (c != 0) ? c : hubId.compareTo(other.hubId);
+		}
+	}
+
+	/**
+	 * Java class to represent the completion of a repair
+	 */
+	private static final class Completion implements Comparable<Completion> {
+		//hours from now at which the repair completes
+		private final double time;
+		//index of the repaired hub
+		private final int hub;
+
+		Completion(double time, int hub) {
+			this.time = time;
+			this.hub = hub;
+		}
+
+		@Override
+		public int compareTo(Completion other) {
+			return Double.compare(time, other.time);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package org.example;
+/**
+ * Interface of the sink to which the power service reports invalid
+ * input and the repairs done, as human readable messages. A service
+ * without a sink reports nothing, which is the fastest for bulk work.
+ */
+public interface ServiceLog {
+	//sink printing each message to the console right away
+	ServiceLog CONSOLE = message -> System.out.println(message);
+
+	/**
+	 * Function to report a message
+	 * @param message
+	 */
+	void log(String message);
+}
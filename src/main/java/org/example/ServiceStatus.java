@@ -0,0 +1,53 @@
+package org.example;
+/**
+ * Result of a change to the power service. The statuses are constants,
+ * so a caller applying many changes, e.g. a replay of field reports,
+ * can check each one without any message being built or printed.
+ */
+public enum ServiceStatus {
+	//postal code or hub added as new
+	ADDED(true, "Added"),
+	//existing postal code or hub updated
+	UPDATED(true, "Updated"),
+	//postal code is null or empty
+	INVALID_POSTAL_CODE(false, "Postal code cannot be null or empty"),
+	//population or area is not positive
+	INVALID_POPULATION_OR_AREA(false, "Population or area should be positive integer."),
+	//hub id is null or empty
+	INVALID_HUB_ID(false, "Hub id cannot be null or empty"),
+	//location or serviced areas of hub are null
+	INVALID_LOCATION_OR_AREAS(false, "Location or serviced areas cannot be null"),
+	//hours to repair are not positive
+	INVALID_REPAIR_ESTIMATE(false, "Repair estimate should be positive"),
+	//employee id is null or empty
+	INVALID_EMPLOYEE_ID(false, "Employee id cannot be null or empty"),
+	//an id is longer than the write ahead log can hold
+	ID_TOO_LONG(false, "Id cannot be longer than 65535 bytes"),
+	//hub does not exist
+	UNKNOWN_HUB(false, "Hub id does not exists"),
+	//change could not be written to the write ahead log, it is not
+	//applied, or not durable if the log failed after it was applied
+	LOG_FAILURE(false, "Change could not be written to the log");
+
+	//true, if the change was applied
+	private final boolean success;
+	//message printed for the status
+	private final String message;
+
+	ServiceStatus(boolean success, String message) {
+		this.success = success;
+		this.message = message;
+	}
+
+	/**
+	 * Function to check whether the change was applied
+	 * @return true or false
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+}
@@ -0,0 +1,103 @@
+package org.example;
+/**
+ * Java class to view an already sorted array as a read only sorted set.
+ * Adding it to an empty TreeSet with the same comparator builds the
+ * tree in linear time from the sorted elements, instead of inserting
+ * and rebalancing one element at a time, which is how the indexes are
+ * rebuilt after a bulk load. Sub sets are views of an index range of
+ * the same array.
+ */
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+class SortedArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
+	//elements in order of the comparator, without duplicates
+	private E[] elements;
+	private Comparator<? super E> comparator;
+	//range of the elements in this set, from inclusive, to exclusive
+	private int from;
+	private int to;
+
+	//constructor
+	SortedArraySet(E[] elements, Comparator<? super E> comparator) {
+		this(elements, comparator, 0, elements.length);
+	}
+
+	//constructor
+	private SortedArraySet(E[] elements, Comparator<? super E> comparator, int from, int to) {
+		this.elements = elements;
+		this.comparator = comparator;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return Arrays.asList(elements).subList(from, to).iterator();
+	}
+
+	@Override
+	public int size() {
+		return to - from;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object o) {
+		return from < to && Arrays.binarySearch(elements, from, to, (E) o, comparator) >= 0;
+	}
+
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	@Override
+	public E first() {
+		if (from == to) {
+			throw new NoSuchElementException();
+		}
+		return elements[from];
+	}
+
+	@Override
+	public E last() {
+		if (from == to) {
+			throw new NoSuchElementException();
+		}
+		return elements[to - 1];
+	}
+
+	@Override
+	public SortedSet<E> subSet(E fromElement, E toElement) {
+		if (comparator.compare(fromElement, toElement) > 0) {
+			throw new IllegalArgumentException("fromElement > toElement");
+		}
+		return new SortedArraySet<E>(elements, comparator, indexOf(fromElement), indexOf(toElement));
+	}
+
+	@Override
+	public SortedSet<E> headSet(E toElement) {
+		return new SortedArraySet<E>(elements, comparator, from, indexOf(toElement));
+	}
+
+	@Override
+	public SortedSet<E> tailSet(E fromElement) {
+		return new SortedArraySet<E>(elements, comparator, indexOf(fromElement), to);
+	}
+
+	/**
+	 * Helper function to find the index of the first element in this
+	 * set which is not less than given element
+	 * @param element
+	 * @return index from the start of this range to its end
+	 */
+	private int indexOf(E element) {
+		int index = Arrays.binarySearch(elements, from, to, element, comparator);
+		return (index >= 0) ? index : -index - 1;
+	}
+}